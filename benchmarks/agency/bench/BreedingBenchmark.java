@@ -0,0 +1,86 @@
+package agency.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import agency.Config;
+import agency.Individual;
+import agency.Population;
+import agency.reproduce.BreedingPipeline;
+import agency.reproduce.FitnessProportionalSelector;
+import agency.reproduce.TournamentSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Producing one offspring from an evaluated population with each of the
+ * selectors, and with VectorCrossoverPipeline (always crossing over) on top
+ * of tournament selection, both as configured and compiled into a
+ * FusedVectorPipeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BreedingBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"10", "100", "1000"})
+int genomeLength;
+
+@Param({"object", "double"})
+String genomeType;
+
+BreedingPipeline tournament;
+BreedingPipeline fitnessProportional;
+BreedingPipeline crossover;
+BreedingPipeline fusedCrossover;
+
+@Setup
+public void setUp() {
+  Population pop = Fixtures.population(populationSize, genomeLength,
+                                       genomeType);
+
+  tournament = new TournamentSelector(2, 1);
+  tournament.setSourcePopulation(pop);
+
+  fitnessProportional = new FitnessProportionalSelector();
+  fitnessProportional.setSourcePopulation(pop);
+
+  crossover = (BreedingPipeline) Config.getXMLConfigurableFromString(
+          "<VectorCrossoverPipeline crossoverProb=\"1.0\">" +
+          "<TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>" +
+          "</VectorCrossoverPipeline>");
+  crossover.setSourcePopulation(pop);
+
+  fusedCrossover = crossover.compile();
+  fusedCrossover.setSourcePopulation(pop);
+}
+
+@Benchmark
+public Individual tournamentSelector() {
+  return tournament.generate();
+}
+
+@Benchmark
+public Individual fitnessProportionalSelector() {
+  return fitnessProportional.generate();
+}
+
+@Benchmark
+public Individual vectorCrossoverPipeline() {
+  return crossover.generate();
+}
+
+@Benchmark
+public Individual fusedVectorCrossoverPipeline() {
+  return fusedCrossover.generate();
+}
+
+}
@@ -0,0 +1,86 @@
+package agency.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import agency.Config;
+import agency.DefaultAgentModelFactory;
+import agency.models.cournot.CournotGame;
+import agency.models.cournot.DirectlyEncodedCournotAgent;
+import agency.vector.VectorIndividual;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Every step of one CournotGame for each group of <em>numAgents</em>
+ * DirectlyEncodedCournotAgents in a population of <em>populationSize</em>,
+ * i.e., one round of games in which each individual plays once.  Each game is
+ * rewound to its first step and played for all maxSteps steps per
+ * invocation, so no per-step setup is timed.
+ * <p>
+ * Unlike the other benchmarks, this is not parameterized by genome length.
+ * The Cournot agents read a fixed few genes each step, e.g., only the first
+ * for a DirectlyEncodedCournotAgent, however long the genome, so the game's
+ * cost does not depend on it; the individuals have genomes of length 1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CournotGameBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"2", "10", "100"})
+int numAgents;
+
+@Param({"120"})
+int maxSteps;
+
+CournotGame[] games;
+
+@Setup
+public void setUp() {
+  DefaultAgentModelFactory factory =
+          (DefaultAgentModelFactory) Config.getXMLConfigurableFromString(
+                  "<DefaultAgentModelFactory " +
+                  "modelClass=\"agency.models.cournot.CournotGame\" " +
+                  "poolSize=\"0\">" +
+                  "<Parameter name=\"demandConstant\" value=\"100\"/>" +
+                  "<Parameter name=\"demandCoefficient\" value=\"1\"/>" +
+                  "<Parameter name=\"minimumQuantity\" value=\"0.00001\"/>" +
+                  "<Parameter name=\"maxSteps\" value=\"" + maxSteps + "\"/>" +
+                  "</DefaultAgentModelFactory>");
+  games = new CournotGame[Math.max(1, populationSize / numAgents)];
+  for (int g = 0; g < games.length; g++) {
+    CournotGame game = (CournotGame) factory.createAgentModel();
+    for (int i = 0; i < numAgents; i++) {
+      VectorIndividual<Double> ind = new VectorIndividual<>(1);
+      ind.changeGene(DirectlyEncodedCournotAgent.POS_QTY,
+                     100d / (numAgents + 1));
+      DirectlyEncodedCournotAgent agent = new DirectlyEncodedCournotAgent();
+      agent.setManager(ind);
+      agent.setModel(game);
+      game.addAgent(agent);
+    }
+    game.init();
+    games[g] = game;
+  }
+}
+
+@Benchmark
+public CournotGame[] play() {
+  for (CournotGame game : games) {
+    game.currentStep = 0;
+    for (int s = 0; s < maxSteps; s++)
+      game.step();
+  }
+  return games;
+}
+
+}
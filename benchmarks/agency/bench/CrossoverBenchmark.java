@@ -0,0 +1,76 @@
+package agency.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import agency.Config;
+import agency.Individual;
+import agency.Population;
+import agency.reproduce.BreedingPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Producing a generation of offspring, as many as the population of
+ * <em>populationSize</em>, with each crossover operator, always crossing
+ * over, on top of tournament selection.  Each pair of offspring are copies of
+ * their parents until crossed over, so this includes copying both genomes.
+ * Populations stop at 1000, since genomes go up to 10000 genes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CrossoverBenchmark {
+
+static final Map<String, String> OPERATORS = new LinkedHashMap<>();
+
+static {
+  OPERATORS.put("twoPoint", "VectorCrossoverPipeline");
+  OPERATORS.put("kPoint", "KPointCrossoverPipeline points=\"8\"");
+  OPERATORS.put("uniform", "UniformCrossoverPipeline");
+  OPERATORS.put("segment", "SegmentCrossoverPipeline segmentLength=\"64\"");
+}
+
+@Param({"twoPoint", "kPoint", "uniform", "segment"})
+String operator;
+
+@Param({"100", "1000"})
+int populationSize;
+
+@Param({"100", "1000", "10000"})
+int genomeLength;
+
+@Param({"object", "double"})
+String genomeType;
+
+BreedingPipeline crossover;
+Individual[]     offspring;
+
+@Setup
+public void setUp() {
+  Population pop = Fixtures.population(populationSize, genomeLength,
+                                       genomeType);
+  String tag = OPERATORS.get(operator);
+  crossover = (BreedingPipeline) Config.getXMLConfigurableFromString(
+          "<" + tag + " crossoverProb=\"1.0\">" +
+          "<TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>" +
+          "</" + tag.split(" ")[0] + ">");
+  crossover.setSourcePopulation(pop);
+  offspring = new Individual[populationSize];
+}
+
+@Benchmark
+public Individual[] crossover() {
+  for (int i = 0; i < offspring.length; i++)
+    offspring[i] = crossover.generate();
+  return offspring;
+}
+
+}
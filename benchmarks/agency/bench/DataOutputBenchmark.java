@@ -0,0 +1,98 @@
+package agency.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import agency.Config;
+import agency.Population;
+import agency.data.DataOutput;
+import agency.data.DefaultVectorIndividualData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Writing through DataOutput, which reflects on each object's fields with
+ * DefaultDataObjectManager:
+ * <ul>
+ * <li>writePojo: one line for each of <em>populationSize</em> plain objects,
+ * as DefaultModelSummaryData does for every EvaluationGroup; genomeLength
+ * makes no difference to it.</li>
+ * <li>writePopulation: one line per individual in a population of
+ * <em>populationSize</em>, with genomes of <em>genomeLength</em>, through
+ * DefaultVectorIndividualData.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataOutputBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"10", "100", "1000"})
+int genomeLength;
+
+public static class Row {
+  int    generation = 7;
+  double priceMean  = 33.3;
+  double priceSD    = 1.25;
+  double qtyMean    = 16.6;
+  double qtySD      = 0.5;
+  long   count      = 120;
+  String label      = "market";
+}
+
+File                        file;
+DataOutput                  out;
+Row                         row;
+UUID                        model;
+File                        populationFile;
+DefaultVectorIndividualData populationOut;
+Population                  pop;
+
+@Setup
+public void setUp() throws IOException {
+  file = File.createTempFile("DataOutputBenchmark", ".csv");
+  out = new DataOutput(file.getPath());
+  out.setPrefixHeaders(new String[]{"Generation", "Model"});
+  row = new Row();
+  model = UUID.randomUUID();
+
+  populationFile = File.createTempFile("DataOutputBenchmark", ".csv");
+  populationOut = (DefaultVectorIndividualData)
+          Config.getXMLConfigurableFromString(
+                  "<DefaultVectorIndividualData file=\"" +
+                  populationFile.getPath() + "\"/>");
+  pop = Fixtures.population(populationSize, genomeLength, "object");
+}
+
+@TearDown
+public void tearDown() {
+  out.close();
+  file.delete();
+  populationOut.close();
+  populationFile.delete();
+}
+
+@Benchmark
+public void writePojo() {
+  for (int i = 0; i < populationSize; i++)
+    out.write(row, row.generation, model);
+}
+
+@Benchmark
+public void writePopulation() {
+  populationOut.writePopulationData(row.generation, pop);
+}
+
+}
@@ -0,0 +1,113 @@
+package agency.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.Population;
+import agency.SimpleFitness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Aggregating one generation's group results with
+ * Environment.fitnessAccumulator, as Environment.evolve() does.  Every
+ * individual is in <em>samples</em> groups of <em>groupSize</em>.
+ * <p>
+ * fitnessAccumulator combines into the first Fitness it sees for each
+ * individual, so each invocation aggregates fresh copies of the group
+ * results, as a generation's groups would return.  copyOnly measures making
+ * the copies alone, to be subtracted from the others.
+ * <p>
+ * Unlike the other benchmarks, this is not parameterized by genome length:
+ * aggregation only combines Fitness objects keyed by individual, and never
+ * reads the genome, so the individuals have genomes of length 1.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FitnessAccumulatorBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"10"})
+int samples;
+
+@Param({"2", "10"})
+int groupSize;
+
+List<Map<Individual, Fitness>> groupResults;
+
+@Setup
+public void setUp() {
+  Population pop = Fixtures.population(populationSize, 1, "object");
+  List<Individual> slots = new ArrayList<>();
+  for (int s = 0; s < samples; s++)
+    slots.addAll(pop.individuals);
+  Collections.shuffle(slots, new Random(Fixtures.SEED));
+
+  groupResults = new ArrayList<>();
+  Random r = new Random(Fixtures.SEED);
+  for (int start = 0; start + groupSize <= slots.size(); start += groupSize) {
+    Map<Individual, Fitness> results = Environment.newFitnessMap();
+    for (int i = start; i < start + groupSize; i++)
+      results.put(slots.get(i), new SimpleFitness(r.nextDouble()));
+    groupResults.add(results);
+  }
+}
+
+/**
+ * @return A copy of groupResults with new Fitness objects, so that
+ * aggregating it leaves the fixture unchanged
+ */
+private List<Map<Individual, Fitness>> freshResults() {
+  List<Map<Individual, Fitness>> fresh = new ArrayList<>(groupResults.size());
+  for (Map<Individual, Fitness> results : groupResults) {
+    Map<Individual, Fitness> copy = Environment.newFitnessMap();
+    for (Map.Entry<Individual, Fitness> entry : results.entrySet()) {
+      SimpleFitness sf = (SimpleFitness) entry.getValue();
+      copy.put(entry.getKey(),
+               new SimpleFitness(sf.getTotalFitness(),
+                                 sf.getTotalSquaredFitness(),
+                                 sf.getNumSamples()));
+    }
+    fresh.add(copy);
+  }
+  return fresh;
+}
+
+@Benchmark
+public List<Map<Individual, Fitness>> copyOnly() {
+  return freshResults();
+}
+
+@Benchmark
+public Map<Individual, Fitness> sequential() {
+  Map<Individual, Fitness> agg = Environment.newFitnessMap();
+  for (Map<Individual, Fitness> results : freshResults())
+    Environment.fitnessAccumulator(agg, results);
+  return agg;
+}
+
+@Benchmark
+public Map<Individual, Fitness> parallelCollect() {
+  return freshResults().parallelStream()
+                       .collect(Environment::newFitnessMap,
+                                Environment::fitnessAccumulator,
+                                Environment::fitnessAccumulator);
+}
+
+}
@@ -0,0 +1,83 @@
+package agency.bench;
+
+import java.util.Random;
+
+import agency.Config;
+import agency.Individual;
+import agency.Population;
+import agency.SimpleFitness;
+import agency.vector.VectorIndividual;
+import agency.vector.VectorIndividualFactory;
+import agency.vector.VectorMutator;
+
+/**
+ * Objects shared by the benchmarks, built from XML the same way a
+ * configuration file would build them.
+ */
+final class Fixtures {
+
+private Fixtures() {
+}
+
+static final long SEED = 42;
+
+/**
+ * @param genomeType
+ *         VectorIndividualFactory's genomeType, i.e., object, double or int
+ */
+static String individualFactoryXML(int genomeLength, String genomeType) {
+  int end = genomeLength - 1;
+  return "<VectorIndividualFactory length=\"" + genomeLength + "\" " +
+         "genomeType=\"" + genomeType + "\">" +
+         "<GaussianRandomVectorRange start=\"0\" end=\"" + end + "\">" +
+         "<Means type=\"RepeatingDouble\" start=\"0\" end=\"" + end +
+         "\" value=\"1.0\"/>" +
+         "<Deviations type=\"RepeatingDouble\" start=\"0\" end=\"" + end +
+         "\" value=\"0.1\"/>" +
+         "</GaussianRandomVectorRange>" +
+         "</VectorIndividualFactory>";
+}
+
+static VectorIndividual<Object> individual(int genomeLength,
+                                           String genomeType) {
+  VectorIndividualFactory factory = (VectorIndividualFactory)
+          Config.getXMLConfigurableFromString(
+                  individualFactoryXML(genomeLength, genomeType));
+  return factory.create();
+}
+
+static VectorMutator gaussianMutator(int genomeLength,
+                                     double mutationProbability,
+                                     boolean sparse) {
+  int end = genomeLength - 1;
+  return (VectorMutator) Config.getXMLConfigurableFromString(
+          "<VectorMutator length=\"" + genomeLength + "\">" +
+          "<GaussianMutator start=\"0\" end=\"" + end + "\" sparse=\"" +
+          sparse + "\">" +
+          "<MutationProbability type=\"RepeatingDouble\" start=\"0\" end=\"" +
+          end + "\" value=\"" + mutationProbability + "\"/>" +
+          "<Deviations type=\"RepeatingDouble\" start=\"0\" end=\"" + end +
+          "\" value=\"0.1\"/>" +
+          "</GaussianMutator>" +
+          "</VectorMutator>");
+}
+
+/**
+ * @return A population of VectorIndividuals, each with a positive
+ * SimpleFitness, as if it had just been evaluated.
+ */
+static Population population(int size, int genomeLength,
+                             String genomeType) {
+  Population pop = (Population) Config.getXMLConfigurableFromString(
+          "<Population initialSize=\"" + size + "\">" +
+          "<NullAgentFactory/>" +
+          individualFactoryXML(genomeLength, genomeType) +
+          "<TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>" +
+          "</Population>");
+  Random r = new Random(SEED);
+  for (Individual ind : pop.individuals)
+    ind.setFitness(new SimpleFitness(1d + r.nextDouble() * 100d));
+  return pop;
+}
+
+}
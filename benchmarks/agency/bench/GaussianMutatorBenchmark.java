@@ -0,0 +1,67 @@
+package agency.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import agency.Individual;
+import agency.Population;
+import agency.vector.VectorIndividual;
+import agency.vector.VectorMutator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A VectorMutator with one GaussianMutator over the whole genome, applied to
+ * every individual in a population of <em>populationSize</em>.  The same
+ * individuals are mutated repeatedly; their genes drift, which does not
+ * change the cost.  Sparse mutators skip the positions that will not mutate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GaussianMutatorBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"10", "100", "1000"})
+int genomeLength;
+
+@Param({"object", "double"})
+String genomeType;
+
+@Param({"0.001", "0.01", "0.1", "1.0"})
+double mutationProbability;
+
+@Param({"false", "true"})
+boolean sparse;
+
+VectorMutator              mutator;
+VectorIndividual<Object>[] individuals;
+
+@Setup
+@SuppressWarnings("unchecked")
+public void setUp() {
+  mutator = Fixtures.gaussianMutator(genomeLength, mutationProbability,
+                                     sparse);
+  Population pop = Fixtures.population(populationSize, genomeLength,
+                                       genomeType);
+  individuals = new VectorIndividual[pop.size()];
+  int i = 0;
+  for (Individual ind : pop.individuals)
+    individuals[i++] = (VectorIndividual<Object>) ind;
+}
+
+@Benchmark
+public VectorIndividual<Object>[] mutate() {
+  for (VectorIndividual<Object> individual : individuals)
+    mutator.mutate(individual);
+  return individuals;
+}
+
+}
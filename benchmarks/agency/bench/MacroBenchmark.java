@@ -0,0 +1,332 @@
+package agency.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import agency.Config;
+import agency.Environment;
+import agency.eval.Evaluator;
+import agency.eval.LocalEvaluator;
+import agency.eval.LocalParallelEvaluator;
+import agency.util.CmdLineUtils;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import static agency.util.CmdLineUtils.*;
+
+/**
+ * Evolves whole Environments for a fixed number of generations, under each
+ * local Evaluator, and reports generations per second, peak heap and GC time
+ * for each.  Throughput is compared with a baseline file, and the process
+ * exits with status 1 if any run is more than the tolerance below it, so
+ * that it can fail a build.
+ * <p>
+ * Files written by the configurations' data outputs are redirected to a
+ * temporary directory, which is deleted after each run, and checkpointing is
+ * turned off.  Runs must be made
+ * from the project's root directory, where the configuration paths are
+ * relative to.
+ */
+public class MacroBenchmark {
+
+public static final String DEFAULT_BASELINE =
+        "benchmarks/agency/bench/MacroBenchmark.baseline.properties";
+
+/**
+ * Configurations, by name
+ */
+static final Map<String, String> CONFIGS = new LinkedHashMap<>();
+/**
+ * Evaluators, by name.  The DebugEvaluator is left out deliberately; it
+ * measures output, not evolution.
+ */
+static final Map<String, Supplier<Evaluator>> EVALUATORS =
+        new LinkedHashMap<>();
+
+static {
+  CONFIGS.put("competingCournot",
+              "models/agency/models/cournot/competing_cournot.xml");
+  CONFIGS.put("maximumValueScaled",
+              "benchmarks/agency/bench/MaximumValueScaled.xml");
+  EVALUATORS.put("LocalEvaluator", LocalEvaluator::new);
+  EVALUATORS.put("LocalParallelEvaluator", LocalParallelEvaluator::new);
+}
+
+static final Option warmupOption = Option
+        .builder("w")
+        .longOpt("warmup")
+        .hasArg()
+        .desc("Generations to evolve before measuring (default 5)")
+        .build();
+
+static final Option baselineOption = Option
+        .builder("b")
+        .longOpt("baseline")
+        .hasArg()
+        .desc("Baseline file to compare with (default " + DEFAULT_BASELINE +
+              ")")
+        .build();
+
+static final Option toleranceOption = Option
+        .builder("t")
+        .longOpt("tolerance")
+        .hasArg()
+        .desc("Percentage below the baseline's generations per second " +
+              "that fails (default 10)")
+        .build();
+
+static final Option recordOption = Option
+        .builder("r")
+        .longOpt("record")
+        .desc("Write the results to the baseline file instead of comparing")
+        .build();
+
+/**
+ * The measurements of one configuration under one Evaluator
+ */
+public static class Result {
+  public final String name;
+  public final int    generations;
+  public final long   wallNanos;
+  public final long   peakHeapBytes;
+  public final long   gcMillis;
+
+  Result(String name, int generations, long wallNanos, long peakHeapBytes,
+         long gcMillis) {
+    this.name = name;
+    this.generations = generations;
+    this.wallNanos = wallNanos;
+    this.peakHeapBytes = peakHeapBytes;
+    this.gcMillis = gcMillis;
+  }
+
+  public double getGenerationsPerSecond() {
+    return generations * 1e9 / wallNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%-42s %10.3f gen/s %10.1f MB peak heap %8d ms GC",
+                         name, getGenerationsPerSecond(),
+                         peakHeapBytes / (1024d * 1024d), gcMillis);
+  }
+}
+
+public static void main(String[] args) {
+  Options options = new Options();
+  options.addOption(generations);
+  options.addOption(warmupOption);
+  options.addOption(baselineOption);
+  options.addOption(toleranceOption);
+  options.addOption(recordOption);
+
+  CommandLine cmd = parseOrHelpAndExit(MacroBenchmark.class, args, options);
+
+  int gens = has(cmd, generations) ? argIntegerThrow(cmd, generations) : 20;
+  int warmup = has(cmd, warmupOption) ? argIntegerThrow(cmd, warmupOption) : 5;
+  double tolerance = has(cmd, toleranceOption)
+                     ? argDoubleThrow(cmd, toleranceOption)
+                     : 10d;
+  File baselineFile = has(cmd, baselineOption)
+                      ? argFileThrow(cmd, baselineOption)
+                      : new File(DEFAULT_BASELINE);
+  if (gens <= 0 || warmup < 0 || tolerance < 0) {
+    printHelp(MacroBenchmark.class, options,
+              "Generations must be positive, and warmup and tolerance " +
+              "must not be negative");
+    System.exit(-1);
+  }
+
+  List<Result> results = new ArrayList<>();
+  for (Map.Entry<String, String> config : CONFIGS.entrySet()) {
+    for (Map.Entry<String, Supplier<Evaluator>> evaluator :
+            EVALUATORS.entrySet()) {
+      Result r = run(config.getKey() + "." + evaluator.getKey(),
+                     config.getValue(), evaluator.getValue(), warmup, gens);
+      System.out.println(r);
+      results.add(r);
+    }
+  }
+
+  if (has(cmd, recordOption)) {
+    writeBaseline(baselineFile, results);
+    System.out.println("Recorded baseline in " + baselineFile);
+    return;
+  }
+
+  Optional<Properties> baseline = readBaseline(baselineFile);
+  if (!baseline.isPresent()) {
+    System.out.println("No baseline at " + baselineFile + "; record one " +
+                       "with --" + recordOption.getLongOpt());
+    return;
+  }
+  List<String> regressions = compare(baseline.get(), results, tolerance);
+  for (String regression : regressions)
+    System.out.println(regression);
+  if (!regressions.isEmpty())
+    System.exit(1);
+  System.out.println("All runs within " + tolerance + "% of the baseline");
+}
+
+/**
+ * Evolves an Environment loaded from a configuration file, with the
+ * specified Evaluator in place of the configured one.
+ *
+ * @param name
+ *         The name of the run, for reporting
+ * @param configFile
+ *         The configuration to load
+ * @param evaluator
+ *         Creates the Evaluator to use
+ * @param warmup
+ *         Generations to evolve before measuring
+ * @param gens
+ *         Generations to measure
+ */
+public static Result run(String name, String configFile,
+                         Supplier<Evaluator> evaluator, int warmup, int gens) {
+  File outputDir;
+  try {
+    outputDir = Files.createTempDirectory("MacroBenchmark").toFile();
+  } catch (IOException e) {
+    throw new RuntimeException("Could not create a directory for output", e);
+  }
+  Environment env = load(configFile, outputDir);
+  try {
+    env.evaluator.close();
+    env.evaluator = evaluator.get();
+    for (int i = 0; i < warmup; i++)
+      env.evolve();
+
+    System.gc();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    long gcStart = gcMillis();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < gens; i++)
+      env.evolve();
+    long wall = System.nanoTime() - start;
+
+    long gc = gcMillis() - gcStart;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools)
+      peak += pool.getPeakUsage().getUsed();
+    return new Result(name, gens, wall, peak, gc);
+  } finally {
+    env.close();
+    FileUtils.deleteQuietly(outputDir);
+  }
+}
+
+/**
+ * Loads an Environment without checkpoints, and with the file of every
+ * element that has one moved into a directory.
+ */
+static Environment load(String configFile, File outputDir) {
+  try {
+    Document doc = Config.getDocBuilder().parse(new File(configFile));
+    doc.getDocumentElement().removeAttribute("checkpointEvery");
+    NodeList elements = doc.getElementsByTagName("*");
+    for (int i = 0; i < elements.getLength(); i++) {
+      Element e = (Element) elements.item(i);
+      if (e.hasAttribute("file")) {
+        String fileName = new File(e.getAttribute("file")).getName();
+        e.setAttribute("file", new File(outputDir, fileName).getPath());
+      }
+    }
+    return (Environment) Config.initializeXMLConfigurable(
+            doc.getDocumentElement());
+  } catch (SAXException | IOException e) {
+    throw new RuntimeException("Could not load " + configFile, e);
+  }
+}
+
+private static long gcMillis() {
+  long total = 0;
+  for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+    if (gc.getCollectionTime() > 0)
+      total += gc.getCollectionTime();
+  return total;
+}
+
+/**
+ * @return A description of each run whose throughput is more than tolerance
+ * percent below its baseline.  Runs without a baseline are not compared.
+ */
+public static List<String> compare(Properties baseline, List<Result> results,
+                                   double tolerance) {
+  List<String> regressions = new ArrayList<>();
+  for (Result r : results) {
+    String expected = baseline.getProperty(r.name + ".generationsPerSecond");
+    if (expected == null)
+      continue;
+    double minimum = Double.parseDouble(expected) * (1d - tolerance / 100d);
+    if (r.getGenerationsPerSecond() < minimum)
+      regressions.add(String.format(
+              "REGRESSION: %s ran at %.3f gen/s; the baseline is %s, and " +
+              "the minimum %.3f", r.name, r.getGenerationsPerSecond(),
+              expected, minimum));
+  }
+  return regressions;
+}
+
+static Optional<Properties> readBaseline(File file) {
+  if (!file.exists())
+    return Optional.empty();
+  Properties p = new Properties();
+  try (InputStream in = new FileInputStream(file)) {
+    p.load(in);
+  } catch (IOException e) {
+    throw new RuntimeException("Could not read baseline " + file, e);
+  }
+  return Optional.of(p);
+}
+
+static void writeBaseline(File file, List<Result> results) {
+  Properties p = new Properties();
+  for (Result r : results) {
+    p.setProperty(r.name + ".generationsPerSecond",
+                  String.format(Locale.ROOT, "%.3f",
+                                r.getGenerationsPerSecond()));
+    p.setProperty(r.name + ".peakHeapBytes",
+                  Long.toString(r.peakHeapBytes));
+    p.setProperty(r.name + ".gcMillis", Long.toString(r.gcMillis));
+  }
+  try (OutputStream out = new FileOutputStream(file)) {
+    p.store(out, "MacroBenchmark baseline.  Only generationsPerSecond is " +
+                 "compared; re-record with --record on the machine that " +
+                 "runs the comparison.");
+  } catch (IOException e) {
+    throw new RuntimeException("Could not write baseline " + file, e);
+  }
+}
+
+}
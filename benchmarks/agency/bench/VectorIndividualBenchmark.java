@@ -0,0 +1,68 @@
+package agency.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import agency.Individual;
+import agency.Population;
+import agency.vector.VectorIndividual;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * VectorIndividual.copy(), which every selector calls for every offspring,
+ * once for each individual in a population of <em>populationSize</em>.
+ * <p>
+ * copy() only shares the genome until one of the individuals changes it, so
+ * copy measures that alone, and copyThenWrite changes one gene of each copy
+ * as well, which is when the genome is actually copied, as it is for every
+ * offspring that is crossed over or mutated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorIndividualBenchmark {
+
+@Param({"100", "1000", "10000"})
+int populationSize;
+
+@Param({"10", "100", "1000"})
+int genomeLength;
+
+@Param({"object", "double"})
+String genomeType;
+
+Individual[] individuals;
+Individual[] copies;
+
+@Setup
+public void setUp() {
+  Population pop = Fixtures.population(populationSize, genomeLength,
+                                       genomeType);
+  individuals = pop.individuals.toArray(new Individual[0]);
+  copies = new Individual[individuals.length];
+}
+
+@Benchmark
+public Individual[] copy() {
+  for (int i = 0; i < individuals.length; i++)
+    copies[i] = individuals[i].copy();
+  return copies;
+}
+
+@Benchmark
+public Individual[] copyThenWrite() {
+  for (int i = 0; i < individuals.length; i++) {
+    VectorIndividual<?> copy = (VectorIndividual<?>) individuals[i].copy();
+    copy.setDouble(0, copy.getDouble(0) + 1d);
+    copies[i] = copy;
+  }
+  return copies;
+}
+
+}
@@ -122,6 +122,14 @@ public static void main(String[] args) {
     env.evaluator = new DebugEvaluator();
   }
 
+  /*
+   * Expose the run over JMX, so that it can be monitored, checkpointed or
+   * stopped from jconsole.
+   */
+  AgencyMonitor monitor = AgencyMonitor.attach(env);
+  System.out.println("Monitoring available over JMX as " +
+                     monitor.getObjectName());
+
   /*
    * Actually do the evolution
    */
@@ -130,6 +138,16 @@ public static void main(String[] args) {
   while (generationsToEvolve-- > 0) {
     env.evolve();
     printScaledProgress(env.getGeneration());
+
+    if (monitor.takeCheckpointRequest()) {
+      System.out.println("Saving requested checkpoint at generation " +
+                         env.getGeneration());
+      Environment.saveCheckpoint(env);
+    }
+    if (monitor.isStopRequested()) {
+      System.out.println("Stop requested; ending evolution early");
+      break;
+    }
   }
 
   /*
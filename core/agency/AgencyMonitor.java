@@ -0,0 +1,265 @@
+package agency;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import agency.data.EnvironmentStatistics;
+import org.w3c.dom.Element;
+
+/**
+ * Exposes the state of a running Environment as a platform MXBean, named
+ * agency:type=AgencyMonitor (with the Environment's id, if it has one), so
+ * that long runs can be watched with jconsole or scraped over JMX.
+ * <p>
+ * This is an EnvironmentStatistics, so that population sizes and fitnesses
+ * are sampled once per generation, after fitness is assigned and before
+ * reproduction.  Progress within a generation is read live from the
+ * Environment.  It can be configured explicitly with &lt;AgencyMonitor/&gt;;
+ * Agency.main() adds one if it is not.
+ * <p>
+ * Checkpoint and stop requests are only acted on by whoever runs the
+ * generations, e.g., Agency.main(), through takeCheckpointRequest() and
+ * isStopRequested().
+ */
+public class AgencyMonitor
+        implements AgencyMonitorMXBean, EnvironmentStatistics {
+public static final long serialVersionUID = 1L;
+
+/**
+ * The number of recent generations the rate is averaged over
+ */
+public static final int RATE_GENERATIONS = 20;
+
+private static final AtomicInteger instances = new AtomicInteger();
+
+transient Environment env;
+transient ObjectName  objectName;
+
+transient volatile Map<String, Integer> populationSizes;
+transient volatile Map<String, Double>  meanFitness;
+transient volatile Map<String, Double>  maxFitness;
+
+/*
+ * When recent generations finished, in System.nanoTime()
+ */
+transient ArrayDeque<Long> finishTimes;
+
+transient AtomicBoolean checkpointRequested;
+transient AtomicBoolean stopRequested;
+
+public AgencyMonitor() {
+  init();
+}
+
+private void init() {
+  populationSizes = Collections.emptyMap();
+  meanFitness = Collections.emptyMap();
+  maxFitness = Collections.emptyMap();
+  finishTimes = new ArrayDeque<>();
+  checkpointRequested = new AtomicBoolean();
+  stopRequested = new AtomicBoolean();
+}
+
+/**
+ * Returns the Environment's AgencyMonitor, adding and registering one if it
+ * does not have one already.
+ */
+public static AgencyMonitor attach(Environment env) {
+  for (EnvironmentStatistics es : env.stats)
+    if (es instanceof AgencyMonitor) {
+      ((AgencyMonitor) es).env = env;
+      return (AgencyMonitor) es;
+    }
+  AgencyMonitor monitor = new AgencyMonitor();
+  monitor.env = env;
+  monitor.register(env.id);
+  env.stats.add(monitor);
+  return monitor;
+}
+
+/**
+ * Registers this monitor with the platform MBeanServer, if it is not
+ * registered already.
+ *
+ * @param id
+ *         The Environment's id, to include in the name; may be null
+ */
+public synchronized void register(String id) {
+  if (objectName != null)
+    return;
+  MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+  String name = "agency:type=AgencyMonitor";
+  if (id != null && !id.isEmpty())
+    name += ",id=" + ObjectName.quote(id);
+  try {
+    try {
+      objectName = new ObjectName(name);
+      server.registerMBean(this, objectName);
+    } catch (InstanceAlreadyExistsException e) {
+      // Another Environment in this JVM
+      objectName = new ObjectName(name + ",instance=" +
+                                  instances.incrementAndGet());
+      server.registerMBean(this, objectName);
+    }
+  } catch (JMException e) {
+    objectName = null;
+    throw new RuntimeException("Could not register AgencyMonitor as " + name,
+                               e);
+  }
+}
+
+public synchronized void unregister() {
+  if (objectName == null)
+    return;
+  try {
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+  } catch (JMException e) {
+    e.printStackTrace();
+  }
+  objectName = null;
+}
+
+public ObjectName getObjectName() {
+  return objectName;
+}
+
+@Override
+public void calculate(Environment env) {
+  this.env = env;
+  Map<String, Integer> sizes = new LinkedHashMap<>();
+  Map<String, Double> means = new LinkedHashMap<>();
+  Map<String, Double> maxes = new LinkedHashMap<>();
+  for (PopulationGroup pg : env.getPopulationGroups()) {
+    for (Population p : pg.getPopulations()) {
+      sizes.put(p.getId(), p.size());
+      double total = 0d;
+      double max = Double.NaN;
+      int n = 0;
+      for (Individual ind : p.individuals) {
+        Fitness f = ind.getFitness();
+        if (f instanceof SimpleFitness) {
+          double avg = ((SimpleFitness) f).getAverageFitness();
+          total += avg;
+          if (n == 0 || avg > max)
+            max = avg;
+          n++;
+        }
+      }
+      means.put(p.getId(), n == 0 ? Double.NaN : total / n);
+      maxes.put(p.getId(), max);
+    }
+  }
+  populationSizes = Collections.unmodifiableMap(sizes);
+  meanFitness = Collections.unmodifiableMap(means);
+  maxFitness = Collections.unmodifiableMap(maxes);
+
+  synchronized (finishTimes) {
+    finishTimes.addLast(System.nanoTime());
+    while (finishTimes.size() > RATE_GENERATIONS + 1)
+      finishTimes.removeFirst();
+  }
+}
+
+@Override
+public int getGeneration() {
+  return env == null ? 0 : env.getGeneration();
+}
+
+@Override
+public Map<String, Integer> getPopulationSizes() {
+  return populationSizes;
+}
+
+@Override
+public Map<String, Double> getMeanFitness() {
+  return meanFitness;
+}
+
+@Override
+public Map<String, Double> getMaxFitness() {
+  return maxFitness;
+}
+
+@Override
+public long getEvaluatorQueueDepth() {
+  if (env == null)
+    return 0;
+  return Math.max(0, env.getGroupsCreated() - env.getGroupsFinished());
+}
+
+@Override
+public long getGroupsCompleted() {
+  return env == null ? 0 : env.getGroupsFinished();
+}
+
+@Override
+public double getGenerationsPerMinute() {
+  synchronized (finishTimes) {
+    if (finishTimes.size() < 2)
+      return 0d;
+    long elapsed = finishTimes.getLast() - finishTimes.getFirst();
+    if (elapsed <= 0)
+      return 0d;
+    return (finishTimes.size() - 1) * 60e9 / elapsed;
+  }
+}
+
+@Override
+public boolean isCheckpointRequested() {
+  return checkpointRequested.get();
+}
+
+@Override
+public boolean isStopRequested() {
+  return stopRequested.get();
+}
+
+@Override
+public void requestCheckpoint() {
+  checkpointRequested.set(true);
+}
+
+@Override
+public void requestStop() {
+  stopRequested.set(true);
+}
+
+/**
+ * @return Whether a checkpoint has been requested since this was last called
+ */
+public boolean takeCheckpointRequest() {
+  return checkpointRequested.getAndSet(false);
+}
+
+@Override
+public void close() {
+  unregister();
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  register(null);
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  // No configuration required
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  init();
+  register(null);
+}
+
+}
@@ -0,0 +1,65 @@
+package agency;
+
+import java.util.Map;
+
+/**
+ * The management interface of an AgencyMonitor, for watching a run with
+ * jconsole or any other JMX client.
+ */
+public interface AgencyMonitorMXBean {
+
+/**
+ * @return The generation currently being evolved
+ */
+int getGeneration();
+
+/**
+ * @return The size of each population, keyed by population id, as of the end
+ * of the last generation
+ */
+Map<String, Integer> getPopulationSizes();
+
+/**
+ * @return The mean SimpleFitness of each population, keyed by population id,
+ * as of the end of the last generation
+ */
+Map<String, Double> getMeanFitness();
+
+/**
+ * @return The maximum SimpleFitness of each population, keyed by population
+ * id, as of the end of the last generation
+ */
+Map<String, Double> getMaxFitness();
+
+/**
+ * @return The number of EvaluationGroups created but not yet finished in the
+ * current generation
+ */
+long getEvaluatorQueueDepth();
+
+/**
+ * @return The number of EvaluationGroups finished in the current generation
+ */
+long getGroupsCompleted();
+
+/**
+ * @return Generations per minute, over recent generations
+ */
+double getGenerationsPerMinute();
+
+boolean isCheckpointRequested();
+
+boolean isStopRequested();
+
+/**
+ * Saves a checkpoint at the end of the current generation.
+ */
+void requestCheckpoint();
+
+/**
+ * Stops the run at the end of the current generation, saving a checkpoint
+ * and closing all output files as if it had finished normally.
+ */
+void requestStop();
+
+}
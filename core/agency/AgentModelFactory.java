@@ -3,5 +3,16 @@ package agency;
 public interface AgentModelFactory<T extends AgentModel> extends XMLConfigurable {
 T createAgentModel();
 
+/**
+ * Returns a model to the factory once its EvaluationGroup has finished with
+ * it, so that it can be reused.  Called on the thread that ran the model.
+ * Does nothing by default.
+ *
+ * @param model
+ *         A model previously created by this factory
+ */
+default void release(AgentModel model) {
+}
+
 void close();
 }
@@ -14,7 +14,12 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import agency.data.*;
+import agency.eval.CachingEvaluator;
+import agency.eval.ChunkedParallelEvaluator;
+import agency.eval.ForkedProcessEvaluator;
 import agency.eval.LocalParallelEvaluator;
+import agency.eval.RemoteEvaluator;
+import agency.eval.VirtualThreadEvaluator;
 import agency.reproduce.*;
 import agency.util.*;
 import agency.vector.*;
@@ -24,6 +29,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 import agency.eval.LocalEvaluator;
+import agency.eval.RacingEvaluationGroupFactory;
 import agency.eval.ShuffledEvaluationGroupFactory;
 
 public class Config {
@@ -82,12 +88,16 @@ static {
   registerClassXMLTag(NullAgentFactory.class);
   registerClassXMLTag(ShuffledEvaluationGroupFactory.class);
   registerClassXMLTag(VectorCrossoverPipeline.class);
+  registerClassXMLTag(KPointCrossoverPipeline.class);
+  registerClassXMLTag(UniformCrossoverPipeline.class);
+  registerClassXMLTag(SegmentCrossoverPipeline.class);
   registerClassXMLTag(VectorMutationPipeline.class);
 
   registerClassXMLTag(NullAgentFactory.class);
   registerClassXMLTag(DefaultAgentFactory.class);
 
   registerClassXMLTag(ShuffledEvaluationGroupFactory.class);
+  registerClassXMLTag(RacingEvaluationGroupFactory.class);
   registerClassXMLTag(LocalEvaluator.class);
   registerClassXMLTag(DefaultModelPerStepData.class);
   registerClassXMLTag(DefaultModelSummaryData.class);
@@ -95,7 +105,14 @@ static {
 
   registerClassXMLTag(DataOutput.class);
   registerClassXMLTag(DefaultEnvironmentStatistics.class);
+  registerClassXMLTag(GenerationMetrics.class);
+  registerClassXMLTag(AgencyMonitor.class);
   registerClassXMLTag(LocalParallelEvaluator.class);
+  registerClassXMLTag(ChunkedParallelEvaluator.class);
+  registerClassXMLTag(VirtualThreadEvaluator.class);
+  registerClassXMLTag(RemoteEvaluator.class);
+  registerClassXMLTag(ForkedProcessEvaluator.class);
+  registerClassXMLTag(CachingEvaluator.class);
 
   registerClassXMLTag(TournamentBalancer.class);
 
@@ -1,6 +1,7 @@
 package agency;
 
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
@@ -10,14 +11,29 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+/**
+ * Creates AgentModels of the configured class, setting the configured
+ * parameter fields by reflection.
+ * <p>
+ * If the model class implements ResettableAgentModel, models released by
+ * their EvaluationGroups are reset and kept in a per-thread pool of up to
+ * <em>poolSize</em> models, and createAgentModel() reuses them rather than
+ * creating new ones.  Since EvaluationGroups create and release their models
+ * on the thread that runs them, each evaluator thread ends up reusing the
+ * same few models.  A poolSize of 0 disables pooling.
+ */
 public class DefaultAgentModelFactory implements AgentModelFactory<AgentModel> {
 public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_POOL_SIZE = 4;
 
 String              className;
 Map<String, String> parameterStrings;
+int                 poolSize = DEFAULT_POOL_SIZE;
 
 transient Class<? extends AgentModel> agentModelClass;
 transient Map<Field, Object>          parameters;
+transient boolean                     pooling;
+transient ThreadLocal<ArrayDeque<AgentModel>> pools;
 
 public DefaultAgentModelFactory() {
   super();
@@ -32,6 +48,19 @@ public DefaultAgentModelFactory(Class<? extends AgentModel> agentModelClass) {
 public void readXMLConfig(Element e) {
   className = e.getAttribute("modelClass");
 
+  String poolSizeString = e.getAttribute("poolSize");
+  if (poolSizeString != null && !poolSizeString.isEmpty()) {
+    try {
+      poolSize = Integer.parseInt(poolSizeString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "DefaultAgentModelFactory poolSize must be an integer", nfe);
+    }
+    if (poolSize < 0)
+      throw new UnsupportedOperationException(
+              "DefaultAgentModelFactory poolSize cannot be negative");
+  }
+
   NodeList nl = e.getChildNodes();
   for (int i = 0; i < nl.getLength(); i++) {
     Node node = nl.item(i);
@@ -60,6 +89,13 @@ public void readXMLConfig(Element e) {
 
   initModelClass();
   initParameters();
+  initPools();
+}
+
+private void initPools() {
+  pooling = poolSize > 0 &&
+            ResettableAgentModel.class.isAssignableFrom(agentModelClass);
+  pools = ThreadLocal.withInitial(ArrayDeque::new);
 }
 
 private void initModelClass() {
@@ -141,6 +177,8 @@ private Field recursivelyFindField(Class<?> agentModelClass, String fieldName) {
 public void writeXMLConfig(Element e) {
   Document d = e.getOwnerDocument();
   e.setAttribute("modelClass", agentModelClass.getCanonicalName());
+  if (poolSize != DEFAULT_POOL_SIZE)
+    e.setAttribute("poolSize", Integer.toString(poolSize));
 
   for (Map.Entry<String, String> entry : parameterStrings.entrySet()) {
     Element childE = d.createElement("Parameter");
@@ -158,12 +196,23 @@ public void resumeFromCheckpoint() {
    */
   initModelClass();
   initParameters();
+  initPools();
 }
 
 @Override
 public AgentModel createAgentModel() {
   /*
-   * First, create a new instance of the agent model
+   * Reuse a model released on this thread, if there is one.  Its parameters
+   * are still set.
+   */
+  if (pooling) {
+    AgentModel pooled = pools.get().pollFirst();
+    if (pooled != null)
+      return pooled;
+  }
+
+  /*
+   * Otherwise, create a new instance of the agent model
    */
   AgentModel model;
   try {
@@ -197,6 +246,17 @@ public AgentModel createAgentModel() {
   return model;
 }
 
+@Override
+public void release(AgentModel model) {
+  if (!pooling || !(model instanceof ResettableAgentModel))
+    return;
+  ArrayDeque<AgentModel> pool = pools.get();
+  if (pool.size() < poolSize) {
+    ((ResettableAgentModel) model).reset();
+    pool.addFirst(model);
+  }
+}
+
 @Override
 public void close() {
   // Unnecessary
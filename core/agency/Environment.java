@@ -2,10 +2,18 @@ package agency;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -17,6 +25,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import agency.eval.AdaptiveEvaluationGroupFactory;
 import agency.eval.EvaluationGroup;
 import agency.eval.EvaluationGroupFactory;
 import agency.eval.Evaluator;
@@ -35,9 +44,44 @@ List<ModelSummaryData>      modelSummaryDataOutputs;
 List<ModelPerStepData>      modelPerStepDataOutputs;
 List<EnvironmentStatistics> stats;
 
+/**
+ * Optional timing of each phase of evolve(); see GenerationMetrics.
+ */
+GenerationMetrics metrics;
+
+/*
+ * Progress through the current generation, for monitoring.
+ */
+transient LongAdder groupsCreated;
+transient LongAdder groupsFinished;
+
 transient ZipOutputStream checkpointsArchive;
 Integer checkpointEvery;
 
+/**
+ * If specified, evolve() does not hold every EvaluationGroup of a generation
+ * in memory at once.  Instead, no more than this many groups are created but
+ * not yet evaluated, folded into the aggregate fitnesses and passed to the
+ * model data outputs at any time, so that peak memory depends on this value
+ * rather than on the number of groups per generation.  New groups are
+ * created as soon as earlier ones are finished with.  The Evaluator is given
+ * chunks of up to maxGroupsInFlight / dispatchers groups, from several
+ * dispatch threads at once, where there is one dispatcher per available
+ * processor, but no more than maxGroupsInFlight.  Evaluators that batch
+ * groups, or that serialize their calls, e.g., RemoteEvaluator and
+ * ForkedProcessEvaluator, should be given a maxGroupsInFlight of many times
+ * the number of dispatchers, so that each call has enough groups to be
+ * worthwhile.
+ */
+Integer maxGroupsInFlight;
+
+/*
+ * The threads that hand chunks of groups to the evaluator when
+ * maxGroupsInFlight is set; created when first needed and kept until close()
+ * or until maxGroupsInFlight changes.
+ */
+transient ExecutorService dispatchers;
+
 public Evaluator evaluator;
 
 int generation = 0;
@@ -47,6 +91,8 @@ public Environment() {
   this.stats = new ArrayList<>();
   this.modelSummaryDataOutputs = new ArrayList<>();
   this.modelPerStepDataOutputs = new ArrayList<>();
+  this.groupsCreated = new LongAdder();
+  this.groupsFinished = new LongAdder();
 }
 
 @Override
@@ -69,6 +115,22 @@ public void readXMLConfig(Element e) {
     }
   }
 
+  String maxGroupsInFlightString = e.getAttribute("maxGroupsInFlight");
+  if (maxGroupsInFlightString != null) {
+    if (!maxGroupsInFlightString.isEmpty()) {
+      try {
+        maxGroupsInFlight = Integer.parseInt(maxGroupsInFlightString);
+      } catch (NumberFormatException nfe) {
+        throw new UnsupportedOperationException(
+                "Environment maxGroupsInFlight must be an integer, not '" +
+                maxGroupsInFlightString + "'");
+      }
+      if (maxGroupsInFlight <= 0)
+        throw new UnsupportedOperationException(
+                "Environment maxGroupsInFlight must be positive");
+    }
+  }
+
   NodeList nl = e.getChildNodes();
   for (int i = 0; i < nl.getLength(); i++) {
     Node node = nl.item(i);
@@ -99,6 +161,11 @@ public void readXMLConfig(Element e) {
         modelSummaryDataOutputs.add((ModelSummaryData) xc);
       } else if (xc instanceof EnvironmentStatistics) {
         this.stats.add((EnvironmentStatistics) xc);
+      } else if (xc instanceof GenerationMetrics) {
+        if (metrics != null)
+          throw new UnsupportedOperationException(
+                  "Environment can only have one GenerationMetrics");
+        metrics = (GenerationMetrics) xc;
       }
     }
   }
@@ -138,6 +205,8 @@ private void openCheckpointArchive() {
 @Override
 public void writeXMLConfig(Element e) {
   Document d = e.getOwnerDocument();
+  if (maxGroupsInFlight != null)
+    e.setAttribute("maxGroupsInFlight", maxGroupsInFlight.toString());
   for (PopulationGroup popGroup : populationGroups) {
     Element popGroupE =
             Config.createNamedElement(d, popGroup, "PopulationGroup");
@@ -161,6 +230,8 @@ public void writeXMLConfig(Element e) {
     Element element = Config.createUnnamedElement(d, reporter);
     e.appendChild(element);
   }
+  if (metrics != null)
+    e.appendChild(Config.createUnnamedElement(d, metrics));
 }
 
 @Override
@@ -174,6 +245,10 @@ public void resumeFromCheckpoint() {
   modelPerStepDataOutputs.forEach(XMLConfigurable::resumeFromCheckpoint);
   stats.forEach(XMLConfigurable::resumeFromCheckpoint);
   evaluator.resumeFromCheckpoint();
+  if (metrics != null)
+    metrics.resumeFromCheckpoint();
+  groupsCreated = new LongAdder();
+  groupsFinished = new LongAdder();
 }
 
 public static void fitnessAccumulator(
@@ -206,49 +281,77 @@ private void closeCheckpointArchive() {
 }
 
 public void evolve() {
+  try {
+    evolveGeneration();
+  } finally {
+    /*
+     * If the generation failed part way, a phase may still be being timed,
+     * which would stop the next generation from timing anything.
+     */
+    if (metrics != null)
+      metrics.abandonGeneration();
+  }
+}
+
+private void evolveGeneration() {
 
+  /*
+   * Data output tasks, which are run in parallel.  There should (ideally) be
+   * a 1:1 mapping between output files and FutureTask objects, so that there
+   * are no race conditions in the data output.
+   */
+  ExecutorService executorService = ForkJoinPool.commonPool();
+  List<FutureTask<Boolean>> outputTasks = new ArrayList<>();
+  groupsCreated.reset();
+  groupsFinished.reset();
+
+  beginPhase(GenerationMetrics.Phase.EVALUATE);
+  evaluator.beginGeneration(this);
+  endPhase();
+
+  beginPhase(GenerationMetrics.Phase.CREATE);
   Stream<EvaluationGroup> egs =
           evaluationGroupFactory.createEvaluationGroups(this);
-  List<EvaluationGroup> evaluatedGroups =
-          evaluator.evaluate(egs).collect(Collectors.toList());
+  endPhase();
 
-  // Aggregate fitnesses
-  Map<Individual, Fitness> aggFitnesses = evaluatedGroups.parallelStream()
-                                                         .map(eg -> eg.getResults())
-                                                         .collect(
-                                                                 Environment::newFitnessMap,
-                                                                 Environment::fitnessAccumulator,
-                                                                 Environment::fitnessAccumulator
-                                                         );
+  Map<Individual, Fitness> aggFitnesses =
+          evaluate(egs, newFitnessMap(), executorService, outputTasks);
+
+  /*
+   * Adaptive factories may request further waves of evaluation, based on the
+   * results so far.  Each wave's model data output must finish before the
+   * next wave's starts, since both write to the same files.
+   */
+  if (evaluationGroupFactory instanceof AdaptiveEvaluationGroupFactory) {
+    AdaptiveEvaluationGroupFactory adaptive =
+            (AdaptiveEvaluationGroupFactory) evaluationGroupFactory;
+    Stream<EvaluationGroup> wave;
+    while (true) {
+      beginPhase(GenerationMetrics.Phase.CREATE);
+      wave = adaptive.nextWave(this, aggFitnesses);
+      endPhase();
+      if (wave == null)
+        break;
+      beginPhase(GenerationMetrics.Phase.OUTPUT);
+      awaitTasks(outputTasks);
+      endPhase();
+      outputTasks.clear();
+      aggFitnesses = evaluate(wave, aggFitnesses, executorService, outputTasks);
+    }
+  }
 
   // Assign fitness
+  beginPhase(GenerationMetrics.Phase.AGGREGATE);
   aggFitnesses.entrySet().parallelStream().forEach(
           entry -> entry.getKey().setFitness(entry.getValue()));
+  endPhase();
 
   /*
-   * Do data output tasks, in parallel.  There should (ideally) be a 1:1 mapping between
-   * output files and FutureTask objects, so that there are no race conditions in the
-   * data output.  Also, these should all be read-only operations; further processing
-   * that modifies the population state (e.g., reproduction) must take place only after
-   * all of these tasks have finished.
+   * Population and environment data outputs.  These should all be read-only
+   * operations; further processing that modifies the population state (e.g.,
+   * reproduction) must take place only after all of these tasks have
+   * finished.
    */
-  ExecutorService executorService = ForkJoinPool.commonPool();
-  List<FutureTask> outputTasks = new ArrayList<>();
-  for (ModelSummaryData reporter : modelSummaryDataOutputs) {
-    ModelSummaryDataHelper msdh = new ModelSummaryDataHelper(getGeneration(),
-                                                             reporter,
-                                                             evaluatedGroups);
-    FutureTask<Boolean> task = new FutureTask<>(msdh, true);
-    outputTasks.add(task);
-    executorService.execute(task);
-  }
-  for (ModelPerStepData reporter : modelPerStepDataOutputs) {
-    ModelStepDataHelper msdh =
-            new ModelStepDataHelper(generation, reporter, evaluatedGroups);
-    FutureTask<Boolean> task = new FutureTask<>(msdh, true);
-    outputTasks.add(task);
-    executorService.execute(task);
-  }
   for (PopulationGroup pg : populationGroups) {
     for (Population p : pg.getPopulations()) {
       for (PopulationData pdo : p.getPopulationDataOutputs()) {
@@ -267,15 +370,9 @@ public void evolve() {
     executorService.execute(task);
   }
   // Wait for the data output tasks to finish.
-  for (FutureTask<Boolean> task : outputTasks) {
-    try {
-      task.get();
-    } catch (InterruptedException e) {
-      e.printStackTrace();
-    } catch (ExecutionException e) {
-      e.printStackTrace();
-    }
-  }
+  beginPhase(GenerationMetrics.Phase.OUTPUT);
+  awaitTasks(outputTasks);
+  endPhase();
   /*
    * Data output should now be complete.  It should be safe to modify the population state
    * for the next generation.
@@ -286,7 +383,9 @@ public void evolve() {
   // TODO: Balance populations inside of populationGroups.
 
   // Reproduce populations
+  beginPhase(GenerationMetrics.Phase.REPRODUCE);
   populationGroups.parallelStream().forEach(pg -> pg.reproduce(this));
+  endPhase();
   //  for (PopulationGroup popGroup : populationGroups) {
   //    popGroup.reproduce();
   //  }
@@ -295,11 +394,283 @@ public void evolve() {
   // Save checkpoint, if appropriate
   if (checkpointEvery != null)
     if ((generation % checkpointEvery) == 0) {
+      beginPhase(GenerationMetrics.Phase.CHECKPOINT);
       saveCheckpoint(this);
+      endPhase();
     }
 
+  if (metrics != null)
+    metrics.endGeneration(generation);
+
   generation++;
-}public static void saveCheckpoint(Environment env) {
+}
+
+private void beginPhase(GenerationMetrics.Phase phase) {
+  if (metrics != null)
+    metrics.begin(phase);
+}
+
+private void endPhase() {
+  if (metrics != null)
+    metrics.end();
+}
+
+/**
+ * Evaluates a stream of EvaluationGroups, adds their results to the aggregate
+ * fitnesses, and submits the model data output tasks for them.
+ *
+ * @param egs
+ *         The EvaluationGroups to evaluate
+ * @param aggFitnesses
+ *         The aggregate fitnesses so far this generation
+ * @param executorService
+ *         The executor used to run the model data output tasks
+ * @param outputTasks
+ *         Model data output tasks that have not yet finished are added here
+ * @return The aggregate fitnesses, including the new results
+ */
+private Map<Individual, Fitness> evaluate(
+        Stream<EvaluationGroup> egs,
+        Map<Individual, Fitness> aggFitnesses,
+        ExecutorService executorService,
+        List<FutureTask<Boolean>> outputTasks) {
+  boolean recordStepData = !modelPerStepDataOutputs.isEmpty();
+  egs = egs.peek(eg -> {
+    eg.setFinishedCounter(groupsFinished);
+    eg.setRecordStepData(recordStepData);
+    groupsCreated.increment();
+  });
+  if (maxGroupsInFlight != null)
+    return evaluateStreaming(egs, aggFitnesses);
+
+  List<EvaluationGroup> evaluatedGroups;
+  if (metrics != null) {
+    // Create the groups first, so that creation is timed separately
+    beginPhase(GenerationMetrics.Phase.CREATE);
+    List<EvaluationGroup> created = egs.collect(Collectors.toList());
+    endPhase();
+    beginPhase(GenerationMetrics.Phase.EVALUATE);
+    evaluatedGroups =
+            evaluator.evaluate(created.stream()).collect(Collectors.toList());
+    endPhase();
+    countEvaluated(evaluatedGroups);
+  } else {
+    evaluatedGroups = evaluator.evaluate(egs).collect(Collectors.toList());
+  }
+
+  // Aggregate fitnesses
+  beginPhase(GenerationMetrics.Phase.AGGREGATE);
+  Map<Individual, Fitness> newFitnesses =
+          evaluatedGroups.parallelStream()
+                         .map(eg -> eg.getResults())
+                         .collect(
+                                 Environment::newFitnessMap,
+                                 Environment::fitnessAccumulator,
+                                 Environment::fitnessAccumulator
+                         );
+  if (aggFitnesses.isEmpty())
+    aggFitnesses = newFitnesses;
+  else
+    fitnessAccumulator(aggFitnesses, newFitnesses);
+  endPhase();
+
+  submitModelDataOutputTasks(executorService, outputTasks, evaluatedGroups);
+  return aggFitnesses;
+}
+
+/**
+ * Evaluates EvaluationGroups with at most maxGroupsInFlight of them created
+ * but not yet finished with at once.  Groups are created lazily from the
+ * stream, in chunks of maxGroupsInFlight / dispatchers, and each chunk is
+ * handed to the evaluator by one of the dispatch threads as soon as there is
+ * room for it, so that every dispatcher can be busy at once.  As each chunk
+ * is evaluated, the calling thread folds it into the aggregate fitnesses and
+ * writes it to the model data outputs, so that a slow chunk holds up nothing
+ * but itself, and evaluated groups can be garbage collected as soon as
+ * possible.
+ * <p>
+ * The evaluator's evaluate() is therefore called from several threads at
+ * once.
+ *
+ * @param egs
+ *         The EvaluationGroups to evaluate
+ * @param aggFitnesses
+ *         The aggregate fitnesses so far this generation
+ * @return The aggregate fitnesses, including the new results
+ */
+private Map<Individual, Fitness> evaluateStreaming(
+        Stream<EvaluationGroup> egs,
+        Map<Individual, Fitness> aggFitnesses) {
+  int chunkSize = Math.max(1, maxGroupsInFlight / numDispatchers());
+  CompletionService<List<EvaluationGroup>> evaluated =
+          new ExecutorCompletionService<>(getDispatchers());
+  // The size of each chunk submitted but not yet finished with
+  Map<Future<List<EvaluationGroup>>, Integer> pending = new HashMap<>();
+  // Evaluation overlaps the other phases, so its wall time is timed apart
+  Long firstSubmitted = null;
+  AtomicLong lastEvaluated = new AtomicLong();
+  int inFlight = 0;
+  boolean done = false;
+  try {
+    Iterator<EvaluationGroup> unevaluated = egs.iterator();
+    while (true) {
+      // Finish with chunks evaluated, until there is room for another
+      while (inFlight > maxGroupsInFlight - chunkSize)
+        inFlight -= finishStreamed(evaluated, pending, aggFitnesses);
+
+      beginPhase(GenerationMetrics.Phase.CREATE);
+      List<EvaluationGroup> chunk = new ArrayList<>(chunkSize);
+      while (chunk.size() < chunkSize && unevaluated.hasNext())
+        chunk.add(unevaluated.next());
+      endPhase();
+      if (chunk.isEmpty())
+        break;
+      if (firstSubmitted == null)
+        firstSubmitted = System.nanoTime();
+      pending.put(evaluated.submit(() -> {
+        List<EvaluationGroup> result = evaluator.evaluate(chunk.stream())
+                                                .collect(Collectors.toList());
+        lastEvaluated.accumulateAndGet(System.nanoTime(), Math::max);
+        return result;
+      }), chunk.size());
+      inFlight += chunk.size();
+    }
+
+    while (inFlight > 0)
+      inFlight -= finishStreamed(evaluated, pending, aggFitnesses);
+    done = true;
+    if (metrics != null && firstSubmitted != null)
+      metrics.addEvaluationSpan(lastEvaluated.get() - firstSubmitted);
+  } finally {
+    // The dispatchers are kept, so stop what they are still evaluating
+    if (!done)
+      for (Future<List<EvaluationGroup>> chunk : pending.keySet())
+        chunk.cancel(true);
+  }
+
+  return aggFitnesses;
+}
+
+/**
+ * @return The number of threads handing chunks of groups to the evaluator
+ * when maxGroupsInFlight is set
+ */
+private int numDispatchers() {
+  return Math.min(maxGroupsInFlight,
+                  Runtime.getRuntime().availableProcessors());
+}
+
+private ExecutorService getDispatchers() {
+  if (dispatchers == null)
+    dispatchers = Executors.newFixedThreadPool(numDispatchers(), r -> {
+      Thread t = new Thread(r, "Environment dispatcher");
+      t.setDaemon(true);
+      return t;
+    });
+  return dispatchers;
+}
+
+private void closeDispatchers() {
+  if (dispatchers != null) {
+    dispatchers.shutdownNow();
+    dispatchers = null;
+  }
+}
+
+/**
+ * Waits for the next chunk evaluated by evaluateStreaming(), adds its
+ * results to the aggregate fitnesses, and writes it to the model data
+ * outputs.
+ *
+ * @return The number of groups in the chunk when it was submitted
+ */
+private int finishStreamed(
+        CompletionService<List<EvaluationGroup>> evaluated,
+        Map<Future<List<EvaluationGroup>>, Integer> pending,
+        Map<Individual, Fitness> aggFitnesses) {
+  beginPhase(GenerationMetrics.Phase.EVALUATE);
+  List<EvaluationGroup> evaluatedGroups;
+  int submitted;
+  try {
+    Future<List<EvaluationGroup>> chunk = evaluated.take();
+    submitted = pending.remove(chunk);
+    evaluatedGroups = chunk.get();
+  } catch (InterruptedException e) {
+    throw new RuntimeException("Interrupted while evaluating", e);
+  } catch (ExecutionException e) {
+    if (e.getCause() instanceof RuntimeException)
+      throw (RuntimeException) e.getCause();
+    throw new RuntimeException("EvaluationGroups could not be evaluated",
+                               e.getCause());
+  } finally {
+    endPhase();
+  }
+  if (metrics != null)
+    countEvaluated(evaluatedGroups);
+
+  beginPhase(GenerationMetrics.Phase.AGGREGATE);
+  for (EvaluationGroup eg : evaluatedGroups)
+    fitnessAccumulator(aggFitnesses, eg.getResults());
+  endPhase();
+
+  // Written by this thread, one chunk at a time, so in order
+  List<FutureTask<Boolean>> outputTasks = new ArrayList<>();
+  beginPhase(GenerationMetrics.Phase.OUTPUT);
+  submitModelDataOutputTasks(Runnable::run, outputTasks, evaluatedGroups);
+  awaitTasks(outputTasks);
+  endPhase();
+  return submitted;
+}
+
+private void countEvaluated(List<EvaluationGroup> evaluatedGroups) {
+  long evaluations = 0;
+  for (EvaluationGroup eg : evaluatedGroups)
+    evaluations += eg.getResults().size();
+  metrics.addEvaluated(evaluatedGroups.size(), evaluations);
+}
+
+private void submitModelDataOutputTasks(
+        Executor executor,
+        List<FutureTask<Boolean>> outputTasks,
+        List<EvaluationGroup> evaluatedGroups) {
+  for (ModelSummaryData reporter : modelSummaryDataOutputs) {
+    ModelSummaryDataHelper msdh = new ModelSummaryDataHelper(getGeneration(),
+                                                             reporter,
+                                                             evaluatedGroups);
+    FutureTask<Boolean> task = new FutureTask<>(msdh, true);
+    outputTasks.add(task);
+    executor.execute(task);
+  }
+  if (modelPerStepDataOutputs.isEmpty()) {
+    for (EvaluationGroup eg : evaluatedGroups)
+      eg.releaseStepData();
+    return;
+  }
+  // The last reporter to finish returns the groups' StepDataBuffers for reuse
+  AtomicInteger remaining = new AtomicInteger(modelPerStepDataOutputs.size());
+  for (ModelPerStepData reporter : modelPerStepDataOutputs) {
+    ModelStepDataHelper msdh =
+            new ModelStepDataHelper(generation, reporter, evaluatedGroups,
+                                    remaining);
+    FutureTask<Boolean> task = new FutureTask<>(msdh, true);
+    outputTasks.add(task);
+    executor.execute(task);
+  }
+}
+
+private static void awaitTasks(List<FutureTask<Boolean>> tasks) {
+  for (FutureTask<Boolean> task : tasks) {
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (ExecutionException e) {
+      e.printStackTrace();
+    }
+  }
+}
+
+public static void saveCheckpoint(Environment env) {
   // TODO: Under construction.
   try {
     String testFileName = "checkpoint.gen-" + env.getGeneration() + ".ser";
@@ -346,6 +717,39 @@ private void saveCheckpointToArchive() {
   }
 }
 
+/**
+ * @return The phase timings of the last generation, or null if no
+ * GenerationMetrics was configured.
+ */
+public GenerationMetrics getGenerationMetrics() {
+  return metrics;
+}
+
+/**
+ * @param metrics
+ *         Where to record the timing of each phase of evolve(), or null not
+ *         to record it
+ */
+public void setGenerationMetrics(GenerationMetrics metrics) {
+  this.metrics = metrics;
+}
+
+/**
+ * @return The number of EvaluationGroups created so far in the current (or
+ * most recent) generation
+ */
+public long getGroupsCreated() {
+  return groupsCreated.sum();
+}
+
+/**
+ * @return The number of EvaluationGroups that have finished so far in the
+ * current (or most recent) generation
+ */
+public long getGroupsFinished() {
+  return groupsFinished.sum();
+}
+
 public int getGeneration() {
   return generation;
 }
@@ -366,6 +770,21 @@ public void setAgentModelFactory(AgentModelFactory<?> agentModelFactory) {
   this.agentModelFactory = agentModelFactory;
 }
 
+public Integer getMaxGroupsInFlight() {
+  return maxGroupsInFlight;
+}
+
+/**
+ * @param maxGroupsInFlight
+ *         The maximum number of EvaluationGroups held in memory at once
+ *         during evolve(), or null to evaluate the whole generation at once.
+ */
+public void setMaxGroupsInFlight(Integer maxGroupsInFlight) {
+  this.maxGroupsInFlight = maxGroupsInFlight;
+  // Sized for the old value
+  closeDispatchers();
+}
+
 public List<PopulationGroup> getPopulationGroups() {
   return populationGroups;
 }
@@ -401,6 +820,7 @@ public void close() {
     pg.close();
   }
 
+  closeDispatchers();
   evaluator.close();
   agentModelFactory.close();
   for (ModelSummaryData msd : modelSummaryDataOutputs) {
@@ -412,6 +832,8 @@ public void close() {
   for (EnvironmentStatistics es : stats) {
     es.close();
   }
+  if (metrics != null)
+    metrics.close();
 
 }
 
@@ -465,22 +887,36 @@ private static class ModelStepDataHelper
   int                   generation;
   ModelPerStepData      reporter;
   List<EvaluationGroup> evaluatedGroups;
+  AtomicInteger         remainingReporters;
 
   ModelStepDataHelper(
           int generation,
           ModelPerStepData reporter,
-          List<EvaluationGroup> evaluatedGroups) {
+          List<EvaluationGroup> evaluatedGroups,
+          AtomicInteger remainingReporters) {
     this.generation = generation;
     this.reporter = reporter;
     this.evaluatedGroups = evaluatedGroups;
+    this.remainingReporters = remainingReporters;
   }
 
   @Override
   public void run() {
-    for (EvaluationGroup eg : evaluatedGroups) {
-      List<EvaluationGroup.PerStepData> perStepData = eg.getPerStepData();
-      UUID modelUUID = eg.getId();
-      reporter.writePerStepData(generation, modelUUID, perStepData);
+    try {
+      for (EvaluationGroup eg : evaluatedGroups) {
+        UUID modelUUID = eg.getId();
+        StepDataBuffer stepData = eg.getStepDataBuffer();
+        if (stepData != null) {
+          reporter.writeStepData(generation, modelUUID, stepData);
+        } else {
+          List<EvaluationGroup.PerStepData> perStepData = eg.getPerStepData();
+          reporter.writePerStepData(generation, modelUUID, perStepData);
+        }
+      }
+    } finally {
+      if (remainingReporters.decrementAndGet() == 0)
+        for (EvaluationGroup eg : evaluatedGroups)
+          eg.releaseStepData();
     }
   }
 }
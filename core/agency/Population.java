@@ -79,6 +79,12 @@ AgentFactory agentFactory;
  */
 BreedingPipeline breedingPipeline;
 
+/**
+ The breedingPipeline, compiled with BreedingPipeline.compile() the first time
+ it is used, e.g., so that a chain of vector pipelines runs as one operator.
+ */
+transient BreedingPipeline compiledPipeline;
+
 /**
  These objects are responsible for writing data about this population to
  output files for analysis by other programs, i.e., a graphing or statistics
@@ -308,11 +314,14 @@ public void reproduce(Environment env, int populationSize) {
  populations in a PopulationGroup. */
 public void definatelyReproduce(Environment env, int populationSize) {
 
-  breedingPipeline.setSourcePopulation(this);
+  if (compiledPipeline == null)
+    compiledPipeline = breedingPipeline.compile();
+  BreedingPipeline pipeline = compiledPipeline;
+  pipeline.setSourcePopulation(this);
   List<Individual> newPopulation = IntStream.range(0, populationSize)
           .mapToObj((i) -> {
             Individual ind =
-                    breedingPipeline.generate();
+                    pipeline.generate();
             return ind;
           }).collect(Collectors.toList());
 
@@ -337,6 +346,10 @@ public Agent createAgent(Individual ind) {
   return agentFactory.createAgent(ind);
 }
 
+public AgentFactory getAgentFactory() {
+  return agentFactory;
+}
+
 @Override
 public String toString() {
   return "Population{" +
@@ -0,0 +1,22 @@
+package agency;
+
+/**
+ * An AgentModel that can be reused for another EvaluationGroup once it has
+ * finished, instead of being garbage collected.  Factories that pool models
+ * (e.g., DefaultAgentModelFactory) only reuse models that implement this
+ * interface.
+ */
+public interface ResettableAgentModel extends AgentModel {
+/**
+ * Returns the model to the state it was in when its factory created it,
+ * i.e., with its parameters set but no agents added and debugging disabled,
+ * so that it can be used for another EvaluationGroup.
+ * <p>
+ * Parameter fields must not be changed, because the factory does not set them
+ * again.  Large buffers (e.g., per-step arrays) should be kept, so that the
+ * next init() can reuse them.  This is only called after fitness, summary and
+ * per-step data have been collected, so anything previously returned by
+ * getFitness(), getSummaryData() or getStepData() must not be modified.
+ */
+void reset();
+}
@@ -5,12 +5,56 @@ public static final long serialVersionUID = 1L;
 
 int    numSamples;
 double totalFitness;
+double totalSquaredFitness;
 
 public SimpleFitness(double fitness) {
   this.totalFitness = fitness;
+  this.totalSquaredFitness = fitness * fitness;
   numSamples = 1;
 }
 
+/**
+ * Creates a SimpleFitness from an existing total.  Since the individual
+ * samples are not known, they are treated as all being equal to the average,
+ * i.e., the variance is zero.
+ */
+public SimpleFitness(double totalFitness, int numSamples) {
+  this(totalFitness, totalFitness * totalFitness / numSamples, numSamples);
+}
+
+public SimpleFitness(double totalFitness, double totalSquaredFitness,
+                     int numSamples) {
+  this.totalFitness = totalFitness;
+  this.totalSquaredFitness = totalSquaredFitness;
+  this.numSamples = numSamples;
+}
+
+public double getTotalFitness() {
+  return totalFitness;
+}
+
+public double getTotalSquaredFitness() {
+  return totalSquaredFitness;
+}
+
+public int getNumSamples() {
+  return numSamples;
+}
+
+/**
+ * @return The sample variance of the fitness samples combined into this
+ * object, or NaN if there are fewer than two.
+ */
+public double getVariance() {
+  if (numSamples < 2)
+    return Double.NaN;
+  double mean = totalFitness / numSamples;
+  double variance = (totalSquaredFitness - numSamples * mean * mean) /
+                    (numSamples - 1);
+  // Guard against small negative values from rounding
+  return Math.max(variance, 0d);
+}
+
 public Double getAverageFitness() {
   return totalFitness / numSamples;
 }
@@ -38,6 +82,7 @@ public void combine(Fitness other) {
   SimpleFitness sf = (SimpleFitness) other;
   this.numSamples += sf.numSamples;
   this.totalFitness += sf.totalFitness;
+  this.totalSquaredFitness += sf.totalSquaredFitness;
 }
 
 }
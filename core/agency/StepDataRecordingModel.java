@@ -0,0 +1,31 @@
+package agency;
+
+import agency.data.StepDataBuffer;
+import agency.data.StepDataLayout;
+
+/**
+ * An AgentModel that records its per-step data as primitives into a
+ * StepDataBuffer, rather than returning a new object from getStepData() on
+ * every step.  The EvaluationGroup acquires a buffer from the model's layout
+ * after init(), and takes it back after finish(); getStepData() is not called.
+ * If nothing will write the per-step data, no buffer is acquired, and the
+ * model is given null instead.
+ */
+public interface StepDataRecordingModel extends AgentModel {
+
+/**
+ * @return The layout of this model's per-step data.  This should be the same
+ * object for every instance of the model class, so that buffers are pooled
+ * between them.
+ */
+StepDataLayout getStepDataLayout();
+
+/**
+ * @param buffer
+ *         The buffer to record step data into, or null if step data is not
+ *         being recorded, or when recording is over and the buffer must no
+ *         longer be written.
+ */
+void setStepDataBuffer(StepDataBuffer buffer);
+
+}
@@ -11,10 +11,10 @@ public class DefaultDataObjectManager implements Serializable {
 
 private Class expectedClass;
 
-transient private Field[]      fields;
-transient private List<String> fieldNames;
+transient private volatile Field[] fields;
+transient private List<String>     fieldNames;
 
-private boolean passThrough = false;
+private volatile boolean passThrough = false;
 
 
 /**
@@ -25,10 +25,10 @@ private boolean passThrough = false;
  on a given instance of this class.
  @return  */
 public AgencyData process(Object o) {
+  if (fields == null && !passThrough)
+    initialize(o);
   if (passThrough)
     return (AgencyData) o;
-  if (fields == null)
-    initialize(o);
 
   List<Object> data = new ArrayList<>();
 
@@ -45,7 +45,13 @@ public AgencyData process(Object o) {
 
 }
 
-private void initialize(Object o) {
+/*
+ * Synchronized, since the first objects may be written from several threads
+ * at once.  fields is assigned last, so that it is only seen complete.
+ */
+private synchronized void initialize(Object o) {
+  if (fields != null || passThrough)
+    return;
 
   if (o instanceof AgencyData) {
     passThrough = true;
@@ -64,17 +70,18 @@ private void initialize(Object o) {
   Field[] parentPublicFields = expectedClass.getFields();
   for (Field f : parentPublicFields) allFields.add(f);
 
-  fields = allFields.toArray(new Field[0]);
+  Field[] sorted = allFields.toArray(new Field[0]);
 
   // Sort fields alphabetically by name.
-  Arrays.sort(fields, (o1, o2) -> o1.getName().compareTo(o2.getName()));
+  Arrays.sort(sorted, (o1, o2) -> o1.getName().compareTo(o2.getName()));
 
   // Create a fieldNames list, so it can always be reused in the created
   // AgencyData object.
   fieldNames = new ArrayList<>();
-  for (int i = 0; i < fields.length; i++) {
-    fieldNames.add(fields[i].getName());
+  for (int i = 0; i < sorted.length; i++) {
+    fieldNames.add(sorted[i].getName());
   }
+  fields = sorted;
 
 }
 
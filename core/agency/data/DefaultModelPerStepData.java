@@ -30,4 +30,15 @@ public void writePerStepData(int generation,
   }
 }
 
+@Override
+public void writeStepData(int generation,
+                          UUID modelUUID,
+                          StepDataBuffer data) {
+  StepDataBuffer.StepView view = data.view();
+  for (int step = data.getFirstStep(); step < data.getSteps(); step++) {
+    view.setStep(step);
+    write(view, generation, modelUUID, step);
+  }
+}
+
 }
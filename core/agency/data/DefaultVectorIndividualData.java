@@ -86,7 +86,7 @@ public void writePopulationData(int generation, Population pop) {
     }
 
     // Genome
-    d.genome = Arrays.asList(vi.getGenome());
+    d.genome = vi.geneView();
     write(d);
   });
 
@@ -112,7 +112,7 @@ public void fitnessLandscapeSample(int baseGeneration, int generationOffset,
     // TODO better error message.
     throw new RuntimeException(cce);
   }
-  fld.genome = Arrays.asList(vi.getGenome());
+  fld.genome = vi.geneView();
   SimpleFitness sf = (SimpleFitness) vi.getFitness();
   fld.fitness = sf.getAverageFitness();
 
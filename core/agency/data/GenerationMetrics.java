@@ -0,0 +1,328 @@
+package agency.data;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each phase of Environment.evolve() takes, and writes one
+ * line per generation.  For each phase, the line has the wall time, the CPU
+ * time used by the whole process (i.e., by all threads, including those
+ * evaluating groups and writing data in parallel), and the bytes allocated by
+ * all live threads.  It also has the number of groups and individual
+ * evaluations, and their rates per second of evaluation wall time.
+ * <p>
+ * Evaluation wall time is usually that of the EVALUATE phase.  When
+ * Environment streams groups, though, evaluation overlaps the other phases,
+ * and the EVALUATE phase only covers the time spent waiting for it; the
+ * evaluation wall time is then from when the first group was handed to the
+ * Evaluator to when the last was evaluated, so that the rates are comparable
+ * either way.
+ * <p>
+ * CPU time and allocation are only available on JVMs that provide
+ * com.sun.management's extended MXBeans; otherwise they are reported as -1.
+ * Allocation by threads that end during a phase is not counted.
+ * <p>
+ * Configured as, e.g., &lt;GenerationMetrics file="metrics.csv"/&gt;.
+ */
+public class GenerationMetrics
+        extends DataOutput {
+public static final long serialVersionUID = 1L;
+
+public enum Phase {
+  /**
+   * Creating EvaluationGroups
+   */
+  CREATE,
+  /**
+   * Running EvaluationGroups, in the Evaluator
+   */
+  EVALUATE,
+  /**
+   * Combining the fitness results of groups and assigning them
+   */
+  AGGREGATE,
+  /**
+   * Waiting for model, population and environment data output
+   */
+  OUTPUT,
+  /**
+   * Breeding the next generation
+   */
+  REPRODUCE,
+  /**
+   * Saving a checkpoint
+   */
+  CHECKPOINT
+}
+
+/*
+ * Totals for the generation in progress, and for the last one finished.
+ */
+transient Map<Phase, long[]> current;
+transient Map<Phase, long[]> last;
+transient long               groups;
+transient long               evaluations;
+transient long               lastGroups;
+transient long               lastEvaluations;
+transient long               evaluationSpan;
+transient long               lastEvaluationSpan;
+
+/*
+ * The readings when the phase in progress began.
+ */
+transient Phase phase;
+transient long  phaseWall;
+transient long  phaseCpu;
+transient long  phaseAllocated;
+
+public GenerationMetrics() {
+  super();
+  String[] prefixHeaders = {"Generation"};
+  setPrefixHeaders(prefixHeaders);
+}
+
+/**
+ * Constructor for when called programmatically.
+ *
+ * @param outputFilename
+ *         The file to write one line per generation to
+ */
+public GenerationMetrics(String outputFilename) {
+  super(outputFilename);
+  String[] prefixHeaders = {"Generation"};
+  setPrefixHeaders(prefixHeaders);
+}
+
+private Map<Phase, long[]> getCurrent() {
+  if (current == null)
+    current = newTotals();
+  return current;
+}
+
+private static Map<Phase, long[]> newTotals() {
+  Map<Phase, long[]> totals = new EnumMap<>(Phase.class);
+  for (Phase p : Phase.values())
+    totals.put(p, new long[3]);
+  return totals;
+}
+
+/**
+ * Starts timing a phase.  Phases do not nest; a phase may be timed several
+ * times in one generation, and the times are added together.
+ */
+public void begin(Phase phase) {
+  if (this.phase != null)
+    throw new RuntimeException("Cannot begin " + phase + " during " +
+                               this.phase);
+  this.phase = phase;
+  phaseCpu = processCpuNanos();
+  phaseAllocated = allocatedBytes();
+  phaseWall = System.nanoTime();
+}
+
+/**
+ * Stops timing the phase in progress.
+ */
+public void end() {
+  long wall = System.nanoTime() - phaseWall;
+  long[] totals = getCurrent().get(phase);
+  totals[0] += wall;
+  totals[1] += difference(processCpuNanos(), phaseCpu);
+  totals[2] += difference(allocatedBytes(), phaseAllocated);
+  phase = null;
+}
+
+private static long difference(long end, long start) {
+  if (end < 0 || start < 0)
+    return -1;
+  return Math.max(0, end - start);
+}
+
+/**
+ * Adds evaluated groups to the generation's totals.
+ *
+ * @param numGroups
+ *         The number of groups
+ * @param numEvaluations
+ *         The number of individual evaluations in them
+ */
+public void addEvaluated(long numGroups, long numEvaluations) {
+  groups += numGroups;
+  evaluations += numEvaluations;
+}
+
+/**
+ * Adds wall time during which groups were being evaluated alongside other
+ * phases, e.g., while Environment streams them.  If any is added in a
+ * generation, it is used for the rates per second instead of the EVALUATE
+ * phase.
+ *
+ * @param wallNanos
+ *         From when the first group was handed to the Evaluator to when the
+ *         last was evaluated
+ */
+public void addEvaluationSpan(long wallNanos) {
+  evaluationSpan += wallNanos;
+}
+
+/**
+ * Discards the generation in progress, if any, including a phase still being
+ * timed, e.g., because evolve() threw an exception during it.  Does nothing
+ * after endGeneration().
+ */
+public void abandonGeneration() {
+  phase = null;
+  current = null;
+  groups = 0;
+  evaluations = 0;
+  evaluationSpan = 0;
+}
+
+/**
+ * Writes the metrics for the generation, and starts a new one.
+ */
+public void endGeneration(int generation) {
+  last = getCurrent();
+  lastGroups = groups;
+  lastEvaluations = evaluations;
+  lastEvaluationSpan = evaluationSpan;
+  current = null;
+  groups = 0;
+  evaluations = 0;
+  evaluationSpan = 0;
+  write(new Data(), generation);
+}
+
+/**
+ * @return The wall time of the phase in the last generation, in nanoseconds
+ */
+public long getWallNanos(Phase phase) {
+  return last == null ? 0 : last.get(phase)[0];
+}
+
+/**
+ * @return The process CPU time during the phase in the last generation, in
+ * nanoseconds, or -1 if unavailable
+ */
+public long getCpuNanos(Phase phase) {
+  return last == null ? 0 : last.get(phase)[1];
+}
+
+/**
+ * @return The bytes allocated during the phase in the last generation, or -1
+ * if unavailable
+ */
+public long getAllocatedBytes(Phase phase) {
+  return last == null ? 0 : last.get(phase)[2];
+}
+
+/**
+ * @return The evaluation wall time of the last generation, in nanoseconds:
+ * that added by addEvaluationSpan(), if any, or else that of the EVALUATE
+ * phase
+ */
+public long getEvaluationWallNanos() {
+  if (lastEvaluationSpan > 0)
+    return lastEvaluationSpan;
+  return getWallNanos(Phase.EVALUATE);
+}
+
+public long getGroups() {
+  return lastGroups;
+}
+
+public long getEvaluations() {
+  return lastEvaluations;
+}
+
+/**
+ * @return Groups evaluated per second of evaluation wall time in the last
+ * generation
+ */
+public double getGroupsPerSecond() {
+  return perSecond(lastGroups);
+}
+
+/**
+ * @return Individual evaluations per second of evaluation wall time in the
+ * last generation
+ */
+public double getEvaluationsPerSecond() {
+  return perSecond(lastEvaluations);
+}
+
+private double perSecond(long count) {
+  long wall = getEvaluationWallNanos();
+  if (wall == 0)
+    return 0d;
+  return count * 1e9 / wall;
+}
+
+private static long processCpuNanos() {
+  OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+  if (os instanceof com.sun.management.OperatingSystemMXBean)
+    return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+  return -1;
+}
+
+private static long allocatedBytes() {
+  ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  if (!(threads instanceof com.sun.management.ThreadMXBean))
+    return -1;
+  com.sun.management.ThreadMXBean sunThreads =
+          (com.sun.management.ThreadMXBean) threads;
+  if (!sunThreads.isThreadAllocatedMemorySupported() ||
+      !sunThreads.isThreadAllocatedMemoryEnabled())
+    return -1;
+  long total = 0;
+  for (long allocated :
+          sunThreads.getThreadAllocatedBytes(sunThreads.getAllThreadIds()))
+    if (allocated > 0)
+      total += allocated;
+  return total;
+}
+
+class Data
+        implements AgencyData {
+
+  @Override
+  public List<String> getHeaders() {
+    List<String> headers = new ArrayList<>();
+    for (Phase p : Phase.values()) {
+      String name = p.name().toLowerCase();
+      headers.add(name + "WallMillis");
+      headers.add(name + "CpuMillis");
+      headers.add(name + "AllocatedBytes");
+    }
+    headers.add("evaluationWallMillis");
+    headers.add("groups");
+    headers.add("evaluations");
+    headers.add("groupsPerSecond");
+    headers.add("evaluationsPerSecond");
+    return headers;
+  }
+
+  @Override
+  public List<Object> getValues() {
+    List<Object> values = new ArrayList<>();
+    for (Phase p : Phase.values()) {
+      values.add(getWallNanos(p) / 1e6);
+      long cpu = getCpuNanos(p);
+      values.add(cpu < 0 ? -1 : cpu / 1e6);
+      values.add(getAllocatedBytes(p));
+    }
+    values.add(getEvaluationWallNanos() / 1e6);
+    values.add(lastGroups);
+    values.add(lastEvaluations);
+    values.add(getGroupsPerSecond());
+    values.add(getEvaluationsPerSecond());
+    return values;
+  }
+}
+
+}
@@ -3,6 +3,7 @@ package agency.data;
 import agency.XMLConfigurable;
 import agency.eval.EvaluationGroup;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -13,5 +14,27 @@ import java.util.UUID;
 public interface ModelPerStepData extends XMLConfigurable {
 void writePerStepData(int generation, UUID modelUUID, List<EvaluationGroup.PerStepData> data);
 
+/**
+ * Writes per-step data recorded by a StepDataRecordingModel.  The buffer is
+ * returned to its pool once all reporters have written it, so it must not be
+ * kept after this method returns.
+ * <p>
+ * By default, each step is copied out of the buffer, through its StepView,
+ * and passed to writePerStepData().  Reporters may write from the buffer
+ * directly instead.
+ */
+default void writeStepData(int generation, UUID modelUUID, StepDataBuffer data) {
+  List<EvaluationGroup.PerStepData> steps = new ArrayList<>();
+  StepDataBuffer.StepView view = data.view();
+  for (int step = data.getFirstStep(); step < data.getSteps(); step++) {
+    view.setStep(step);
+    EvaluationGroup.PerStepData psd = new EvaluationGroup.PerStepData();
+    psd.step = step;
+    psd.data = view.copy();
+    steps.add(psd);
+  }
+  writePerStepData(generation, modelUUID, steps);
+}
+
 void close();
 }
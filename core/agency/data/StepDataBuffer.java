@@ -0,0 +1,141 @@
+package agency.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-step data recorded by a StepDataRecordingModel, stored as one primitive
+ * array per column.  Buffers are obtained from, and returned to, their
+ * StepDataLayout, so that the arrays are reused rather than allocated for
+ * every EvaluationGroup.
+ * <p>
+ * A buffer holds <em>capacity</em> steps.  If a model runs for more steps
+ * than that (only possible when the layout specifies retainSteps), the
+ * buffer acts as a ring, and only the most recent steps are kept.
+ */
+public class StepDataBuffer
+        implements Serializable {
+public static final long serialVersionUID = 1L;
+
+final StepDataLayout layout;
+final int            capacity;
+final double[][]     doubles;
+final long[][]       longs;
+
+/**
+ * One more than the highest step recorded.
+ */
+int steps = 0;
+
+StepDataBuffer(StepDataLayout layout, int capacity) {
+  this.layout = layout;
+  this.capacity = capacity;
+  this.doubles = new double[layout.numDoubles][capacity];
+  this.longs = new long[layout.numLongs][capacity];
+}
+
+public void setDouble(int column, int step, double value) {
+  doubles[column][step % capacity] = value;
+  if (step >= steps)
+    steps = step + 1;
+}
+
+public void setLong(int column, int step, long value) {
+  longs[column][step % capacity] = value;
+  if (step >= steps)
+    steps = step + 1;
+}
+
+public double getDouble(int column, int step) {
+  return doubles[column][step % capacity];
+}
+
+public long getLong(int column, int step) {
+  return longs[column][step % capacity];
+}
+
+/**
+ * @return The first step still held by the buffer.
+ */
+public int getFirstStep() {
+  return Math.max(0, steps - capacity);
+}
+
+/**
+ * @return One more than the highest step recorded.
+ */
+public int getSteps() {
+  return steps;
+}
+
+public StepDataLayout getLayout() {
+  return layout;
+}
+
+void clear() {
+  steps = 0;
+}
+
+/**
+ * Returns this buffer to its layout's pool.  It must not be used afterwards.
+ */
+public void release() {
+  layout.release(this);
+}
+
+/**
+ * @return A view of a single step as AgencyData, in the layout's column
+ * order.  The same view can be moved from step to step with setStep().
+ */
+public StepView view() {
+  return new StepView();
+}
+
+public class StepView
+        implements AgencyData {
+  int step;
+
+  public void setStep(int step) {
+    this.step = step;
+  }
+
+  @Override
+  public List<String> getHeaders() {
+    return layout.headers;
+  }
+
+  @Override
+  public List<Object> getValues() {
+    List<Object> values = new ArrayList<>(layout.columnOrder.size());
+    for (int column : layout.columnOrder) {
+      if (column >= 0)
+        values.add(getDouble(column, step));
+      else
+        values.add(getLong(-1 - column, step));
+    }
+    return values;
+  }
+
+  /**
+   * @return This step's values, copied, so that they may be kept after the
+   * buffer is released
+   */
+  public AgencyData copy() {
+    List<String> headers = getHeaders();
+    List<Object> values = getValues();
+    return new AgencyData() {
+      @Override
+      public List<String> getHeaders() {
+        return headers;
+      }
+
+      @Override
+      public List<Object> getValues() {
+        return values;
+      }
+    };
+  }
+}
+
+}
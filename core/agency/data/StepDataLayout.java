@@ -0,0 +1,133 @@
+package agency.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * The columns of per-step data recorded by a StepDataRecordingModel.  A
+ * layout should be declared once per model class, typically as a static
+ * final field, e.g.,
+ * <pre>
+ * static final StepDataLayout LAYOUT = new StepDataLayout();
+ * static final int            PRICE  = LAYOUT.addDouble("price");
+ * static final int            UNITS  = LAYOUT.addLong("units");
+ * </pre>
+ * The returned indices are then used with StepDataBuffer's setters.  Double
+ * and long columns are numbered separately.  Columns are output in the order
+ * they were added.
+ * <p>
+ * The layout also keeps a pool of StepDataBuffers that have been written out,
+ * so that they can be reused by later EvaluationGroups.
+ */
+public class StepDataLayout
+        implements Serializable {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_MAX_POOLED = 1024;
+
+final List<String>  headers     = new ArrayList<>();
+/**
+ * For each column, in order, its index among the double (if non-negative) or
+ * long (if negative, as -1 - index) columns.
+ */
+final List<Integer> columnOrder = new ArrayList<>();
+
+int numDoubles  = 0;
+int numLongs    = 0;
+int retainSteps = 0;
+int maxPooled   = DEFAULT_MAX_POOLED;
+
+transient volatile ArrayBlockingQueue<StepDataBuffer> pool;
+
+/**
+ * Creates a layout whose buffers retain every step.
+ */
+public StepDataLayout() {
+}
+
+/**
+ * Creates a layout whose buffers only retain the most recent steps, as a ring
+ * buffer.
+ *
+ * @param retainSteps
+ *         The number of most recent steps to retain.
+ */
+public StepDataLayout(int retainSteps) {
+  if (retainSteps <= 0)
+    throw new IllegalArgumentException("retainSteps must be positive");
+  this.retainSteps = retainSteps;
+}
+
+/**
+ * @return The index of the new column, for StepDataBuffer.setDouble()
+ */
+public synchronized int addDouble(String name) {
+  headers.add(name);
+  columnOrder.add(numDoubles);
+  return numDoubles++;
+}
+
+/**
+ * @return The index of the new column, for StepDataBuffer.setLong()
+ */
+public synchronized int addLong(String name) {
+  headers.add(name);
+  columnOrder.add(-1 - numLongs);
+  return numLongs++;
+}
+
+/**
+ * @param maxPooled
+ *         The maximum number of unused buffers to keep for reuse.
+ */
+public void setMaxPooled(int maxPooled) {
+  this.maxPooled = maxPooled;
+}
+
+public List<String> getHeaders() {
+  return headers;
+}
+
+public int getRetainSteps() {
+  return retainSteps;
+}
+
+/**
+ * @param maxSteps
+ *         The maximum number of steps the model will run
+ * @return An empty buffer able to hold maxSteps steps (or retainSteps, if
+ * fewer), reused from the pool if possible.
+ */
+public StepDataBuffer acquire(int maxSteps) {
+  int capacity = Math.max(1, retainSteps > 0 ? Math.min(retainSteps, maxSteps)
+                                             : maxSteps);
+  StepDataBuffer buffer = getPool().poll();
+  if (buffer != null && buffer.capacity == capacity) {
+    buffer.clear();
+    return buffer;
+  }
+  // A pooled buffer of the wrong size is dropped.
+  return new StepDataBuffer(this, capacity);
+}
+
+/**
+ * Returns a buffer that is no longer needed to the pool.
+ */
+public void release(StepDataBuffer buffer) {
+  getPool().offer(buffer);
+}
+
+private ArrayBlockingQueue<StepDataBuffer> getPool() {
+  ArrayBlockingQueue<StepDataBuffer> p = pool;
+  if (p == null) {
+    synchronized (this) {
+      if (pool == null)
+        pool = new ArrayBlockingQueue<>(Math.max(maxPooled, 1));
+      p = pool;
+    }
+  }
+  return p;
+}
+
+}
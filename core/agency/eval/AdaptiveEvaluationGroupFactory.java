@@ -0,0 +1,31 @@
+package agency.eval;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+
+/**
+ * An EvaluationGroupFactory that creates each generation's EvaluationGroups in
+ * waves, choosing what to evaluate next based on the results so far.
+ * <p>
+ * Environment.evolve() evaluates the first wave, as returned by
+ * createEvaluationGroups(), and then calls nextWave() with the aggregate
+ * fitnesses of everything evaluated so far, until nextWave() returns null.
+ */
+public interface AdaptiveEvaluationGroupFactory
+        extends EvaluationGroupFactory {
+/**
+ * @param env
+ *         The source environment
+ * @param fitnessesSoFar
+ *         The aggregate fitness of every individual evaluated so far this
+ *         generation.  Must not be modified.
+ * @return The next wave of EvaluationGroups, or null if evaluation for this
+ * generation is complete.
+ */
+Stream<EvaluationGroup> nextWave(Environment env,
+                                 Map<Individual, Fitness> fitnessesSoFar);
+}
@@ -0,0 +1,72 @@
+package agency.eval;
+
+import agency.Agent;
+import agency.Individual;
+import agency.Population;
+
+/**
+ * Which individuals from one source are assigned to each of a sequence of
+ * EvaluationGroups, as indices into an array of individuals.  Groups given a
+ * plan with EvaluationGroup.setAgentPlans() create their agents from it only
+ * when they are run, so that agent construction happens on the thread that
+ * runs each group rather than on the thread creating the groups.
+ */
+public class AgentAssignmentPlan {
+
+final Individual[] individuals;
+final Population[] populations;
+final int[]        order;
+final int          perGroup;
+
+/**
+ * @param individuals
+ *         The individuals that may be assigned
+ * @param populations
+ *         The population of each individual, used to create its agent
+ * @param order
+ *         The index of the individual in each slot; group <em>g</em> uses
+ *         slots <em>g * perGroup</em> through <em>(g + 1) * perGroup -
+ *         1</em>.
+ * @param perGroup
+ *         The number of individuals assigned to each group
+ */
+public AgentAssignmentPlan(Individual[] individuals,
+                           Population[] populations,
+                           int[] order,
+                           int perGroup) {
+  if (individuals.length != populations.length)
+    throw new IllegalArgumentException(
+            "Each individual must have exactly one population");
+  this.individuals = individuals;
+  this.populations = populations;
+  this.order = order;
+  this.perGroup = perGroup;
+}
+
+/**
+ * @return The number of groups this plan has assignments for
+ */
+public int numGroups() {
+  return perGroup == 0 ? 0 : order.length / perGroup;
+}
+
+public int getPerGroup() {
+  return perGroup;
+}
+
+/**
+ * @return The i'th individual assigned to the specified group
+ */
+public Individual individual(int group, int i) {
+  return individuals[order[group * perGroup + i]];
+}
+
+/**
+ * @return A new agent for the i'th individual assigned to the specified group
+ */
+public Agent createAgent(int group, int i) {
+  int index = order[group * perGroup + i];
+  return populations[index].createAgent(individuals[index]);
+}
+
+}
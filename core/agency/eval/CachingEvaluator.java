@@ -0,0 +1,389 @@
+package agency.eval;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import agency.Config;
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.SimpleFitness;
+import agency.XMLConfigurable;
+import agency.data.AgencyData;
+import agency.data.DataOutput;
+import agency.vector.VectorIndividual;
+import com.esotericsoftware.kryo.Kryo;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Wraps another Evaluator, remembering the fitness of each genome it has
+ * seen.  If every member of an EvaluationGroup is a VectorIndividual whose
+ * genome is already cached, the group is not run at all; it is completed with
+ * the cached fitnesses instead.  Otherwise the group is passed to the wrapped
+ * evaluator, and its results are added to the cache.
+ * <p>
+ * This is only correct for models in which an agent's fitness depends on
+ * nothing but its own genome, and is deterministic, e.g., MaximumValue.  It
+ * pays off when identical genomes are evaluated repeatedly, such as the
+ * clones produced by ElitismSelector or by breeding without mutation.
+ * Skipped groups have no summary or per-step data.
+ * <p>
+ * Genomes are keyed by content, not identity.  The least recently used
+ * entries are evicted once the cache holds <em>maxEntries</em> genomes.  Hit
+ * counts are available from the getters and, if a <em>file</em> is
+ * specified, are written there (cumulatively) once per generation, when the
+ * next generation begins or on close(), however many calls to evaluate() the
+ * generation took.
+ * <p>
+ * Configured as, e.g., &lt;CachingEvaluator maxEntries="100000"
+ * file="cache.csv"&gt;&lt;LocalParallelEvaluator/&gt;&lt;/CachingEvaluator&gt;.
+ */
+public class CachingEvaluator
+        implements Evaluator {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_MAX_ENTRIES = 100_000;
+
+Evaluator evaluator;
+int       maxEntries = DEFAULT_MAX_ENTRIES;
+
+/**
+ * Optional output of the cache statistics, one line per generation.
+ */
+DataOutput statisticsOutput;
+
+/*
+ * The generation evaluated since the statistics were last written, if any
+ */
+transient Integer unwrittenGeneration;
+
+/*
+ * The cache itself is not checkpointed; it starts empty again on resume.
+ */
+transient Map<GenomeKey, Fitness> cache;
+
+long hits;
+long misses;
+long groupsSkipped;
+long groupsEvaluated;
+
+public CachingEvaluator() {
+}
+
+public CachingEvaluator(Evaluator evaluator, int maxEntries) {
+  this.evaluator = evaluator;
+  this.maxEntries = maxEntries;
+}
+
+@Override
+public void beginGeneration(Environment env) {
+  writeStatistics();
+  evaluator.beginGeneration(env);
+}
+
+@Override
+public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+  if (groups.isEmpty())
+    return groups.stream();
+
+  List<EvaluationGroup> toEvaluate = new ArrayList<>();
+  // The cache and counters are shared by threads evaluating at once
+  synchronized (this) {
+    Map<GenomeKey, Fitness> cache = getCache();
+    for (EvaluationGroup eg : groups) {
+      int n = eg.numMembers();
+      Individual[] individuals = new Individual[n];
+      Fitness[] fitnesses = new Fitness[n];
+      boolean allHit = n > 0;
+      for (int i = 0; i < n; i++) {
+        individuals[i] = eg.member(i);
+        Fitness cached = null;
+        if (individuals[i] instanceof VectorIndividual) {
+          GenomeKey key =
+                  new GenomeKey(((VectorIndividual<?>) individuals[i]).geneView());
+          cached = cache.get(key);
+        }
+        if (cached == null) {
+          misses++;
+          allHit = false;
+        } else {
+          hits++;
+          fitnesses[i] = cached;
+        }
+      }
+
+      if (allHit) {
+        // Copies, because fitness aggregation combines into the first sample.
+        for (int i = 0; i < n; i++)
+          fitnesses[i] = copy(fitnesses[i]);
+        eg.completeWith(individuals, fitnesses, null, null);
+        groupsSkipped++;
+      } else {
+        toEvaluate.add(eg);
+        groupsEvaluated++;
+      }
+    }
+  }
+
+  if (!toEvaluate.isEmpty()) {
+    List<EvaluationGroup> evaluated =
+            evaluator.evaluate(toEvaluate.stream()).collect(Collectors.toList());
+    synchronized (this) {
+      Map<GenomeKey, Fitness> cache = getCache();
+      for (EvaluationGroup eg : evaluated) {
+        for (Map.Entry<Individual, Fitness> entry : eg.getResults().entrySet()) {
+          if (entry.getKey() instanceof VectorIndividual && entry.getValue() != null) {
+            // A copy, since the individual's genome may change later
+            List<?> genes = ((VectorIndividual<?>) entry.getKey()).geneView();
+            cache.put(new GenomeKey(new ArrayList<>(genes)), copy(entry.getValue()));
+          }
+        }
+      }
+    }
+  }
+
+  synchronized (this) {
+    unwrittenGeneration = groups.get(0).generation;
+  }
+
+  return groups.stream();
+}
+
+private synchronized Map<GenomeKey, Fitness> getCache() {
+  if (cache == null) {
+    cache = new LinkedHashMap<GenomeKey, Fitness>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<GenomeKey, Fitness> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+  return cache;
+}
+
+private static final ThreadLocal<Kryo> kryos =
+        ThreadLocal.withInitial(RemoteEvaluator::newKryo);
+
+static Fitness copy(Fitness f) {
+  if (f instanceof SimpleFitness) {
+    SimpleFitness sf = (SimpleFitness) f;
+    return new SimpleFitness(sf.getTotalFitness(),
+                             sf.getTotalSquaredFitness(),
+                             sf.getNumSamples());
+  }
+  return kryos.get().copy(f);
+}
+
+/**
+ * @return The number of genomes currently cached.
+ */
+public int size() {
+  return cache == null ? 0 : cache.size();
+}
+
+/**
+ * @return The number of individuals whose genome was found in the cache.
+ */
+public long getHits() {
+  return hits;
+}
+
+/**
+ * @return The number of individuals whose genome was not found in the cache.
+ */
+public long getMisses() {
+  return misses;
+}
+
+/**
+ * @return The fraction of cache lookups that were hits.
+ */
+public double getHitRate() {
+  long lookups = hits + misses;
+  return lookups == 0 ? 0d : (double) hits / lookups;
+}
+
+/**
+ * @return The number of EvaluationGroups that were not run, because all of
+ * their members were cached.
+ */
+public long getGroupsSkipped() {
+  return groupsSkipped;
+}
+
+/**
+ * @return The number of EvaluationGroups passed to the wrapped evaluator.
+ */
+public long getGroupsEvaluated() {
+  return groupsEvaluated;
+}
+
+public Evaluator getEvaluator() {
+  return evaluator;
+}
+
+private synchronized void writeStatistics() {
+  if (statisticsOutput == null || unwrittenGeneration == null)
+    return;
+  statisticsOutput.write(new CacheStatistics(), unwrittenGeneration);
+  unwrittenGeneration = null;
+}
+
+@Override
+public void close() {
+  writeStatistics();
+  evaluator.close();
+  if (statisticsOutput != null)
+    statisticsOutput.close();
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String maxEntriesString = e.getAttribute("maxEntries");
+  if (maxEntriesString != null && !maxEntriesString.isEmpty()) {
+    try {
+      maxEntries = Integer.parseInt(maxEntriesString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "CachingEvaluator maxEntries must be an integer", nfe);
+    }
+    if (maxEntries <= 0)
+      throw new UnsupportedOperationException(
+              "CachingEvaluator maxEntries must be positive");
+  }
+
+  String fileString = e.getAttribute("file");
+  if (fileString != null && !fileString.isEmpty()) {
+    statisticsOutput = new DataOutput(fileString);
+    statisticsOutput.setPrefixHeaders(new String[]{"generation"});
+  }
+
+  NodeList nl = e.getChildNodes();
+  for (int i = 0; i < nl.getLength(); i++) {
+    Node node = nl.item(i);
+    if (node instanceof Element) {
+      XMLConfigurable xc = Config.initializeXMLConfigurable((Element) node);
+      if (xc instanceof Evaluator) {
+        if (evaluator != null)
+          throw new UnsupportedOperationException(
+                  "CachingEvaluator cannot have more than one Evaluator");
+        evaluator = (Evaluator) xc;
+      } else {
+        throw new UnsupportedOperationException(
+                "Unrecognized element in CachingEvaluator");
+      }
+    }
+  }
+
+  if (evaluator == null)
+    throw new UnsupportedOperationException(
+            "CachingEvaluator must wrap an Evaluator");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  Document d = e.getOwnerDocument();
+  e.setAttribute("maxEntries", Integer.toString(maxEntries));
+  if (statisticsOutput != null)
+    statisticsOutput.writeXMLConfig(e);
+  e.appendChild(Config.createUnnamedElement(d, evaluator));
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  evaluator.resumeFromCheckpoint();
+  if (statisticsOutput != null)
+    statisticsOutput.resumeFromCheckpoint();
+}
+
+/**
+ * A genome, compared by content.  The hash is computed once, from the bits
+ * of each numeric gene (or the hashCode() of other genes).
+ */
+static final class GenomeKey
+        implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  final List<?> genome;
+  final int     hash;
+
+  /**
+   * @param genome
+   *         The genome, e.g., VectorIndividual.geneView(), which must not be
+   *         modified while this key is in use.
+   */
+  GenomeKey(List<?> genome) {
+    this.genome = genome;
+    this.hash = contentHash(genome);
+  }
+
+  static int contentHash(List<?> genome) {
+    long h = 0xcbf29ce484222325L;
+    for (Object gene : genome) {
+      long bits;
+      if (gene instanceof Number)
+        bits = Double.doubleToLongBits(((Number) gene).doubleValue());
+      else
+        bits = gene == null ? 0 : gene.hashCode();
+      h = (h ^ bits) * 0x100000001b3L;
+    }
+    return (int) (h ^ (h >>> 32));
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (!(o instanceof GenomeKey))
+      return false;
+    GenomeKey other = (GenomeKey) o;
+    return hash == other.hash && genome.equals(other.genome);
+  }
+}
+
+/**
+ * A snapshot of the cache's cumulative statistics.
+ */
+class CacheStatistics
+        implements AgencyData {
+  @Override
+  public List<String> getHeaders() {
+    List<String> headers = new ArrayList<>();
+    headers.add("entries");
+    headers.add("hits");
+    headers.add("misses");
+    headers.add("hitRate");
+    headers.add("groupsSkipped");
+    headers.add("groupsEvaluated");
+    return headers;
+  }
+
+  @Override
+  public List<Object> getValues() {
+    List<Object> values = new ArrayList<>();
+    values.add(size());
+    values.add(hits);
+    values.add(misses);
+    values.add(getHitRate());
+    values.add(groupsSkipped);
+    values.add(groupsEvaluated);
+    return values;
+  }
+}
+
+}
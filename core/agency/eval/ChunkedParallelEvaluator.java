@@ -0,0 +1,394 @@
+package agency.eval;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import agency.Environment;
+import agency.data.AgencyData;
+import agency.data.DataOutput;
+import org.w3c.dom.Element;
+
+/**
+ * Evaluates EvaluationGroups in parallel on a dedicated ForkJoinPool.  Unlike
+ * LocalParallelEvaluator, which submits one task per group to the common
+ * pool, groups are handed to workers in chunks of <em>chunkSize</em> groups.
+ * Idle workers steal chunks from busy ones, so per-task overhead stays low for
+ * cheap models while long-running chunks are still balanced across workers.
+ * Because the pool is private, evaluation does not compete with the parallel
+ * streams that Environment.evolve() uses elsewhere.
+ * <p>
+ * The time each worker spent running groups is recorded every generation, over
+ * all the calls to evaluate() between one beginGeneration() and the next, and
+ * is available from getWorkerStatistics().  Every worker in the pool is
+ * reported, including those that ran nothing.  If a <em>file</em> is
+ * specified, one line per worker per generation is also written there.
+ * <p>
+ * As in LocalParallelEvaluator, an exception thrown by one group is printed,
+ * and the other groups are still evaluated.
+ * <p>
+ * Configured as, e.g., &lt;ChunkedParallelEvaluator threads="8"
+ * chunkSize="32" file="workers.csv"/&gt;.  If threads is not specified, the
+ * number of available processors is used.
+ */
+public class ChunkedParallelEvaluator
+        implements Evaluator {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_CHUNK_SIZE = 16;
+
+static final String WORKER_NAME = "ChunkedParallelEvaluator-worker-";
+
+/*
+ * Orders the pool's workers by number, then any other threads by name.
+ */
+static final Comparator<String> WORKER_ORDER =
+        Comparator.comparingInt(ChunkedParallelEvaluator::workerNumber)
+                  .thenComparing(Comparator.naturalOrder());
+
+Integer threads;
+int     chunkSize = DEFAULT_CHUNK_SIZE;
+
+/**
+ * Optional output of per-worker utilization, one line per worker per
+ * generation, written when the next generation begins or on close().
+ */
+DataOutput utilizationOutput;
+
+transient ForkJoinPool pool;
+transient BitSet       workerNumbers;
+
+/*
+ * Statistics for the current generation, keyed by thread name, and the
+ * evaluate() time they cover.
+ */
+transient Map<String, WorkerStatistics> workerStatistics;
+transient int                           statisticsGeneration;
+transient long                          statisticsWallNanos;
+
+/*
+ * The number of calls to evaluate() running, and when the first of them
+ * started.
+ */
+transient int  activeCalls;
+transient long activeSince;
+
+public ChunkedParallelEvaluator() {
+}
+
+public ChunkedParallelEvaluator(int threads, int chunkSize) {
+  this.threads = threads;
+  this.chunkSize = chunkSize;
+}
+
+@Override
+public void beginGeneration(Environment env) {
+  startStatistics(env.getGeneration());
+}
+
+@Override
+public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+  if (groups.isEmpty())
+    return groups.stream();
+
+  EvaluationGroup[] toEvaluate = groups.toArray(new EvaluationGroup[0]);
+  Map<String, WorkerStatistics> stats = enterEvaluate(toEvaluate[0].generation);
+  try {
+    /*
+     * Started from a worker, rather than with ForkJoinPool.invoke(), because
+     * newer JVMs let the calling thread run the task itself while it waits.
+     */
+    ChunkTask root = new ChunkTask(toEvaluate, 0, toEvaluate.length, stats);
+    CompletableFuture.runAsync(root::invoke, getPool()).join();
+  } finally {
+    exitEvaluate(stats);
+  }
+
+  return groups.stream();
+}
+
+/**
+ * Starts timing a call to evaluate().  Calls from several threads at once
+ * are timed together, so that the wall time is that during which any call
+ * was running.
+ *
+ * @return The statistics the call is recorded in
+ */
+private synchronized Map<String, WorkerStatistics> enterEvaluate(
+        int generation) {
+  if (workerStatistics == null)
+    startStatistics(generation);
+  if (activeCalls++ == 0)
+    activeSince = System.nanoTime();
+  return workerStatistics;
+}
+
+private synchronized void exitEvaluate(Map<String, WorkerStatistics> stats) {
+  if (--activeCalls > 0 || stats != workerStatistics)
+    return;
+  statisticsWallNanos += System.nanoTime() - activeSince;
+  for (WorkerStatistics ws : stats.values())
+    ws.wallNanos = statisticsWallNanos;
+}
+
+/**
+ * Writes the statistics of the previous generation, if any, and starts
+ * recording a new one with an entry for every worker.
+ */
+private synchronized void startStatistics(int generation) {
+  writeStatistics();
+  Map<String, WorkerStatistics> stats =
+          new ConcurrentSkipListMap<>(WORKER_ORDER);
+  int workers = getPool().getParallelism();
+  for (int i = 0; i < workers; i++)
+    stats.put(WORKER_NAME + i, new WorkerStatistics());
+  workerStatistics = stats;
+  statisticsGeneration = generation;
+  statisticsWallNanos = 0;
+}
+
+private synchronized void writeStatistics() {
+  if (utilizationOutput == null || workerStatistics == null)
+    return;
+  for (Map.Entry<String, WorkerStatistics> entry : workerStatistics.entrySet())
+    utilizationOutput.write(entry.getValue(), statisticsGeneration,
+                            entry.getKey());
+  workerStatistics = null;
+}
+
+/**
+ * @return The number of a worker, from its thread name, or
+ * Integer.MAX_VALUE if the thread is not one of the pool's workers.
+ */
+static int workerNumber(String threadName) {
+  if (!threadName.startsWith(WORKER_NAME))
+    return Integer.MAX_VALUE;
+  return Integer.parseInt(threadName.substring(WORKER_NAME.length()));
+}
+
+private synchronized ForkJoinPool getPool() {
+  if (pool == null) {
+    int parallelism = threads != null ?
+                      threads :
+                      Runtime.getRuntime().availableProcessors();
+    workerNumbers = new BitSet(parallelism);
+    pool = new ForkJoinPool(parallelism,
+                            p -> new Worker(p, workerNumbers),
+                            null, false);
+  }
+  return pool;
+}
+
+/**
+ * @return How busy each worker thread was during the current (or most
+ * recent) generation, keyed by thread name, in order of worker number.  Empty
+ * if no generation has been started.
+ */
+public Map<String, WorkerStatistics> getWorkerStatistics() {
+  if (workerStatistics == null)
+    return new ConcurrentSkipListMap<>(WORKER_ORDER);
+  return workerStatistics;
+}
+
+@Override
+public void close() {
+  writeStatistics();
+  if (pool != null)
+    pool.shutdown();
+  if (utilizationOutput != null)
+    utilizationOutput.close();
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String threadsString = e.getAttribute("threads");
+  if (threadsString != null && !threadsString.isEmpty()) {
+    try {
+      threads = Integer.parseInt(threadsString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "ChunkedParallelEvaluator threads must be an integer", nfe);
+    }
+    if (threads <= 0)
+      throw new UnsupportedOperationException(
+              "ChunkedParallelEvaluator must have at least one thread");
+  }
+
+  String chunkSizeString = e.getAttribute("chunkSize");
+  if (chunkSizeString != null && !chunkSizeString.isEmpty()) {
+    try {
+      chunkSize = Integer.parseInt(chunkSizeString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "ChunkedParallelEvaluator chunkSize must be an integer", nfe);
+    }
+    if (chunkSize <= 0)
+      throw new UnsupportedOperationException(
+              "ChunkedParallelEvaluator chunkSize must be positive");
+  }
+
+  String fileString = e.getAttribute("file");
+  if (fileString != null && !fileString.isEmpty()) {
+    utilizationOutput = new DataOutput(fileString);
+    utilizationOutput.setPrefixHeaders(new String[]{"generation", "worker"});
+  }
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  if (threads != null)
+    e.setAttribute("threads", threads.toString());
+  e.setAttribute("chunkSize", Integer.toString(chunkSize));
+  if (utilizationOutput != null)
+    utilizationOutput.writeXMLConfig(e);
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // The pool is re-created on first use.
+  if (utilizationOutput != null)
+    utilizationOutput.resumeFromCheckpoint();
+}
+
+/**
+ * Runs a contiguous range of EvaluationGroups, splitting it in half until
+ * each piece is no larger than chunkSize.  The ForkJoinPool's work stealing
+ * distributes the halves among idle workers.
+ */
+private class ChunkTask
+        extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  final EvaluationGroup[]             groups;
+  final int                           start;
+  final int                           end;
+  final Map<String, WorkerStatistics> stats;
+
+  ChunkTask(EvaluationGroup[] groups, int start, int end,
+            Map<String, WorkerStatistics> stats) {
+    this.groups = groups;
+    this.start = start;
+    this.end = end;
+    this.stats = stats;
+  }
+
+  @Override
+  protected void compute() {
+    if (end - start <= chunkSize) {
+      long chunkStart = System.nanoTime();
+      for (int i = start; i < end; i++) {
+        try {
+          groups[i].run();
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+        }
+      }
+      long busy = System.nanoTime() - chunkStart;
+
+      // Each worker only ever updates its own entry.
+      WorkerStatistics ws =
+              stats.computeIfAbsent(Thread.currentThread().getName(),
+                                    name -> new WorkerStatistics());
+      ws.busyNanos += busy;
+      ws.chunks++;
+      ws.groups += end - start;
+    } else {
+      int middle = (start + end) >>> 1;
+      invokeAll(new ChunkTask(groups, start, middle, stats),
+                new ChunkTask(groups, middle, end, stats));
+    }
+  }
+}
+
+/**
+ * A pool worker, named with the lowest number not used by another worker, so
+ * that workers are numbered from 0 to threads - 1 however often the pool
+ * replaces them.
+ */
+private static class Worker
+        extends ForkJoinWorkerThread {
+  final BitSet numbers;
+  final int    number;
+
+  Worker(ForkJoinPool pool, BitSet numbers) {
+    super(pool);
+    this.numbers = numbers;
+    synchronized (numbers) {
+      number = numbers.nextClearBit(0);
+      numbers.set(number);
+    }
+    setName(WORKER_NAME + number);
+  }
+
+  @Override
+  protected void onTermination(Throwable exception) {
+    synchronized (numbers) {
+      numbers.clear(number);
+    }
+    super.onTermination(exception);
+  }
+}
+
+/**
+ * How busy a single worker was during one generation.
+ */
+public static class WorkerStatistics
+        implements AgencyData {
+  long busyNanos;
+  long wallNanos;
+  int  chunks;
+  int  groups;
+
+  public long getBusyNanos() {
+    return busyNanos;
+  }
+
+  public int getChunks() {
+    return chunks;
+  }
+
+  public int getGroups() {
+    return groups;
+  }
+
+  /**
+   * @return The fraction of the generation's evaluation wall clock time that
+   * this worker spent running EvaluationGroups.
+   */
+  public double getUtilization() {
+    if (wallNanos == 0)
+      return 0d;
+    return (double) busyNanos / wallNanos;
+  }
+
+  @Override
+  public List<String> getHeaders() {
+    List<String> headers = new ArrayList<>();
+    headers.add("chunks");
+    headers.add("groups");
+    headers.add("busyMillis");
+    headers.add("utilization");
+    return headers;
+  }
+
+  @Override
+  public List<Object> getValues() {
+    List<Object> values = new ArrayList<>();
+    values.add(chunks);
+    values.add(groups);
+    values.add(busyNanos / 1_000_000d);
+    values.add(getUtilization());
+    return values;
+  }
+}
+
+}
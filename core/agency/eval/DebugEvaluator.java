@@ -19,7 +19,7 @@ public class DebugEvaluator implements Evaluator {
 public static final long serialVersionUID = 1L;
 
 @Override
-public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+public synchronized Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
   List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
   EvaluationGroup first = groups.get(0);
 
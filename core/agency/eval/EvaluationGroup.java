@@ -2,12 +2,16 @@ package agency.eval;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 import agency.Agent;
 import agency.AgentModel;
+import agency.AgentModelFactory;
 import agency.Fitness;
 import agency.Individual;
+import agency.StepDataRecordingModel;
 import agency.data.AgencyData;
+import agency.data.StepDataBuffer;
 
 public class EvaluationGroup
         implements Serializable, Runnable {
@@ -18,9 +22,40 @@ List<Agent> agents = new ArrayList<>();
 
 AgentModel model;
 
+/**
+ * If set, the model is created from this factory when first needed (usually
+ * on the thread that runs the group), and released back to it afterwards.
+ * Not serialized, so groups sent elsewhere must have their model created
+ * first; see ensureModel().
+ */
+transient AgentModelFactory<?> modelFactory;
+
+/*
+ * Agents that have been assigned but not yet created; see setAgentPlans().
+ * Like the model factory, not serialized, so groups sent elsewhere must have
+ * their agents created first; see ensureAgents().
+ */
+transient AgentAssignmentPlan[] agentPlans;
+transient int                   planGroup;
+
+/*
+ * If set, incremented when this group finishes, so that progress through a
+ * generation can be monitored.
+ */
+transient LongAdder finishedCounter;
+
 // Model data outputs
 Object summaryData;
 List<PerStepData>        perStepData = new ArrayList<>();
+/**
+ * Per-step data from a StepDataRecordingModel, instead of perStepData.
+ */
+StepDataBuffer           stepData;
+/**
+ * Whether a StepDataRecordingModel is given a StepDataBuffer.  Cleared by
+ * Environment when it has no per-step data outputs to write it.
+ */
+boolean                  recordStepData = true;
 boolean                  finished    = false;
 Map<Individual, Fitness> results     = new IdentityHashMap<>();
 
@@ -34,6 +69,25 @@ public List<PerStepData> getPerStepData() {
   return perStepData;
 }
 
+/**
+ * @return The per-step data recorded by a StepDataRecordingModel, or null if
+ * the model was not one.
+ */
+public StepDataBuffer getStepDataBuffer() {
+  return stepData;
+}
+
+/**
+ * Returns this group's StepDataBuffer, if any, to its layout for reuse.  Call
+ * only once all per-step data has been output.
+ */
+public void releaseStepData() {
+  if (stepData != null) {
+    stepData.release();
+    stepData = null;
+  }
+}
+
 public Map<Individual, Fitness> getResults() {
   return results;
 }
@@ -42,12 +96,70 @@ public void addAgent(Agent<? extends Individual, ? extends AgentModel> agent) {
   agents.add(agent);
 }
 
+/**
+ * Assigns this group's remaining members from the specified plans, without
+ * creating their agents yet.  The agents are created, in plan order and after
+ * any added with addAgent(), when the group is run.
+ *
+ * @param group
+ *         This group's index within each of the plans
+ * @param plans
+ *         The plans to take members from
+ */
+public void setAgentPlans(int group, AgentAssignmentPlan... plans) {
+  this.planGroup = group;
+  this.agentPlans = plans;
+}
+
+/**
+ * @return The number of individuals in this group, whether or not their
+ * agents have been created.
+ */
+int numMembers() {
+  int n = agents.size();
+  if (agentPlans != null)
+    for (AgentAssignmentPlan plan : agentPlans)
+      n += plan.perGroup;
+  return n;
+}
+
+/**
+ * @return The i'th individual in this group, without creating its agent.
+ */
+Individual member(int i) {
+  if (i < agents.size())
+    return ((Agent<?, ?>) agents.get(i)).getManager();
+  i -= agents.size();
+  for (AgentAssignmentPlan plan : agentPlans) {
+    if (i < plan.perGroup)
+      return plan.individual(planGroup, i);
+    i -= plan.perGroup;
+  }
+  throw new IndexOutOfBoundsException("EvaluationGroup " + id + " has only " +
+                                      numMembers() + " members");
+}
+
+/**
+ * Creates the agents for any members assigned by setAgentPlans().
+ */
+void ensureAgents() {
+  if (agentPlans == null)
+    return;
+  for (AgentAssignmentPlan plan : agentPlans)
+    for (int i = 0; i < plan.perGroup; i++)
+      agents.add(plan.createAgent(planGroup, i));
+  agentPlans = null;
+}
+
 @Override
 public void run() {
 
   if (finished)
     throw new RuntimeException("Cannot run an EvaluationGroup twice.");
 
+  ensureAgents();
+  ensureModel();
+
   // Associate the Agents with the model and vice versa
   for (Agent agent : agents) {
     model.addAgent(agent);
@@ -64,15 +176,24 @@ public void run() {
 
   // Actually run the agent model
   int maxSteps = model.getMaxSteps();
+  StepDataRecordingModel recorder = null;
+  if (model instanceof StepDataRecordingModel) {
+    recorder = (StepDataRecordingModel) model;
+    if (recordStepData)
+      stepData = recorder.getStepDataLayout().acquire(maxSteps);
+    recorder.setStepDataBuffer(stepData);
+  }
   for (int step = 0; step < maxSteps; step++) {
 
     // Per-step data; if reported
-    Object data = model.getStepData();
-    if (data != null) {
-      PerStepData psd = new PerStepData();
-      psd.step = step;
-      psd.data = data;
-      perStepData.add(psd);
+    if (recorder == null) {
+      Object data = model.getStepData();
+      if (data != null) {
+        PerStepData psd = new PerStepData();
+        psd.step = step;
+        psd.data = data;
+        perStepData.add(psd);
+      }
     }
 
     boolean doneEarly = model.step();
@@ -81,27 +202,116 @@ public void run() {
   }
 
   model.finish();
+  if (recorder != null)
+    recorder.setStepDataBuffer(null);
 
   // Get summary data
   summaryData = model.getSummaryData();
 
   // Mark as finished to prevent accidental re-execution of model.
   finished = true;
+  if (finishedCounter != null)
+    finishedCounter.increment();
 
   // collect the fitness results
   collectResults();
 
-  // Allow agent model to be garbage collected.
-  model = null;
+  // Allow agent model to be garbage collected, or reused.
+  releaseModel();
 
 }
 
+/**
+ * Creates this group's model from its AgentModelFactory, if it does not
+ * already have one.
+ */
+void ensureModel() {
+  if (model == null && modelFactory != null)
+    model = modelFactory.createAgentModel();
+}
+
+private void releaseModel() {
+  if (model != null && modelFactory != null)
+    modelFactory.release(model);
+  model = null;
+}
+
 public void collectResults() {
   for (Agent agent : agents) {
     results.put(agent.getManager(), model.getFitness(agent));
   }
 }
 
+/**
+ * Completes this EvaluationGroup with results from a copy of it that was run
+ * elsewhere, e.g., in another process.  Individuals are matched by UUID, so
+ * that the results are keyed by this group's own Individual objects.
+ *
+ * @param individuals
+ *         The UUIDs of the evaluated individuals
+ * @param fitnesses
+ *         The fitness of each individual, in the same order
+ * @param summaryData
+ *         The model's summary data
+ * @param perStepData
+ *         The model's per-step data
+ */
+void mergeRemoteResults(UUID[] individuals,
+                        Fitness[] fitnesses,
+                        Object summaryData,
+                        List<PerStepData> perStepData) {
+  if (finished)
+    throw new RuntimeException("Cannot run an EvaluationGroup twice.");
+
+  Map<UUID, Individual> byUUID = new HashMap<>();
+  for (Agent agent : agents) {
+    Individual ind = agent.getManager();
+    byUUID.put(ind.getUUID(), ind);
+  }
+  Individual[] matched = new Individual[individuals.length];
+  for (int i = 0; i < individuals.length; i++) {
+    matched[i] = byUUID.get(individuals[i]);
+    if (matched[i] == null)
+      throw new RuntimeException("Remote results for EvaluationGroup " + id +
+                                 " refer to unknown individual " +
+                                 individuals[i]);
+  }
+  completeWith(matched, fitnesses, summaryData, perStepData);
+}
+
+/**
+ * Completes this EvaluationGroup with results that were computed elsewhere,
+ * without running the model here, e.g., by an Evaluator that simulates many
+ * groups at once.
+ *
+ * @param individuals
+ *         The evaluated individuals, which must be this group's own
+ * @param fitnesses
+ *         The fitness of each individual, in the same order
+ * @param summaryData
+ *         The model's summary data, if any
+ * @param perStepData
+ *         The model's per-step data, if any
+ */
+public void completeWith(Individual[] individuals,
+                         Fitness[] fitnesses,
+                         Object summaryData,
+                         List<PerStepData> perStepData) {
+  if (finished)
+    throw new RuntimeException("Cannot run an EvaluationGroup twice.");
+
+  for (int i = 0; i < individuals.length; i++)
+    results.put(individuals[i], fitnesses[i]);
+
+  this.summaryData = summaryData;
+  if (perStepData != null)
+    this.perStepData = perStepData;
+  finished = true;
+  if (finishedCounter != null)
+    finishedCounter.increment();
+  releaseModel();
+}
+
 @Override
 public String toString() {
   StringBuffer sb = new StringBuffer();
@@ -120,7 +330,17 @@ public String toString() {
   return sb.toString();
 }
 
+/**
+ * @return This group's agents, creating any that were assigned by
+ * setAgentPlans() but not yet created.
+ */
+public List<Agent> getAgents() {
+  ensureAgents();
+  return agents;
+}
+
 public AgentModel getModel() {
+  ensureModel();
   return model;
 }
 
@@ -128,6 +348,37 @@ public void setModel(AgentModel model) {
   this.model = model;
 }
 
+/**
+ * Has this group create its model from the specified factory when it is
+ * needed, instead of being given one with setModel().  This allows factories
+ * to reuse models between groups; see ResettableAgentModel.
+ *
+ * @param modelFactory
+ *         The factory to create the model from, and release it to
+ */
+public void setModelFactory(AgentModelFactory<?> modelFactory) {
+  this.modelFactory = modelFactory;
+}
+
+/**
+ * @param finishedCounter
+ *         A counter to increment when this group has finished, whether it was
+ *         run here or completed with results from elsewhere
+ */
+public void setFinishedCounter(LongAdder finishedCounter) {
+  this.finishedCounter = finishedCounter;
+}
+
+/**
+ * @param recordStepData
+ *         Whether a StepDataRecordingModel should be given a StepDataBuffer
+ *         to record into; true by default.  Pooled buffers are only worth
+ *         acquiring if the per-step data will be written.
+ */
+public void setRecordStepData(boolean recordStepData) {
+  this.recordStepData = recordStepData;
+}
+
 public UUID getId() {
   return id;
 }
@@ -0,0 +1,73 @@
+package agency.eval;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A Spliterator over a range of planned EvaluationGroups, each created on
+ * demand from its index.  Because the number of groups is known in advance,
+ * the range is SIZED and SUBSIZED, and splits exactly in half, so parallel
+ * streams divide the work evenly and collect into presized arrays.
+ */
+public class EvaluationGroupSpliterator
+        implements Spliterator<EvaluationGroup> {
+
+final IntFunction<EvaluationGroup> groupFactory;
+int                                index;
+final int                          fence;
+
+/**
+ * @param groupFactory
+ *         Creates the group with the specified index.  Must be safe to call
+ *         from multiple threads, for different indices.
+ * @param origin
+ *         The first index, inclusive
+ * @param fence
+ *         The last index, exclusive
+ */
+public EvaluationGroupSpliterator(IntFunction<EvaluationGroup> groupFactory,
+                                  int origin,
+                                  int fence) {
+  this.groupFactory = groupFactory;
+  this.index = origin;
+  this.fence = fence;
+}
+
+@Override
+public boolean tryAdvance(Consumer<? super EvaluationGroup> action) {
+  if (index >= fence)
+    return false;
+  action.accept(groupFactory.apply(index++));
+  return true;
+}
+
+@Override
+public void forEachRemaining(Consumer<? super EvaluationGroup> action) {
+  int end = fence;
+  for (int i = index; i < end; i++)
+    action.accept(groupFactory.apply(i));
+  index = end;
+}
+
+@Override
+public Spliterator<EvaluationGroup> trySplit() {
+  int lo = index;
+  int mid = (lo + fence) >>> 1;
+  if (lo >= mid)
+    return null;
+  index = mid;
+  return new EvaluationGroupSpliterator(groupFactory, lo, mid);
+}
+
+@Override
+public long estimateSize() {
+  return fence - index;
+}
+
+@Override
+public int characteristics() {
+  return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+}
+
+}
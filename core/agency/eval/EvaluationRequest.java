@@ -1,6 +1,14 @@
 package agency.eval;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import agency.Fitness;
+import agency.Individual;
+import agency.data.StepDataBuffer;
 
 public class EvaluationRequest implements Serializable {
 public static final long serialVersionUID = 1L;
@@ -13,6 +21,17 @@ long serverTimeReceived;
 EvaluationGroup[] evaluationGroups;
 long[]            executionTimes;
 
+/*
+ * Results, filled in by the worker by collectResults().  Only what the
+ * server needs to merge back into its own copies of the EvaluationGroups is
+ * returned; individuals are identified by UUID rather than sent back.
+ */
+UUID[][]                                resultIndividuals;
+Fitness[][]                             resultFitnesses;
+Object[]                                summaryData;
+List<List<EvaluationGroup.PerStepData>> perStepData;
+StepDataBuffer[]                        stepData;
+
 public EvaluationRequest(EvaluationGroup[] evaluationGroups) {
   this.evaluationGroups = evaluationGroups;
   this.executionTimes = new long[evaluationGroups.length];
@@ -30,4 +49,64 @@ long clockTime() {
   return serverTimeReceived - serverTimeSent;
 }
 
+int size() {
+  return executionTimes.length;
+}
+
+/**
+ * Called by the worker after all EvaluationGroups have been run.  Copies the
+ * fitness results, summary and per-step data out of the groups, and then
+ * drops the groups themselves so that they are not sent back to the server.
+ */
+void collectResults() {
+  int n = evaluationGroups.length;
+  resultIndividuals = new UUID[n][];
+  resultFitnesses = new Fitness[n][];
+  summaryData = new Object[n];
+  perStepData = new ArrayList<>(n);
+  stepData = new StepDataBuffer[n];
+
+  for (int i = 0; i < n; i++) {
+    EvaluationGroup eg = evaluationGroups[i];
+    Map<Individual, Fitness> results = eg.getResults();
+    UUID[] ids = new UUID[results.size()];
+    Fitness[] fitnesses = new Fitness[results.size()];
+    int j = 0;
+    for (Map.Entry<Individual, Fitness> entry : results.entrySet()) {
+      ids[j] = entry.getKey().getUUID();
+      fitnesses[j] = entry.getValue();
+      j++;
+    }
+    resultIndividuals[i] = ids;
+    resultFitnesses[i] = fitnesses;
+    summaryData[i] = eg.getSummaryData();
+    perStepData.add(eg.getPerStepData());
+    stepData[i] = eg.getStepDataBuffer();
+  }
+
+  evaluationGroups = null;
+}
+
+/**
+ * Called by the server when the request returns.  Merges the results into
+ * the server's own copies of the EvaluationGroups, which must be in the same
+ * order as when the request was created.
+ *
+ * @param originals
+ *         The EvaluationGroups that were sent, as held by the server.
+ */
+void mergeResults(EvaluationGroup[] originals) {
+  if (originals.length != resultIndividuals.length)
+    throw new RuntimeException("EvaluationRequest returned " +
+                               resultIndividuals.length + " results for " +
+                               originals.length + " EvaluationGroups");
+  for (int i = 0; i < originals.length; i++) {
+    originals[i].mergeRemoteResults(resultIndividuals[i],
+                                    resultFitnesses[i],
+                                    summaryData[i],
+                                    perStepData.get(i));
+    originals[i].stepData = stepData[i];
+  }
+}
+
 }
@@ -0,0 +1,168 @@
+package agency.eval;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.stream.IntStream;
+
+import agency.util.CmdLineUtils;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * A worker process for RemoteEvaluator.  Listens on a TCP port, and for each
+ * connection, repeatedly reads an EvaluationRequest, runs its
+ * EvaluationGroups (in parallel, on the common ForkJoinPool) and returns the
+ * results.  The agent model, agent and individual classes must be on this
+ * process's classpath.
+ * <p>
+ * Started from the command line with, e.g.,
+ * <code>java agency.eval.EvaluationWorker --port 5701</code>, or within
+ * another process (e.g., for tests) with start().
+ */
+public class EvaluationWorker
+        implements Closeable {
+
+public static final int DEFAULT_PORT = 5701;
+
+public static final Option portOption = Option
+        .builder("p")
+        .longOpt("port")
+        .hasArg()
+        .desc("TCP port to listen on; 0 for any free port.  Default is " +
+              DEFAULT_PORT)
+        .build();
+
+private final ServerSocket serverSocket;
+private volatile boolean   closed = false;
+
+/**
+ * @param port
+ *         The port to listen on, or 0 for any free port.
+ * @throws IOException
+ *         if the port cannot be bound.
+ */
+public EvaluationWorker(int port) throws IOException {
+  serverSocket = new ServerSocket(port);
+}
+
+/**
+ * @return The port this worker is listening on.
+ */
+public int getPort() {
+  return serverSocket.getLocalPort();
+}
+
+/**
+ * Accepts connections on a background (daemon) thread and returns
+ * immediately.
+ */
+public void start() {
+  Thread t = new Thread(this::serve, "EvaluationWorker-" + getPort());
+  t.setDaemon(true);
+  t.start();
+}
+
+/**
+ * Accepts connections until close() is called.  Each connection is served
+ * on its own thread.
+ */
+public void serve() {
+  while (!closed) {
+    try {
+      Socket socket = serverSocket.accept();
+      socket.setTcpNoDelay(true);
+      Thread t = new Thread(() -> handle(socket),
+                            "EvaluationWorker-" + socket.getRemoteSocketAddress());
+      t.setDaemon(true);
+      t.start();
+    } catch (SocketException se) {
+      // Thrown by accept() when the server socket is closed.
+      if (!closed)
+        se.printStackTrace();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
+
+private void handle(Socket socket) {
+  Kryo kryo = RemoteEvaluator.newKryo();
+  try (Socket s = socket;
+       Input in = new Input(s.getInputStream());
+       Output out = new Output(s.getOutputStream())) {
+    while (!closed) {
+      EvaluationRequest request;
+      try {
+        request = kryo.readObject(in, EvaluationRequest.class);
+      } catch (KryoException ke) {
+        // The server closed the connection.
+        return;
+      }
+      request.clientTimeReceived = System.nanoTime();
+      evaluate(request);
+      request.clientTimeReturned = System.nanoTime();
+      kryo.writeObject(out, request);
+      out.flush();
+    }
+  } catch (IOException | KryoException e) {
+    if (!closed)
+      e.printStackTrace();
+  }
+}
+
+/**
+ * Runs every EvaluationGroup in the request, recording each one's execution
+ * time, and then replaces the groups with their results.
+ */
+static void evaluate(EvaluationRequest request) {
+  EvaluationGroup[] groups = request.evaluationGroups;
+  IntStream.range(0, groups.length).parallel().forEach(i -> {
+    long start = System.nanoTime();
+    groups[i].run();
+    request.executionTimes[i] = System.nanoTime() - start;
+  });
+  request.collectResults();
+}
+
+@Override
+public void close() {
+  closed = true;
+  try {
+    serverSocket.close();
+  } catch (IOException e) {
+    e.printStackTrace();
+  }
+}
+
+public static void main(String[] args) throws IOException {
+  Options options = new Options();
+  options.addOption(portOption);
+  CommandLine cmd = CmdLineUtils.parseOrHelpAndExit(EvaluationWorker.class,
+                                                    args,
+                                                    options);
+
+  int port = DEFAULT_PORT;
+  if (CmdLineUtils.has(cmd, portOption)) {
+    try {
+      port = CmdLineUtils.argIntegerThrow(cmd, portOption);
+    } catch (NumberFormatException nfe) {
+      CmdLineUtils.printHelp(EvaluationWorker.class, options,
+                             "Port must be an integer");
+      return;
+    }
+  }
+
+  EvaluationWorker worker = new EvaluationWorker(port);
+  System.out.println("EvaluationWorker listening on port " + worker.getPort());
+  worker.serve();
+}
+
+}
@@ -2,10 +2,23 @@ package agency.eval;
 
 import java.util.stream.Stream;
 
+import agency.Environment;
 import agency.XMLConfigurable;
 
 public interface Evaluator extends XMLConfigurable {
 Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups);
 
+/**
+ * Called by Environment.evolve() at the start of each generation, before any
+ * of that generation's EvaluationGroups are evaluated.  Evaluators that need
+ * more than the groups themselves, e.g., the populations or the
+ * AgentModelFactory, can get them here.  Does nothing by default.
+ *
+ * @param env
+ *         The Environment being evolved
+ */
+default void beginGeneration(Environment env) {
+}
+
 void close();
 }
@@ -0,0 +1,427 @@
+package agency.eval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import agency.AgentFactory;
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.Population;
+import agency.PopulationGroup;
+import agency.SimpleFitness;
+import agency.vector.VectorIndividual;
+import org.w3c.dom.Element;
+
+/**
+ * Evaluates EvaluationGroups in separate worker JVMs (ForkedProcessWorker), so
+ * that models which leak static state, or which occasionally crash the JVM,
+ * cannot affect the main process or each other.
+ * <p>
+ * Nothing is serialized per group.  At the start of each generation, every
+ * individual's genome is written once to a memory-mapped file.  Each call to
+ * evaluate() then writes the groups, as tuples of genome indices, to a second
+ * mapped file, and workers write each agent's fitness to a third.  Workers
+ * are handed contiguous ranges of <em>chunkSize</em> groups as they become
+ * free.  The only per-object serialization is of the AgentModelFactory and
+ * AgentFactories, once, when the workers are started.
+ * <p>
+ * If a worker exits or fails, it is restarted and its range is retried once;
+ * a second failure is fatal.  Calls to evaluate() share the mapped files, so
+ * are made one at a time.
+ * <p>
+ * Limitations: individuals must be VectorIndividuals whose genes are Numbers,
+ * and workers see them as VectorIndividual&lt;Double&gt;.  Models must
+ * return SimpleFitness.  Summary and per-step model data are not returned.
+ * <p>
+ * Configured as, e.g., &lt;ForkedProcessEvaluator processes="4"
+ * chunkSize="64" jvmArgs="-Xmx1g"/&gt;.  If processes is not specified, the
+ * number of available processors is used.
+ */
+public class ForkedProcessEvaluator
+        implements Evaluator {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_CHUNK_SIZE = 64;
+
+Integer processes;
+int     chunkSize = DEFAULT_CHUNK_SIZE;
+String  jvmArgs;
+
+transient File                     directory;
+transient SharedEvaluationFiles    files;
+transient List<WorkerProcess>      workers;
+transient ExecutorService          executorService;
+transient Map<Individual, Integer> genomeIndex;
+transient long                     genomeEpoch;
+transient long                     groupEpoch;
+
+public ForkedProcessEvaluator() {
+}
+
+public ForkedProcessEvaluator(int processes, int chunkSize) {
+  this.processes = processes;
+  this.chunkSize = chunkSize;
+}
+
+/**
+ * Starts the workers, if they are not already running, and writes every
+ * individual's genome to the shared genome file.
+ */
+@Override
+public void beginGeneration(Environment env) {
+  List<Population> populations = new ArrayList<>();
+  for (PopulationGroup pg : env.getPopulationGroups())
+    populations.addAll(pg.getPopulations());
+
+  if (workers == null)
+    startWorkers(env, populations);
+
+  List<VectorIndividual<?>> individuals = new ArrayList<>();
+  List<Integer> populationIndices = new ArrayList<>();
+  Map<Individual, Integer> index = new IdentityHashMap<>();
+  for (int p = 0; p < populations.size(); p++) {
+    for (Individual ind : populations.get(p).individuals) {
+      if (!(ind instanceof VectorIndividual))
+        throw new UnsupportedOperationException(
+                "ForkedProcessEvaluator only supports VectorIndividuals, not " +
+                ind.getClass().getName());
+      index.put(ind, individuals.size());
+      individuals.add((VectorIndividual<?>) ind);
+      populationIndices.add(p);
+    }
+  }
+
+  int[] populationIndex = new int[populationIndices.size()];
+  for (int i = 0; i < populationIndex.length; i++)
+    populationIndex[i] = populationIndices.get(i);
+
+  files.writeGenomes(individuals, populationIndex);
+  genomeIndex = index;
+  genomeEpoch++;
+}
+
+@Override
+public synchronized Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  if (genomeIndex == null)
+    throw new UnsupportedOperationException(
+            "ForkedProcessEvaluator can only be used from Environment.evolve()," +
+            " which calls beginGeneration() before evaluate()");
+
+  List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+  if (groups.isEmpty())
+    return groups.stream();
+
+  // Describe each group as the genome indices of its individuals.  The
+  // groups' own agents are never needed, so are not created.
+  int numGroups = groups.size();
+  int[] slotStart = new int[numGroups + 1];
+  for (int g = 0; g < numGroups; g++)
+    slotStart[g + 1] = slotStart[g] + groups.get(g).numMembers();
+  int[] slots = new int[slotStart[numGroups]];
+  Individual[] slotIndividuals = new Individual[slots.length];
+  for (int g = 0; g < numGroups; g++) {
+    EvaluationGroup eg = groups.get(g);
+    int slot = slotStart[g];
+    for (int m = 0; m < slotStart[g + 1] - slotStart[g]; m++) {
+      Individual ind = eg.member(m);
+      Integer index = genomeIndex.get(ind);
+      if (index == null)
+        throw new RuntimeException(
+                "Individual " + ind + " in EvaluationGroup " +
+                eg.id + " was not in any population when the " +
+                "generation began");
+      slots[slot] = index;
+      slotIndividuals[slot] = ind;
+      slot++;
+    }
+  }
+  files.writeGroups(numGroups, slotStart, slots);
+  groupEpoch++;
+
+  // Hand out ranges of groups to workers as they become free
+  AtomicInteger nextGroup = new AtomicInteger();
+  List<FutureTask<Boolean>> workerTasks = new ArrayList<>();
+  for (WorkerProcess worker : workers) {
+    FutureTask<Boolean> ft = new FutureTask<>(() -> {
+      int start;
+      while ((start = nextGroup.getAndAdd(chunkSize)) < numGroups) {
+        worker.evaluateWithRetry(genomeEpoch, groupEpoch, start,
+                                 Math.min(start + chunkSize, numGroups));
+      }
+      return true;
+    });
+    workerTasks.add(ft);
+    executorService.submit(ft);
+  }
+
+  for (FutureTask<Boolean> ft : workerTasks) {
+    try {
+      ft.get();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (ExecutionException e) {
+      throw new RuntimeException("ForkedProcessEvaluator worker failed",
+                                 e.getCause());
+    }
+  }
+
+  // Read back the results
+  for (int g = 0; g < numGroups; g++) {
+    int n = slotStart[g + 1] - slotStart[g];
+    Individual[] individuals = new Individual[n];
+    Fitness[] fitnesses = new Fitness[n];
+    for (int i = 0; i < n; i++) {
+      int slot = slotStart[g] + i;
+      individuals[i] = slotIndividuals[slot];
+      fitnesses[i] = new SimpleFitness(files.resultTotalFitness(slot),
+                                       files.resultTotalSquaredFitness(slot),
+                                       files.resultNumSamples(slot));
+    }
+    groups.get(g).completeWith(individuals, fitnesses, null, null);
+  }
+
+  return groups.stream();
+}
+
+private void startWorkers(Environment env, List<Population> populations) {
+  try {
+    directory = Files.createTempDirectory("agency-forked-").toFile();
+    directory.deleteOnExit();
+    files = new SharedEvaluationFiles(directory);
+
+    AgentFactory[] agentFactories = new AgentFactory[populations.size()];
+    for (int p = 0; p < agentFactories.length; p++)
+      agentFactories[p] = populations.get(p).getAgentFactory();
+    File setupFile = new File(directory, ForkedProcessWorker.SETUP_FILE);
+    try (ObjectOutputStream oos =
+                 new ObjectOutputStream(new FileOutputStream(setupFile))) {
+      oos.writeObject(env.getAgentModelFactory());
+      oos.writeObject(agentFactories);
+    }
+    setupFile.deleteOnExit();
+    files.genomeFile.deleteOnExit();
+    files.groupFile.deleteOnExit();
+    files.resultFile.deleteOnExit();
+  } catch (IOException e) {
+    throw new RuntimeException("Could not create ForkedProcessEvaluator files",
+                               e);
+  }
+
+  int numProcesses = processes != null ?
+                     processes :
+                     Runtime.getRuntime().availableProcessors();
+  workers = new ArrayList<>(numProcesses);
+  for (int i = 0; i < numProcesses; i++)
+    workers.add(new WorkerProcess(i));
+
+  executorService = Executors.newFixedThreadPool(numProcesses, r -> {
+    Thread t = new Thread(r, "ForkedProcessEvaluator");
+    t.setDaemon(true);
+    return t;
+  });
+}
+
+/**
+ * @return The command used to start a worker: the same java executable and
+ * classpath as this process, plus any configured jvmArgs.
+ */
+List<String> workerCommand() {
+  List<String> command = new ArrayList<>();
+  command.add(new File(new File(System.getProperty("java.home"), "bin"),
+                       "java").getPath());
+  if (jvmArgs != null && !jvmArgs.trim().isEmpty()) {
+    for (String arg : jvmArgs.trim().split("\\s+"))
+      command.add(arg);
+  }
+  command.add("-cp");
+  command.add(System.getProperty("java.class.path"));
+  command.add(ForkedProcessWorker.class.getName());
+  command.add(directory.getPath());
+  return command;
+}
+
+/**
+ * @return The number of worker processes, or 0 if they have not been started.
+ */
+public int getNumWorkers() {
+  return workers == null ? 0 : workers.size();
+}
+
+/**
+ * @return The total number of times workers have been restarted after a
+ * failure.
+ */
+public int getRestarts() {
+  if (workers == null)
+    return 0;
+  int restarts = 0;
+  for (WorkerProcess wp : workers)
+    restarts += wp.restarts;
+  return restarts;
+}
+
+@Override
+public void close() {
+  if (workers != null) {
+    for (WorkerProcess wp : workers)
+      wp.stop();
+    workers = null;
+  }
+  if (executorService != null)
+    executorService.shutdown();
+  if (files != null) {
+    files.genomeFile.delete();
+    files.groupFile.delete();
+    files.resultFile.delete();
+    new File(directory, ForkedProcessWorker.SETUP_FILE).delete();
+    directory.delete();
+  }
+  genomeIndex = null;
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String processesString = e.getAttribute("processes");
+  if (processesString != null && !processesString.isEmpty()) {
+    try {
+      processes = Integer.parseInt(processesString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "ForkedProcessEvaluator processes must be an integer", nfe);
+    }
+    if (processes <= 0)
+      throw new UnsupportedOperationException(
+              "ForkedProcessEvaluator must have at least one process");
+  }
+
+  String chunkSizeString = e.getAttribute("chunkSize");
+  if (chunkSizeString != null && !chunkSizeString.isEmpty()) {
+    try {
+      chunkSize = Integer.parseInt(chunkSizeString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "ForkedProcessEvaluator chunkSize must be an integer", nfe);
+    }
+    if (chunkSize <= 0)
+      throw new UnsupportedOperationException(
+              "ForkedProcessEvaluator chunkSize must be positive");
+  }
+
+  String jvmArgsString = e.getAttribute("jvmArgs");
+  if (jvmArgsString != null && !jvmArgsString.isEmpty())
+    jvmArgs = jvmArgsString;
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  if (processes != null)
+    e.setAttribute("processes", processes.toString());
+  e.setAttribute("chunkSize", Integer.toString(chunkSize));
+  if (jvmArgs != null)
+    e.setAttribute("jvmArgs", jvmArgs);
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // Workers are started again at the beginning of the next generation.
+}
+
+/**
+ * A single worker JVM, and the pipes used to send it commands.  Only ever
+ * used by one thread at a time.
+ */
+private class WorkerProcess {
+  final int id;
+
+  Process        process;
+  Writer         commands;
+  BufferedReader replies;
+  int            restarts = 0;
+
+  WorkerProcess(int id) {
+    this.id = id;
+    start();
+  }
+
+  void start() {
+    ProcessBuilder pb = new ProcessBuilder(workerCommand());
+    pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+    try {
+      process = pb.start();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not start ForkedProcessEvaluator " +
+                                 "worker " + id, e);
+    }
+    commands = new OutputStreamWriter(process.getOutputStream());
+    replies = new BufferedReader(
+            new InputStreamReader(process.getInputStream()));
+  }
+
+  void evaluateWithRetry(long genomeEpoch, long groupEpoch, int start,
+                         int end) {
+    try {
+      evaluate(genomeEpoch, groupEpoch, start, end);
+    } catch (IOException first) {
+      System.err.println("ForkedProcessEvaluator worker " + id + " failed on " +
+                         "groups [" + start + ", " + end + "), restarting: " +
+                         first.getMessage());
+      stop();
+      restarts++;
+      start();
+      try {
+        evaluate(genomeEpoch, groupEpoch, start, end);
+      } catch (IOException second) {
+        throw new RuntimeException("ForkedProcessEvaluator worker " + id +
+                                   " failed twice on groups [" + start + ", " +
+                                   end + ")", second);
+      }
+    }
+  }
+
+  void evaluate(long genomeEpoch, long groupEpoch, int start, int end)
+          throws IOException {
+    commands.write("EVAL " + genomeEpoch + " " + groupEpoch + " " + start +
+                   " " + end + "\n");
+    commands.flush();
+    String reply = replies.readLine();
+    if (reply == null)
+      throw new IOException("worker exited");
+    if (!reply.equals("DONE"))
+      throw new IOException(reply);
+  }
+
+  void stop() {
+    try {
+      commands.close();
+    } catch (IOException e) {
+      // The worker has already exited.
+    }
+    try {
+      if (!process.waitFor(5, TimeUnit.SECONDS))
+        process.destroyForcibly();
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+    }
+  }
+}
+
+}
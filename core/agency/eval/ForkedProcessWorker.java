@@ -0,0 +1,151 @@
+package agency.eval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+
+import agency.AgentFactory;
+import agency.AgentModelFactory;
+import agency.Fitness;
+import agency.Individual;
+import agency.SimpleFitness;
+import agency.vector.VectorIndividual;
+
+/**
+ * A child process started by ForkedProcessEvaluator.  At startup, it reads the
+ * AgentModelFactory and each population's AgentFactory from the setup file.
+ * After that, it only reads genomes and groups from, and writes fitness to,
+ * the SharedEvaluationFiles.
+ * <p>
+ * Commands arrive one per line on standard input:
+ * <pre>
+ *   EVAL genomeEpoch groupEpoch start end
+ * </pre>
+ * which runs groups [start, end) and replies DONE (or ERROR and a message) on
+ * standard output.  The files are re-mapped whenever an epoch changes.  Any
+ * output from the models themselves is sent to standard error, so that it
+ * cannot be mistaken for a reply.  The worker exits at end of input, i.e.,
+ * when the evaluator closes it or exits.
+ */
+public class ForkedProcessWorker {
+
+static final String SETUP_FILE = "setup.ser";
+
+final AgentModelFactory<?>  modelFactory;
+final AgentFactory[]        agentFactories;
+final SharedEvaluationFiles files;
+
+long genomeEpoch = -1;
+long groupEpoch  = -1;
+
+/**
+ * Individuals decoded from the genome file, created as they are first needed
+ */
+VectorIndividual<Double>[] individuals;
+
+ForkedProcessWorker(File directory) throws IOException, ClassNotFoundException {
+  try (ObjectInputStream ois = new ObjectInputStream(
+          new FileInputStream(new File(directory, SETUP_FILE)))) {
+    modelFactory = (AgentModelFactory<?>) ois.readObject();
+    agentFactories = (AgentFactory[]) ois.readObject();
+  }
+  modelFactory.resumeFromCheckpoint();
+  for (AgentFactory af : agentFactories)
+    af.resumeFromCheckpoint();
+  files = new SharedEvaluationFiles(directory);
+}
+
+@SuppressWarnings("unchecked")
+void evaluate(long genomeEpoch, long groupEpoch, int start, int end) {
+  if (genomeEpoch != this.genomeEpoch) {
+    files.mapGenomes();
+    individuals = new VectorIndividual[files.genomeCount()];
+    this.genomeEpoch = genomeEpoch;
+  }
+  if (groupEpoch != this.groupEpoch) {
+    files.mapGroups();
+    this.groupEpoch = groupEpoch;
+  }
+
+  for (int g = start; g < end; g++) {
+    int firstSlot = files.slotStart(g);
+    int endSlot = files.slotStart(g + 1);
+
+    EvaluationGroup eg = new EvaluationGroup();
+    eg.setModelFactory(modelFactory);
+    Individual[] members = new Individual[endSlot - firstSlot];
+    for (int slot = firstSlot; slot < endSlot; slot++) {
+      int index = files.slotIndividual(slot);
+      members[slot - firstSlot] = individual(index);
+      eg.addAgent(agentFactories[files.populationIndex(index)]
+                          .createAgent(members[slot - firstSlot]));
+    }
+
+    eg.run();
+
+    for (int slot = firstSlot; slot < endSlot; slot++) {
+      Fitness f = eg.getResults().get(members[slot - firstSlot]);
+      if (!(f instanceof SimpleFitness))
+        throw new UnsupportedOperationException(
+                "ForkedProcessEvaluator only supports SimpleFitness, not " + f);
+      SimpleFitness sf = (SimpleFitness) f;
+      files.putResult(slot, sf.getTotalFitness(),
+                      sf.getTotalSquaredFitness(), sf.getNumSamples());
+    }
+  }
+}
+
+private VectorIndividual<Double> individual(int index) {
+  VectorIndividual<Double> ind = individuals[index];
+  if (ind == null) {
+    int geneStart = files.geneStart(index);
+    int length = files.geneStart(index + 1) - geneStart;
+    ind = new VectorIndividual<>(length);
+    for (int i = 0; i < length; i++)
+      ind.changeGene(i, files.gene(geneStart + i));
+    individuals[index] = ind;
+  }
+  return ind;
+}
+
+public static void main(String[] args) throws Exception {
+  if (args.length != 1) {
+    System.err.println("Usage: ForkedProcessWorker <directory>");
+    System.exit(1);
+  }
+
+  // Replies go to the original standard output; everything else to stderr.
+  PrintStream replies = System.out;
+  System.setOut(System.err);
+
+  ForkedProcessWorker worker = new ForkedProcessWorker(new File(args[0]));
+  BufferedReader commands =
+          new BufferedReader(new InputStreamReader(System.in));
+
+  String line;
+  while ((line = commands.readLine()) != null) {
+    String[] command = line.trim().split("\\s+");
+    if (command.length != 5 || !command[0].equals("EVAL")) {
+      replies.println("ERROR Unknown command: " + line);
+      replies.flush();
+      continue;
+    }
+    try {
+      worker.evaluate(Long.parseLong(command[1]),
+                      Long.parseLong(command[2]),
+                      Integer.parseInt(command[3]),
+                      Integer.parseInt(command[4]));
+      replies.println("DONE");
+    } catch (Throwable t) {
+      t.printStackTrace();
+      replies.println("ERROR " + t.toString().replace('\n', ' '));
+    }
+    replies.flush();
+  }
+}
+
+}
@@ -0,0 +1,397 @@
+package agency.eval;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import agency.*;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Creates EvaluationGroups like ShuffledEvaluationGroupFactory, but in waves
+ * of <em>waveGroups</em> groups, up to a budget of <em>maxGroups</em> groups
+ * per generation.  The first wave samples every individual, using more than
+ * waveGroups groups if waveGroups groups have too few places for every
+ * individual (but never more than maxGroups).  After each wave,
+ * a confidence interval is computed for each individual's mean fitness from
+ * its SimpleFitness sample variance, and individuals are compared with the
+ * others in their Population (which is where selection happens).
+ * <p>
+ * An individual stops being sampled once it has at least
+ * <em>minSamples</em> samples and its interval overlaps those of no more than
+ * <em>rankTolerance</em> others, i.e., further samples could not change its
+ * rank (by more than rankTolerance places).  Later waves are made up only of
+ * individuals that are still racing; a population with none left racing fills
+ * its places in groups with randomly chosen individuals.  Evaluation stops when
+ * the budget is spent or no individual is still racing.
+ * <p>
+ * Models must return SimpleFitness.  Configured as, e.g.,
+ * <pre>
+ * &lt;RacingEvaluationGroupFactory maxGroups="1000" waveGroups="200"
+ *     minSamples="3" confidence="0.95" rankTolerance="0"&gt;
+ *   &lt;AgentSource populationGroup="firms" numAgents="2"/&gt;
+ * &lt;/RacingEvaluationGroupFactory&gt;
+ * </pre>
+ */
+public class RacingEvaluationGroupFactory
+        implements AdaptiveEvaluationGroupFactory {
+public static final long   serialVersionUID    = 1L;
+public static final int    DEFAULT_MIN_SAMPLES = 3;
+public static final double DEFAULT_CONFIDENCE  = 0.95;
+
+Map<String, Integer> numAgentsFrom = new LinkedHashMap<>();
+int                  maxGroups;
+int                  waveGroups;
+int                  minSamples    = DEFAULT_MIN_SAMPLES;
+double               confidence    = DEFAULT_CONFIDENCE;
+int                  rankTolerance = 0;
+
+/*
+ * State for the current generation
+ */
+transient int groupsCreated;
+transient int waves;
+transient int racing;
+
+/**
+ * Critical values of Student's t, by degrees of freedom
+ */
+transient Map<Integer, Double> criticalValues;
+
+public RacingEvaluationGroupFactory() {
+}
+
+@Override
+public Stream<EvaluationGroup> createEvaluationGroups(Environment env) {
+  groupsCreated = 0;
+  waves = 0;
+  racing = 0;
+  for (PopulationGroup pg : populationGroups(env))
+    for (Population pop : pg.getPopulations())
+      racing += pop.size();
+
+  List<List<Participant>> sources = new ArrayList<>();
+  for (PopulationGroup pg : populationGroups(env)) {
+    List<Participant> all = new ArrayList<>();
+    for (Population pop : pg.getPopulations())
+      for (Individual ind : pop.individuals)
+        all.add(new Participant(ind, pop));
+    sources.add(all);
+  }
+  return wave(env, sources, groupsToSampleAll(sources));
+}
+
+@Override
+public Stream<EvaluationGroup> nextWave(Environment env,
+                                        Map<Individual, Fitness> fitnessesSoFar) {
+  if (groupsCreated >= maxGroups)
+    return null;
+
+  racing = 0;
+  List<List<Participant>> sources = new ArrayList<>();
+  for (PopulationGroup pg : populationGroups(env)) {
+    List<Participant> all = new ArrayList<>();
+    List<Participant> stillRacing = new ArrayList<>();
+    for (Population pop : pg.getPopulations()) {
+      boolean[] isRacing = stillRacing(pop, fitnessesSoFar);
+      for (int i = 0; i < isRacing.length; i++) {
+        Participant p = new Participant(pop.individuals.get(i), pop);
+        all.add(p);
+        if (isRacing[i])
+          stillRacing.add(p);
+      }
+    }
+    racing += stillRacing.size();
+    sources.add(stillRacing.isEmpty() ? all : stillRacing);
+  }
+
+  if (racing == 0)
+    return null;
+  return wave(env, sources, waveGroups);
+}
+
+/**
+ * @return The number of groups needed for every participant in the sources
+ * to be sampled at least once, or waveGroups if that is more.
+ */
+private int groupsToSampleAll(List<List<Participant>> sources) {
+  int numGroups = waveGroups;
+  List<Integer> quantities = new ArrayList<>(numAgentsFrom.values());
+  for (int s = 0; s < sources.size(); s++) {
+    int quantity = quantities.get(s);
+    if (quantity > 0)
+      numGroups = Math.max(numGroups,
+                           (sources.get(s).size() + quantity - 1) / quantity);
+  }
+  return numGroups;
+}
+
+/**
+ * Determines which individuals in a population might still change rank.
+ *
+ * @return For each individual in the population, whether it should be
+ * sampled again.
+ */
+boolean[] stillRacing(Population pop, Map<Individual, Fitness> fitnesses) {
+  int n = pop.individuals.size();
+  double[] lo = new double[n];
+  double[] hi = new double[n];
+  boolean[] isRacing = new boolean[n];
+
+  for (int i = 0; i < n; i++) {
+    Fitness f = fitnesses.get(pop.individuals.get(i));
+    if (f != null && !(f instanceof SimpleFitness))
+      throw new UnsupportedOperationException(
+              "RacingEvaluationGroupFactory requires SimpleFitness, not " +
+              f.getClass().getName());
+    SimpleFitness sf = (SimpleFitness) f;
+    if (sf == null || sf.getNumSamples() < Math.max(minSamples, 2)) {
+      isRacing[i] = true;
+      lo[i] = Double.NEGATIVE_INFINITY;
+      hi[i] = Double.POSITIVE_INFINITY;
+    } else {
+      double mean = sf.getAverageFitness();
+      double halfWidth = criticalValue(sf.getNumSamples() - 1) *
+                         Math.sqrt(sf.getVariance() / sf.getNumSamples());
+      lo[i] = mean - halfWidth;
+      hi[i] = mean + halfWidth;
+    }
+  }
+
+  /*
+   * Individual j's rank relative to i is uncertain iff hi[j] > lo[i] and
+   * lo[j] < hi[i].  Every j satisfies at least one of those unless both
+   * intervals are the same single point, so the number of uncertain j is
+   * #(hi > lo[i]) + #(lo < hi[i]) - n + #(same point as i).
+   */
+  double[] sortedLo = lo.clone();
+  double[] sortedHi = hi.clone();
+  Arrays.sort(sortedLo);
+  Arrays.sort(sortedHi);
+  Map<Double, Integer> points = new HashMap<>();
+  for (int i = 0; i < n; i++)
+    if (lo[i] == hi[i])
+      points.merge(lo[i], 1, Integer::sum);
+
+  for (int i = 0; i < n; i++) {
+    if (isRacing[i])
+      continue;
+    int above = n - countAtMost(sortedHi, lo[i]);
+    int below = countLessThan(sortedLo, hi[i]);
+    int uncertain = above + below - n;
+    if (lo[i] == hi[i])
+      uncertain += points.get(lo[i]);
+    else
+      uncertain -= 1; // i itself
+    isRacing[i] = uncertain > rankTolerance;
+  }
+  return isRacing;
+}
+
+private double criticalValue(int degreesOfFreedom) {
+  if (criticalValues == null)
+    criticalValues = new HashMap<>();
+  return criticalValues.computeIfAbsent(
+          degreesOfFreedom,
+          df -> new TDistribution(df)
+                  .inverseCumulativeProbability((1 + confidence) / 2));
+}
+
+/**
+ * @return The number of values in the sorted array that are <= x
+ */
+private static int countAtMost(double[] sorted, double x) {
+  int low = 0, high = sorted.length;
+  while (low < high) {
+    int mid = (low + high) >>> 1;
+    if (sorted[mid] <= x)
+      low = mid + 1;
+    else
+      high = mid;
+  }
+  return low;
+}
+
+/**
+ * @return The number of values in the sorted array that are < x
+ */
+private static int countLessThan(double[] sorted, double x) {
+  int low = 0, high = sorted.length;
+  while (low < high) {
+    int mid = (low + high) >>> 1;
+    if (sorted[mid] < x)
+      low = mid + 1;
+    else
+      high = mid;
+  }
+  return low;
+}
+
+private Stream<EvaluationGroup> wave(Environment env,
+                                     List<List<Participant>> sources,
+                                     int numGroups) {
+  numGroups = Math.min(numGroups, maxGroups - groupsCreated);
+  groupsCreated += numGroups;
+  waves++;
+
+  List<Integer> quantities = new ArrayList<>(numAgentsFrom.values());
+  for (List<Participant> source : sources)
+    Collections.shuffle(source, ThreadLocalRandom.current());
+  int[] positions = new int[sources.size()];
+
+  List<EvaluationGroup> groups = new ArrayList<>(numGroups);
+  for (int g = 0; g < numGroups; g++) {
+    EvaluationGroup eg = new EvaluationGroup();
+    eg.generation = env.getGeneration();
+    eg.setModelFactory(env.getAgentModelFactory());
+    for (int s = 0; s < sources.size(); s++) {
+      List<Participant> source = sources.get(s);
+      for (int i = 0; i < quantities.get(s); i++) {
+        if (positions[s] >= source.size()) {
+          positions[s] = 0;
+          Collections.shuffle(source, ThreadLocalRandom.current());
+        }
+        Participant p = source.get(positions[s]++);
+        eg.addAgent(p.population.createAgent(p.individual));
+      }
+    }
+    groups.add(eg);
+  }
+  return groups.stream();
+}
+
+private List<PopulationGroup> populationGroups(Environment env) {
+  List<PopulationGroup> pgs = new ArrayList<>();
+  for (String popGroupID : numAgentsFrom.keySet()) {
+    Optional<PopulationGroup> popGroupOp = env.getPopulationGroup(popGroupID);
+    if (!popGroupOp.isPresent())
+      throw new RuntimeException("Population group " + popGroupID + ", " +
+                                 "specified in " +
+                                 "RacingEvaluationGroupFactory, cannot be" +
+                                 " found");
+    pgs.add(popGroupOp.get());
+  }
+  return pgs;
+}
+
+/**
+ * @return The number of EvaluationGroups created so far this generation.
+ */
+public int getGroupsCreated() {
+  return groupsCreated;
+}
+
+/**
+ * @return The number of waves created so far this generation.
+ */
+public int getWaves() {
+  return waves;
+}
+
+/**
+ * @return The number of individuals that were still racing when the most
+ * recent wave was created.
+ */
+public int getRacing() {
+  return racing;
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  try {
+    maxGroups = Integer.parseInt(e.getAttribute("maxGroups"));
+  } catch (Exception ex) {
+    throw new UnsupportedOperationException(
+            "RacingEvaluationGroupFactory must specify a maxGroups=\"<Integer>\"",
+            ex);
+  }
+  try {
+    waveGroups = Integer.parseInt(e.getAttribute("waveGroups"));
+  } catch (Exception ex) {
+    throw new UnsupportedOperationException(
+            "RacingEvaluationGroupFactory must specify a waveGroups=\"<Integer>\"",
+            ex);
+  }
+  if (maxGroups <= 0 || waveGroups <= 0)
+    throw new UnsupportedOperationException(
+            "RacingEvaluationGroupFactory maxGroups and waveGroups must be " +
+            "positive");
+
+  String minSamplesString = e.getAttribute("minSamples");
+  if (minSamplesString != null && !minSamplesString.isEmpty())
+    minSamples = Integer.parseInt(minSamplesString);
+
+  String confidenceString = e.getAttribute("confidence");
+  if (confidenceString != null && !confidenceString.isEmpty()) {
+    confidence = Double.parseDouble(confidenceString);
+    if (confidence <= 0 || confidence >= 1)
+      throw new UnsupportedOperationException(
+              "RacingEvaluationGroupFactory confidence must be between 0 and 1");
+  }
+
+  String rankToleranceString = e.getAttribute("rankTolerance");
+  if (rankToleranceString != null && !rankToleranceString.isEmpty())
+    rankTolerance = Integer.parseInt(rankToleranceString);
+
+  NodeList nl = e.getChildNodes();
+  for (int i = 0; i < nl.getLength(); i++) {
+    Node node = nl.item(i);
+    if (node instanceof Element) {
+      Element child = (Element) node;
+      if (!child.getTagName().equalsIgnoreCase("AgentSource"))
+        throw new UnsupportedOperationException(
+                "RacingEvaluationGroupFactory must have only AgentSource " +
+                "child elements");
+
+      String popGroupName = child.getAttribute("populationGroup");
+      if (popGroupName == null || popGroupName.isEmpty())
+        throw new UnsupportedOperationException(
+                "AgentSource must specify a populationGroup=\"<id>\"");
+      try {
+        numAgentsFrom.put(popGroupName,
+                          Integer.parseInt(child.getAttribute("numAgents")));
+      } catch (Exception ex) {
+        throw new UnsupportedOperationException(
+                "AgentSource must specify a numAgents=\"<Integer>\"", ex);
+      }
+    }
+  }
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  Document d = e.getOwnerDocument();
+  e.setAttribute("maxGroups", Integer.toString(maxGroups));
+  e.setAttribute("waveGroups", Integer.toString(waveGroups));
+  e.setAttribute("minSamples", Integer.toString(minSamples));
+  e.setAttribute("confidence", Double.toString(confidence));
+  e.setAttribute("rankTolerance", Integer.toString(rankTolerance));
+
+  for (Map.Entry<String, Integer> entry : numAgentsFrom.entrySet()) {
+    Element childE = d.createElement("AgentSource");
+    childE.setAttribute("populationGroup", entry.getKey());
+    childE.setAttribute("numAgents", entry.getValue().toString());
+    e.appendChild(childE);
+  }
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // Nothing is required.
+}
+
+private static class Participant {
+  final Individual individual;
+  final Population population;
+
+  Participant(Individual individual, Population population) {
+    this.individual = individual;
+    this.population = population;
+  }
+}
+
+}
@@ -0,0 +1,425 @@
+package agency.eval;
+
+import static agency.util.Misc.WARN;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Evaluates EvaluationGroups on one or more EvaluationWorker processes, which
+ * may be on this machine or others.  Groups are sent to workers in batches,
+ * as EvaluationRequests serialized with Kryo over TCP.  Each worker pulls a
+ * new batch as soon as its previous one returns, so faster workers are given
+ * more groups.
+ * <p>
+ * The size of each worker's batches is adjusted after every request, based on
+ * the measured networkDelay() and executionTime() of that request.  Batches
+ * are made large enough that the time spent on the network is no more than
+ * <em>maxNetworkFraction</em> of the round trip, but no larger than a fair
+ * share of the groups remaining, so that no worker is left with a long tail.
+ * <p>
+ * If a worker fails, its batch is returned to the queue and evaluated by the
+ * remaining workers.  Evaluation fails only if no workers remain.  Calls to
+ * evaluate() share the workers' connections, so are made one at a time.
+ * <p>
+ * Configured as, e.g.,
+ * <pre>
+ * &lt;RemoteEvaluator initialBatchSize="4" maxNetworkFraction="0.1"&gt;
+ *   &lt;Worker host="localhost" port="5701"/&gt;
+ *   &lt;Worker host="node2" port="5701"/&gt;
+ * &lt;/RemoteEvaluator&gt;
+ * </pre>
+ */
+public class RemoteEvaluator
+        implements Evaluator {
+public static final long   serialVersionUID             = 1L;
+public static final int    DEFAULT_INITIAL_BATCH_SIZE   = 4;
+public static final int    DEFAULT_MAX_BATCH_SIZE       = 4096;
+public static final double DEFAULT_MAX_NETWORK_FRACTION = 0.1;
+public static final int    CONNECT_TIMEOUT_MILLIS       = 10_000;
+
+List<WorkerAddress> workers;
+int    initialBatchSize   = DEFAULT_INITIAL_BATCH_SIZE;
+int    maxBatchSize       = DEFAULT_MAX_BATCH_SIZE;
+double maxNetworkFraction = DEFAULT_MAX_NETWORK_FRACTION;
+
+transient List<WorkerConnection> connections;
+transient ExecutorService        executorService;
+
+public RemoteEvaluator() {
+  workers = new ArrayList<>();
+}
+
+public void addWorker(String host, int port) {
+  workers.add(new WorkerAddress(host, port));
+}
+
+/**
+ * @return A Kryo instance configured to serialize EvaluationRequests.  Both
+ * RemoteEvaluator and EvaluationWorker must use the same configuration.  Kryo
+ * is not threadsafe, so each connection uses its own instance.
+ */
+static Kryo newKryo() {
+  Kryo kryo = new Kryo();
+  // Models, agents and individuals need not have no-argument constructors.
+  kryo.setInstantiatorStrategy(
+          new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+  kryo.register(UUID.class, new UUIDSerializer());
+  return kryo;
+}
+
+@Override
+public synchronized Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+  BatchQueue queue = new BatchQueue(groups);
+
+  /*
+   * A failed worker returns its batch to the queue, possibly after the other
+   * workers have already found the queue empty.  Keep going until every
+   * group has been evaluated or no workers remain.
+   */
+  while (!queue.isEmpty()) {
+    List<WorkerConnection> live = getLiveConnections();
+    if (live.isEmpty())
+      throw new RuntimeException("RemoteEvaluator has no reachable workers; " +
+                                 queue.remaining() +
+                                 " EvaluationGroups were not evaluated");
+
+    int numWorkers = live.size();
+    List<Future<?>> tasks = new ArrayList<>();
+    for (WorkerConnection wc : live)
+      tasks.add(executorService.submit(() -> wc.evaluateFrom(queue, numWorkers)));
+
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      } catch (ExecutionException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  return groups.stream();
+}
+
+/**
+ * Connects to any workers not yet connected, and returns those that are
+ * still usable.
+ */
+private synchronized List<WorkerConnection> getLiveConnections() {
+  if (workers.isEmpty())
+    throw new UnsupportedOperationException(
+            "RemoteEvaluator must have at least one Worker");
+
+  if (connections == null) {
+    connections = new ArrayList<>();
+    for (WorkerAddress wa : workers) {
+      WorkerConnection wc = new WorkerConnection(wa);
+      try {
+        wc.connect();
+        connections.add(wc);
+      } catch (IOException e) {
+        WARN("RemoteEvaluator could not connect to worker " + wa + ": " +
+             e.getMessage());
+      }
+    }
+    executorService = Executors.newFixedThreadPool(
+            Math.max(1, connections.size()),
+            r -> {
+              Thread t = new Thread(r, "RemoteEvaluator");
+              t.setDaemon(true);
+              return t;
+            });
+  }
+
+  Iterator<WorkerConnection> i = connections.iterator();
+  while (i.hasNext()) {
+    if (i.next().failed)
+      i.remove();
+  }
+  return new ArrayList<>(connections);
+}
+
+/**
+ * @return The current batch size for each connected worker, in the order
+ * the workers were configured.  Mostly useful for diagnostics.
+ */
+public synchronized List<Integer> getBatchSizes() {
+  List<Integer> toReturn = new ArrayList<>();
+  if (connections != null)
+    for (WorkerConnection wc : connections)
+      toReturn.add(wc.batchSize);
+  return toReturn;
+}
+
+@Override
+public synchronized void close() {
+  if (connections != null) {
+    for (WorkerConnection wc : connections)
+      wc.close();
+    connections = null;
+  }
+  if (executorService != null) {
+    executorService.shutdown();
+    executorService = null;
+  }
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String batchString = e.getAttribute("initialBatchSize");
+  if (batchString != null && !batchString.isEmpty())
+    initialBatchSize = Integer.parseInt(batchString);
+  String maxBatchString = e.getAttribute("maxBatchSize");
+  if (maxBatchString != null && !maxBatchString.isEmpty())
+    maxBatchSize = Integer.parseInt(maxBatchString);
+  String fractionString = e.getAttribute("maxNetworkFraction");
+  if (fractionString != null && !fractionString.isEmpty())
+    maxNetworkFraction = Double.parseDouble(fractionString);
+
+  if (initialBatchSize <= 0 || maxBatchSize < initialBatchSize)
+    throw new UnsupportedOperationException(
+            "RemoteEvaluator requires 0 < initialBatchSize <= maxBatchSize");
+  if (maxNetworkFraction <= 0 || maxNetworkFraction >= 1)
+    throw new UnsupportedOperationException(
+            "RemoteEvaluator maxNetworkFraction must be between 0 and 1");
+
+  NodeList nl = e.getChildNodes();
+  for (int i = 0; i < nl.getLength(); i++) {
+    Node node = nl.item(i);
+    if (node instanceof Element) {
+      Element child = (Element) node;
+      if (!child.getTagName().equalsIgnoreCase("Worker"))
+        throw new UnsupportedOperationException(
+                "RemoteEvaluator must have only Worker child elements");
+
+      String host = child.getAttribute("host");
+      if (host == null || host.isEmpty())
+        throw new UnsupportedOperationException(
+                "Worker must specify a host=\"<hostname>\"");
+      try {
+        addWorker(host, Integer.parseInt(child.getAttribute("port")));
+      } catch (NumberFormatException nfe) {
+        throw new UnsupportedOperationException(
+                "Worker must specify a port=\"<Integer>\"", nfe);
+      }
+    }
+  }
+
+  if (workers.isEmpty())
+    throw new UnsupportedOperationException(
+            "RemoteEvaluator must have at least one Worker");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  Document d = e.getOwnerDocument();
+  e.setAttribute("initialBatchSize", Integer.toString(initialBatchSize));
+  e.setAttribute("maxBatchSize", Integer.toString(maxBatchSize));
+  e.setAttribute("maxNetworkFraction", Double.toString(maxNetworkFraction));
+  for (WorkerAddress wa : workers) {
+    Element childE = d.createElement("Worker");
+    childE.setAttribute("host", wa.host);
+    childE.setAttribute("port", Integer.toString(wa.port));
+    e.appendChild(childE);
+  }
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // Connections are re-opened on first use.
+}
+
+static class WorkerAddress
+        implements Serializable {
+  public static final long serialVersionUID = 1L;
+
+  String host;
+  int    port;
+
+  WorkerAddress(String host, int port) {
+    this.host = host;
+    this.port = port;
+  }
+
+  @Override
+  public String toString() {
+    return host + ":" + port;
+  }
+}
+
+/**
+ * The groups of one call to evaluate() that have not yet been evaluated.
+ */
+private static class BatchQueue {
+  final List<EvaluationGroup> pending;
+
+  BatchQueue(List<EvaluationGroup> groups) {
+    pending = new ArrayList<>(groups);
+  }
+
+  /**
+   * @param preferredSize
+   *         The batch size the worker would like
+   * @param workers
+   *         The number of workers sharing this queue
+   * @return Up to preferredSize groups, but no more than a fair share of
+   * those remaining.  Empty if there is nothing left to do.
+   */
+  synchronized EvaluationGroup[] take(int preferredSize, int workers) {
+    int fairShare = (pending.size() + workers - 1) / Math.max(1, workers);
+    int n = Math.min(preferredSize, Math.max(1, fairShare));
+    n = Math.min(n, pending.size());
+    List<EvaluationGroup> tail = pending.subList(pending.size() - n,
+                                                 pending.size());
+    EvaluationGroup[] toReturn = tail.toArray(new EvaluationGroup[n]);
+    tail.clear();
+    return toReturn;
+  }
+
+  synchronized void putBack(EvaluationGroup[] batch) {
+    for (EvaluationGroup eg : batch)
+      pending.add(eg);
+  }
+
+  synchronized boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  synchronized int remaining() {
+    return pending.size();
+  }
+}
+
+private class WorkerConnection {
+  final WorkerAddress address;
+  Socket socket;
+  Kryo   kryo;
+  Input  in;
+  Output out;
+
+  int              batchSize = initialBatchSize;
+  volatile boolean failed    = false;
+
+  WorkerConnection(WorkerAddress address) {
+    this.address = address;
+  }
+
+  void connect() throws IOException {
+    socket = new Socket();
+    socket.setTcpNoDelay(true);
+    socket.connect(new InetSocketAddress(address.host, address.port),
+                   CONNECT_TIMEOUT_MILLIS);
+    kryo = newKryo();
+    in = new Input(socket.getInputStream());
+    out = new Output(socket.getOutputStream());
+  }
+
+  /**
+   * Sends batches from the queue to this worker until the queue is empty or
+   * the worker fails.  The number of workers sharing the queue is passed in
+   * by evaluate(), which holds the lock that guards connections.
+   */
+  void evaluateFrom(BatchQueue queue, int workers) {
+    while (!failed) {
+      EvaluationGroup[] batch = queue.take(batchSize, workers);
+      if (batch.length == 0)
+        return;
+      try {
+        EvaluationRequest returned = send(batch);
+        returned.mergeResults(batch);
+        rebalance(returned, batch.length);
+      } catch (IOException | KryoException e) {
+        WARN("RemoteEvaluator lost worker " + address + ": " + e.getMessage());
+        failed = true;
+        queue.putBack(batch);
+        close();
+      }
+    }
+  }
+
+  EvaluationRequest send(EvaluationGroup[] batch) throws IOException {
+    // Neither the AgentModelFactory nor agent assignment plans are sent, so
+    // agents and models must be created here.
+    for (EvaluationGroup eg : batch) {
+      eg.ensureAgents();
+      eg.ensureModel();
+    }
+    EvaluationRequest request = new EvaluationRequest(batch);
+    request.serverTimeSent = System.nanoTime();
+    kryo.writeObject(out, request);
+    out.flush();
+    EvaluationRequest returned = kryo.readObject(in, EvaluationRequest.class);
+    returned.serverTimeReceived = System.nanoTime();
+    return returned;
+  }
+
+  /**
+   * Chooses the next batch size so that the network delay is at most
+   * maxNetworkFraction of each round trip, given the execution time per
+   * group measured on this request.
+   */
+  void rebalance(EvaluationRequest returned, int groups) {
+    long executionTime = returned.executionTime();
+    long networkDelay = Math.max(0, returned.networkDelay());
+    if (executionTime <= 0) {
+      batchSize = Math.min(maxBatchSize, batchSize * 2);
+      return;
+    }
+    double perGroup = (double) executionTime / groups;
+    double targetExecution =
+            networkDelay * (1 - maxNetworkFraction) / maxNetworkFraction;
+    int target = (int) Math.ceil(targetExecution / perGroup);
+    batchSize = Math.max(1, Math.min(maxBatchSize, target));
+  }
+
+  void close() {
+    try {
+      if (socket != null)
+        socket.close();
+    } catch (IOException e) {
+      // Already closed; nothing else to do.
+    }
+  }
+}
+
+private static class UUIDSerializer
+        extends Serializer<UUID> {
+  @Override
+  public void write(Kryo kryo, Output output, UUID uuid) {
+    output.writeLong(uuid.getMostSignificantBits());
+    output.writeLong(uuid.getLeastSignificantBits());
+  }
+
+  @Override
+  public UUID read(Kryo kryo, Input input, Class<UUID> type) {
+    return new UUID(input.readLong(), input.readLong());
+  }
+}
+
+}
@@ -0,0 +1,238 @@
+package agency.eval;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import agency.vector.VectorIndividual;
+
+/**
+ * The memory-mapped files that ForkedProcessEvaluator shares with its worker
+ * processes.  All three live in one directory, and are only ever grown, never
+ * truncated, so that a worker's older (smaller) mapping always remains valid.
+ * <p>
+ * The genome file is written once per generation:
+ * <pre>
+ *   int      n                  number of individuals
+ *   int[n]   populationIndex    which population each individual is from
+ *   int[n+1] geneStart          index of each individual's first gene
+ *   (padding to a multiple of 8 bytes)
+ *   double[] genes              every genome, concatenated
+ * </pre>
+ * The group file is written for every call to evaluate():
+ * <pre>
+ *   int        numGroups
+ *   int[g+1]   slotStart        index of each group's first slot
+ *   int[]      slots            the individual (genome) index of every slot
+ * </pre>
+ * The result file holds three doubles per slot, written by the workers: the
+ * total fitness, the total squared fitness and the number of samples, so that
+ * the sample variance of a SimpleFitness survives the trip.
+ */
+class SharedEvaluationFiles {
+
+static final String GENOME_FILE = "genomes.bin";
+static final String GROUP_FILE  = "groups.bin";
+static final String RESULT_FILE = "results.bin";
+
+/*
+ * The size of each slot's result
+ */
+static final int RESULT_BYTES = 24;
+
+final File genomeFile;
+final File groupFile;
+final File resultFile;
+
+private MappedByteBuffer genomes;
+private MappedByteBuffer groups;
+private MappedByteBuffer results;
+
+private int genomeCount;
+private int geneDataStart;
+private int groupCount;
+
+SharedEvaluationFiles(File directory) {
+  genomeFile = new File(directory, GENOME_FILE);
+  groupFile = new File(directory, GROUP_FILE);
+  resultFile = new File(directory, RESULT_FILE);
+}
+
+/*
+ * Written by ForkedProcessEvaluator
+ */
+
+/**
+ * Writes the genomes of every individual that may be evaluated this
+ * generation.  Genes must be Numbers; they are stored as doubles.
+ *
+ * @param individuals
+ *         The individuals, in genome index order
+ * @param populationIndex
+ *         The index of the population each individual belongs to
+ */
+void writeGenomes(List<VectorIndividual<?>> individuals, int[] populationIndex) {
+  int n = individuals.size();
+  long totalGenes = 0;
+  for (VectorIndividual<?> ind : individuals)
+    totalGenes += ind.getGenomeLength();
+
+  int dataStart = geneDataStart(n);
+  genomes = map(genomeFile, dataStart + 8 * totalGenes, false);
+  genomes.putInt(0, n);
+
+  int pos = 4;
+  for (int i = 0; i < n; i++, pos += 4)
+    genomes.putInt(pos, populationIndex[i]);
+
+  int geneIndex = 0;
+  for (int i = 0; i < n; i++, pos += 4) {
+    genomes.putInt(pos, geneIndex);
+    geneIndex += individuals.get(i).getGenomeLength();
+  }
+  genomes.putInt(pos, geneIndex);
+
+  pos = dataStart;
+  for (VectorIndividual<?> ind : individuals) {
+    int length = ind.getGenomeLength();
+    for (int j = 0; j < length; j++, pos += 8) {
+      double gene;
+      try {
+        gene = ind.getDouble(j);
+      } catch (RuntimeException notNumeric) {
+        throw new UnsupportedOperationException(
+                "ForkedProcessEvaluator only supports genomes of Numbers, " +
+                "but gene " + j + " is " + ind.gene(j), notNumeric);
+      }
+      genomes.putDouble(pos, gene);
+    }
+  }
+
+  genomeCount = n;
+  geneDataStart = dataStart;
+}
+
+/**
+ * Writes the group file, and sizes the result file to match.
+ *
+ * @param numGroups
+ *         The number of groups
+ * @param slotStart
+ *         The index of each group's first slot, plus the total number of
+ *         slots at numGroups
+ * @param slots
+ *         The genome index of the individual in each slot
+ */
+void writeGroups(int numGroups, int[] slotStart, int[] slots) {
+  int numSlots = slotStart[numGroups];
+  groups = map(groupFile, 4L * (2 + numGroups + numSlots), false);
+  groups.putInt(0, numGroups);
+  int pos = 4;
+  for (int i = 0; i <= numGroups; i++, pos += 4)
+    groups.putInt(pos, slotStart[i]);
+  for (int i = 0; i < numSlots; i++, pos += 4)
+    groups.putInt(pos, slots[i]);
+  groupCount = numGroups;
+
+  results = map(resultFile, RESULT_BYTES * Math.max(numSlots, 1), false);
+}
+
+double resultTotalFitness(int slot) {
+  return results.getDouble(RESULT_BYTES * slot);
+}
+
+double resultTotalSquaredFitness(int slot) {
+  return results.getDouble(RESULT_BYTES * slot + 8);
+}
+
+int resultNumSamples(int slot) {
+  return (int) results.getDouble(RESULT_BYTES * slot + 16);
+}
+
+/*
+ * Read by ForkedProcessWorker
+ */
+
+/**
+ * Maps the genome file as last written by the evaluator.
+ */
+void mapGenomes() {
+  genomes = map(genomeFile, genomeFile.length(), true);
+  genomeCount = genomes.getInt(0);
+  geneDataStart = geneDataStart(genomeCount);
+}
+
+/**
+ * Maps the group and result files as last written by the evaluator.
+ */
+void mapGroups() {
+  groups = map(groupFile, groupFile.length(), true);
+  groupCount = groups.getInt(0);
+  results = map(resultFile, resultFile.length(), false);
+}
+
+int genomeCount() {
+  return genomeCount;
+}
+
+int populationIndex(int individual) {
+  return genomes.getInt(4 + 4 * individual);
+}
+
+int geneStart(int individual) {
+  return genomes.getInt(4 + 4 * genomeCount + 4 * individual);
+}
+
+double gene(int geneIndex) {
+  return genomes.getDouble(geneDataStart + 8 * geneIndex);
+}
+
+int groupCount() {
+  return groupCount;
+}
+
+int slotStart(int group) {
+  return groups.getInt(4 + 4 * group);
+}
+
+int slotIndividual(int slot) {
+  return groups.getInt(4 + 4 * (groupCount + 1) + 4 * slot);
+}
+
+void putResult(int slot, double totalFitness, double totalSquaredFitness,
+               int numSamples) {
+  results.putDouble(RESULT_BYTES * slot, totalFitness);
+  results.putDouble(RESULT_BYTES * slot + 8, totalSquaredFitness);
+  results.putDouble(RESULT_BYTES * slot + 16, numSamples);
+}
+
+private static int geneDataStart(int n) {
+  int headerBytes = 4 + 4 * n + 4 * (n + 1);
+  return (headerBytes + 7) & ~7;
+}
+
+private static MappedByteBuffer map(File file, long size, boolean readOnly) {
+  if (size > Integer.MAX_VALUE)
+    throw new UnsupportedOperationException(
+            "ForkedProcessEvaluator cannot map " + file + " of " + size +
+            " bytes; the limit is 2GB");
+  try (RandomAccessFile raf = new RandomAccessFile(file,
+                                                   readOnly ? "r" : "rw")) {
+    if (!readOnly && raf.length() < size)
+      raf.setLength(size);
+    MappedByteBuffer buffer = raf.getChannel().map(
+            readOnly ? FileChannel.MapMode.READ_ONLY :
+            FileChannel.MapMode.READ_WRITE,
+            0, size);
+    buffer.order(ByteOrder.nativeOrder());
+    return buffer;
+  } catch (IOException e) {
+    throw new RuntimeException("Could not map " + file, e);
+  }
+}
+
+}
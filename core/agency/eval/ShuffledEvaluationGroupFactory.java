@@ -2,10 +2,10 @@ package agency.eval;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import agency.*;
 import org.w3c.dom.Document;
@@ -101,23 +101,35 @@ public void resumeFromCheckpoint() {
 @Override
 public Stream<EvaluationGroup> createEvaluationGroups(Environment env) {
   ShuffledEvaluationGroupGenerator segg =
-          new ShuffledEvaluationGroupGenerator(numAgentsFrom,env);
-  return Stream.generate(segg).limit(numGroups);
+          new ShuffledEvaluationGroupGenerator(numAgentsFrom, env, numGroups);
+  return StreamSupport.stream(
+          new EvaluationGroupSpliterator(segg::group, 0, numGroups), false);
 }
 
+/**
+ * Supplies EvaluationGroups from an assignment plan drawn up in advance for
+ * all of them.  Agents are not created here, but by each group when it is run,
+ * so this only hands out group indices and needs no locking.  Groups can also
+ * be created directly by index, with group(), which is what
+ * createEvaluationGroups() does so that its stream can be split.
+ */
 public static class ShuffledEvaluationGroupGenerator
         implements
         Supplier<EvaluationGroup> {
 
-  SourceList[] sourceLists;
-  Environment  env;
+  AgentAssignmentPlan[] plans;
+  Environment           env;
+  int                   numGroups;
+  AtomicInteger         nextGroup = new AtomicInteger();
 
   public ShuffledEvaluationGroupGenerator(
           Map<String, Integer> sourceNameMap,
-          Environment env) {
+          Environment env,
+          int numGroups) {
 
-    sourceLists = new SourceList[sourceNameMap.size()];
+    plans = new AgentAssignmentPlan[sourceNameMap.size()];
     this.env = env;
+    this.numGroups = numGroups;
 
     int i = 0;
     for (String popGroupID : sourceNameMap.keySet()) {
@@ -128,82 +140,75 @@ public static class ShuffledEvaluationGroupGenerator
                                    "ShuffledEvaluationGroupFactory, cannot be" +
                                    " found");
       PopulationGroup pg = popGroupOp.get();
-      List<IndPopPair> inds = new ArrayList<>();
+      List<Individual> inds = new ArrayList<>();
+      List<Population> pops = new ArrayList<>();
       for (Population pop : pg.getPopulations()) {
         for (Individual ind : pop.individuals) {
-          IndPopPair ipp = new IndPopPair();
-          ipp.i = ind;
-          ipp.p = pop;
-          inds.add(ipp);
+          inds.add(ind);
+          pops.add(pop);
         }
       }
-      SourceList sl = new SourceList();
-      sl.inds = inds;
-      sl.qty = sourceNameMap.get(popGroupID);
-      sourceLists[i] = sl;
+      int qty = sourceNameMap.get(popGroupID);
+      plans[i] = new AgentAssignmentPlan(
+              inds.toArray(new Individual[inds.size()]),
+              pops.toArray(new Population[pops.size()]),
+              shuffledOrder(inds.size(), numGroups * qty),
+              qty);
       i++;
     }
-
-    for (SourceList sl : sourceLists) {
-      Collections.shuffle(sl.inds, ThreadLocalRandom.current());
-    }
   }
 
-
   @Override
   public EvaluationGroup get() {
+    int group = nextGroup.getAndIncrement();
+    if (group >= numGroups)
+      throw new NoSuchElementException(
+              "Only " + numGroups + " EvaluationGroups were planned");
+    return group(group);
+  }
+
+  /**
+   * @return A new EvaluationGroup for the specified planned group.
+   */
+  public EvaluationGroup group(int group) {
     EvaluationGroup eg = new EvaluationGroup();
     eg.generation = env.getGeneration();
-    eg.setModel(env.getAgentModelFactory().createAgentModel());
-    for (SourceList sl : sourceLists) {
-      for (int i = 0; i < sl.qty; i++) {
-        Agent agent = sl.get();
-        eg.addAgent(agent);
-      }
-    }
-
+    eg.setModelFactory(env.getAgentModelFactory());
+    eg.setAgentPlans(group, plans);
     return eg;
   }
 
 }
 
-private static class SourceList
-        implements Supplier<Agent> {
-
-  Lock lock = new ReentrantLock();
-  List<IndPopPair> inds;
-  Integer          qty;
-
-  int position = 0;
-
-  @Override
-  public Agent get() {
-    Agent toReturn;
-    try {
-      lock.lock();
-      checkAndShuffle();
-      IndPopPair ipp = inds.get(position);
-      toReturn = ipp.p.createAgent(ipp.i);
-      position++;
-    } finally {
-      lock.unlock();
-    }
-
-    return toReturn;
-  }
-
-  private void checkAndShuffle() {
-    if (position >= inds.size()) {
-      position = 0;
-      Collections.shuffle(inds,ThreadLocalRandom.current());
+/**
+ * @return <em>length</em> indices into <em>numIndividuals</em> individuals,
+ * made of consecutive random permutations, so that every individual is used
+ * once before any is used again.
+ */
+static int[] shuffledOrder(int numIndividuals, int length) {
+  int[] order = new int[length];
+  if (length == 0)
+    return order;
+  if (numIndividuals == 0)
+    throw new RuntimeException("Cannot draw agents from an empty population " +
+                               "group");
+
+  int[] permutation = new int[numIndividuals];
+  for (int i = 0; i < numIndividuals; i++)
+    permutation[i] = i;
+  ThreadLocalRandom random = ThreadLocalRandom.current();
+  for (int pos = 0; pos < length; pos += numIndividuals) {
+    // Fisher-Yates
+    for (int i = numIndividuals - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = tmp;
     }
+    System.arraycopy(permutation, 0, order, pos,
+                     Math.min(numIndividuals, length - pos));
   }
+  return order;
 }
 
-private static class IndPopPair {
-  Individual i;
-  Population p;
-}
-
-
 }
@@ -0,0 +1,163 @@
+package agency.eval;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.w3c.dom.Element;
+
+/**
+ * Runs each EvaluationGroup on its own virtual thread, with a semaphore
+ * limiting the number that run at once to <em>maxConcurrent</em>.  This is
+ * intended for AgentModels that block during step(), e.g., while waiting on a
+ * helper process or a file.  A blocked virtual thread does not occupy a
+ * platform thread, so other groups keep running.
+ * <p>
+ * Virtual threads require Java 21.  On older JVMs, a cached pool of platform
+ * threads is used instead; the semaphore still bounds how many groups run at
+ * once, across every call to evaluate().
+ * <p>
+ * Configured as, e.g., &lt;VirtualThreadEvaluator maxConcurrent="256"/&gt;.
+ */
+public class VirtualThreadEvaluator
+        implements Evaluator {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_MAX_CONCURRENT = 256;
+
+int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+
+transient ExecutorService executorService;
+
+/*
+ * Shared by every call to evaluate(), so that the limit holds even when
+ * several threads evaluate at once.
+ */
+transient Semaphore running;
+
+public VirtualThreadEvaluator() {
+}
+
+public VirtualThreadEvaluator(int maxConcurrent) {
+  this.maxConcurrent = maxConcurrent;
+}
+
+@Override
+public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  ExecutorService executor = getExecutorService();
+  Semaphore running = getRunning();
+  List<Future<?>> evaluationGroupTasks = new ArrayList<>();
+
+  List<EvaluationGroup> evaluatedGroups =
+          evaluationGroups.collect(Collectors.toList());
+
+  /*
+   * Permits are acquired before submission, rather than inside the task, so
+   * that no more than maxConcurrent threads exist at once.
+   */
+  for (EvaluationGroup eg : evaluatedGroups) {
+    running.acquireUninterruptibly();
+    try {
+      evaluationGroupTasks.add(executor.submit(() -> {
+        try {
+          eg.run();
+        } finally {
+          running.release();
+        }
+      }));
+    } catch (RuntimeException e) {
+      running.release();
+      throw e;
+    }
+  }
+
+  // Wait to make sure they're all finished executing
+  for (Future<?> ft : evaluationGroupTasks) {
+    try {
+      ft.get();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (ExecutionException e) {
+      e.printStackTrace();
+    }
+  }
+
+  return evaluatedGroups.stream();
+}
+
+private synchronized ExecutorService getExecutorService() {
+  if (executorService == null)
+    executorService = newVirtualThreadExecutor();
+  return executorService;
+}
+
+private synchronized Semaphore getRunning() {
+  if (running == null)
+    running = new Semaphore(maxConcurrent);
+  return running;
+}
+
+/**
+ * @return Executors.newVirtualThreadPerTaskExecutor() where the JVM supports
+ * it, otherwise a cached thread pool.
+ */
+static ExecutorService newVirtualThreadExecutor() {
+  try {
+    Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    return (ExecutorService) m.invoke(null);
+  } catch (ReflectiveOperationException e) {
+    return newPlatformThreadExecutor();
+  }
+}
+
+/**
+ * @return A cached pool of daemon platform threads, for JVMs without virtual
+ * threads
+ */
+static ExecutorService newPlatformThreadExecutor() {
+  return Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "VirtualThreadEvaluator-fallback");
+    t.setDaemon(true);
+    return t;
+  });
+}
+
+@Override
+public void close() {
+  if (executorService != null)
+    executorService.shutdown();
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String maxConcurrentString = e.getAttribute("maxConcurrent");
+  if (maxConcurrentString != null && !maxConcurrentString.isEmpty()) {
+    try {
+      maxConcurrent = Integer.parseInt(maxConcurrentString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "VirtualThreadEvaluator maxConcurrent must be an integer", nfe);
+    }
+    if (maxConcurrent <= 0)
+      throw new UnsupportedOperationException(
+              "VirtualThreadEvaluator maxConcurrent must be positive");
+  }
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  e.setAttribute("maxConcurrent", Integer.toString(maxConcurrent));
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // The executor is re-created on first use.
+}
+
+}
@@ -9,4 +9,15 @@ Individual generate();
 
 void setSourcePopulation(Population pop);
 
+/**
+ * @return A pipeline that generates individuals as this one does, but
+ * possibly faster, e.g., a FusedVectorPipeline doing the work of several
+ * nested pipelines.  It shares this pipeline's components, so it is only
+ * for generating; configuration is still read and written through this one.
+ * By default, this pipeline itself.
+ */
+default BreedingPipeline compile() {
+  return this;
+}
+
 }
@@ -11,7 +11,7 @@ import agency.Individual;
 import agency.Population;
 import agency.XMLConfigurable;
 
-public class ElitismSelector implements BreedingPipeline, XMLConfigurable {
+public class ElitismSelector implements ParentSelector, XMLConfigurable {
 
 Integer numElites;
 Float   proportionElites;
@@ -74,13 +74,18 @@ public void setProportionElites(Float proportionElites) {
 
 @Override
 public Individual generate() {
+  Individual toReturn = select();
+  Individual clone = toReturn.copy();
+  return clone;
+}
+
+@Override
+public Individual select() {
   // If we need more, just cycle
   if (currentPosition >= elites.size())
     currentPosition = 0;
 
-  Individual toReturn = elites.get(currentPosition);
-  Individual clone = toReturn.copy();
-  return clone;
+  return elites.get(currentPosition);
 }
 
 @Override
@@ -15,7 +15,7 @@ import agency.Population;
 import agency.SimpleFitness;
 import agency.XMLConfigurable;
 
-public class FitnessProportionalSelector implements BreedingPipeline, XMLConfigurable {
+public class FitnessProportionalSelector implements ParentSelector, XMLConfigurable {
 private static final long serialVersionUID = 1L;
 
 private static Logger                      log            = Logger.getLogger(FitnessProportionalSelector.class.getCanonicalName());
@@ -43,13 +43,18 @@ public void resumeFromCheckpoint() {
 
 @Override
 public Individual generate() {
-  Random r = ThreadLocalRandom.current();
-  double target = r.nextDouble() * totalFitness;
-  Individual parent = individuals.ceilingEntry(target).getValue();
+  Individual parent = select();
   Individual clone = parent.copy();
   return clone;
 }
 
+@Override
+public Individual select() {
+  Random r = ThreadLocalRandom.current();
+  double target = r.nextDouble() * totalFitness;
+  return individuals.ceilingEntry(target).getValue();
+}
+
 @Override
 public void setSourcePopulation(Population pop) {
   // Clear out old values
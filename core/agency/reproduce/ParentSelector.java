@@ -0,0 +1,18 @@
+package agency.reproduce;
+
+import agency.Individual;
+
+/**
+ * A BreedingPipeline that chooses individuals from its source population,
+ * and whose generate() returns a copy of the next one chosen by select().
+ * This lets a fused pipeline, e.g., agency.vector.FusedVectorPipeline,
+ * choose parents itself and make the only copy.
+ */
+public interface ParentSelector extends BreedingPipeline {
+
+/**
+ * @return The next individual chosen, not a copy; it must not be changed
+ */
+Individual select();
+
+}
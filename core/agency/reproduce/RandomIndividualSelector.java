@@ -9,20 +9,25 @@ import agency.Individual;
 import agency.Population;
 import agency.XMLConfigurable;
 
-public class RandomIndividualSelector implements BreedingPipeline, XMLConfigurable {
+public class RandomIndividualSelector implements ParentSelector, XMLConfigurable {
 private static final long serialVersionUID = 1L;
 
 Population pop;
 
 @Override
 public Individual generate() {
-  List<Individual> inds = pop.individuals;
-  int index = ThreadLocalRandom.current().nextInt(inds.size());
-  Individual parent = inds.get(index);
+  Individual parent = select();
   Individual clone = parent.copy();
   return clone;
 }
 
+@Override
+public Individual select() {
+  List<Individual> inds = pop.individuals;
+  int index = ThreadLocalRandom.current().nextInt(inds.size());
+  return inds.get(index);
+}
+
 @Override
 public void setSourcePopulation(Population pop) {
   this.pop = pop;
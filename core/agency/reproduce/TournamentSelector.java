@@ -2,12 +2,11 @@ package agency.reproduce;
 
 import static agency.util.Misc.WARN;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 import java.util.Random;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.w3c.dom.Element;
@@ -16,14 +15,22 @@ import agency.Individual;
 import agency.Population;
 import agency.XMLConfigurable;
 
-public class TournamentSelector implements BreedingPipeline, XMLConfigurable {
+public class TournamentSelector implements ParentSelector, XMLConfigurable {
 private static final long serialVersionUID = 1L;
 
+private static final FitnessComparator comparator = new FitnessComparator();
+
 int tournamentSize = 2; // default to 2 individuals, weakest selection pressure
 int topIndividuals = 1;
 
 private List<Individual>  individuals;
-private Queue<Individual> inPipeline = new LinkedBlockingQueue<>();
+private Queue<Individual> inPipeline = new ArrayDeque<>();
+
+/*
+ * Scratch space for the participants in a tournament, when more than one
+ * winner is kept
+ */
+private transient Individual[] participants;
 
 public TournamentSelector() {
 }
@@ -57,30 +64,57 @@ public void resumeFromCheckpoint() {
 
 @Override
 public Individual generate() {
+  Individual ancestor = select();
+  Individual clone = ancestor.copy();
+  return clone;
+}
 
-  if (!inPipeline.isEmpty()) {
-    Individual ancestor = inPipeline.remove();
-    Individual clone = ancestor.copy();
-    return clone;
-  }
+/**
+ * Runs a tournament, or returns a winner queued from the last one.  The
+ * winner is the fittest participant, and of equally fit participants the
+ * first drawn, as a stable sort would order them.
+ */
+@Override
+public Individual select() {
+  if (!inPipeline.isEmpty())
+    return inPipeline.remove();
 
-  List<Individual> participants = new ArrayList<>(tournamentSize);
+  if (tournamentSize > individuals.size()) {
+    tournamentSize = individuals.size();
+    WARN("Not enough individuals for full tournament selection");
+  }
+  if (tournamentSize <= 0)
+    throw new IndexOutOfBoundsException("No individuals to select from");
   Random r = ThreadLocalRandom.current();
-  while (participants.size() < tournamentSize) {
-    if (tournamentSize > individuals.size()) {
-      tournamentSize = individuals.size();
-      WARN("Not enough individuals for full tournament selection");
+
+  if (topIndividuals <= 1) {
+    Individual best = individuals.get(r.nextInt(tournamentSize));
+    for (int i = 1; i < tournamentSize; i++) {
+      Individual participant = individuals.get(r.nextInt(tournamentSize));
+      if (comparator.compare(participant, best) < 0)
+        best = participant;
     }
-    participants.add(individuals.get(r.nextInt(tournamentSize)));
+    return best;
   }
-  Collections.sort(participants, new FitnessComparator());
 
-  for (int j = 1; j < topIndividuals; j++) {
-    inPipeline.add(participants.get(j));
+  // Insertion sort, which is stable, of the fittest first
+  if (participants == null || participants.length < tournamentSize)
+    participants = new Individual[tournamentSize];
+  for (int i = 0; i < tournamentSize; i++) {
+    Individual participant = individuals.get(r.nextInt(tournamentSize));
+    int j = i;
+    while (j > 0 && comparator.compare(participant, participants[j - 1]) < 0) {
+      participants[j] = participants[j - 1];
+      j--;
+    }
+    participants[j] = participant;
   }
-  Individual ancestor = participants.get(0);
-  Individual clone = ancestor.copy();
-  return clone;
+  for (int j = 1; j < topIndividuals && j < tournamentSize; j++) {
+    inPipeline.add(participants[j]);
+  }
+  Individual winner = participants[0];
+  Arrays.fill(participants, null);
+  return winner;
 }
 
 @Override
@@ -16,6 +16,15 @@ public class GaussianRandomVectorRange extends VectorRange<Number> {
 VectorRange<Number> means;
 VectorRange<Number> deviations;
 
+/*
+ * Compiled by prepare(), if the nested ranges are fixed, indexed from
+ * startPosition
+ */
+double[] meanValues;
+double[] deviationValues;
+boolean  integerMeans;
+boolean  floatMeans;
+
 @Override
 public void readXMLConfig(Element e) {
   super.readXMLConfig(e);
@@ -40,8 +49,37 @@ public void readXMLConfig(Element e) {
 
 }
 
+@Override
+public void prepare(int vectorLength) {
+  int last = lastPosition(vectorLength);
+  meanValues = compile(means, startPosition, last);
+  deviationValues = compile(deviations, startPosition, last);
+  if (meanValues != null && meanValues.length > 0) {
+    Number mean = means.get(startPosition);
+    integerMeans = mean instanceof Integer;
+    floatMeans = mean instanceof Float;
+  }
+}
+
+@Override
+public boolean isFixed() {
+  return false;
+}
+
 @Override
 public Number get(int position) {
+  if (meanValues != null && deviationValues != null) {
+    int i = effectivePos(position);
+    double value = meanValues[i] +
+                   ThreadLocalRandom.current().nextGaussian() *
+                   deviationValues[i];
+    if (integerMeans)
+      return (int) value;
+    if (floatMeans)
+      return (float) value;
+    return value;
+  }
+
   Number mean = means.get(position);
   Number deviation = deviations.get(position);
 
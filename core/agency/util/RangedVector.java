@@ -9,7 +9,6 @@ import org.w3c.dom.NodeList;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * The purpose of this class is the specification of object vectors within
@@ -28,6 +27,12 @@ protected List<VectorRange<?>> vectorRangeList = new ArrayList<>();
  */
 protected RangeMap<Integer, VectorRange<?>> vectorRangeMap = new RangeMap<>();
 
+/**
+ * The VectorRange covering each position, so that lookups are array reads.
+ * Built from vectorRangeList once the config has been read.
+ */
+protected VectorRange<?>[] rangeIndex;
+
 int vectorLength;
 
 @Override
@@ -68,6 +73,13 @@ public void readXMLConfig(Element e) {
 
   // TODO: Ensure that the ranges cover the exact size of the RangedVector overall.
 
+  rangeIndex = new VectorRange<?>[vectorLength];
+  for (VectorRange<?> vr : vectorRangeList) {
+    int last = vr.lastPosition(vectorLength);
+    for (int pos = vr.getRange().getMinimum(); pos <= last; pos++)
+      rangeIndex[pos] = vr;
+    vr.prepare(vectorLength);
+  }
 
 }
 
@@ -89,11 +101,12 @@ public void resumeFromCheckpoint() {
 }
 
 public Object get(int position) {
-  Optional<VectorRange<?>> ovr = vectorRangeMap.get(position);
-  if (!ovr.isPresent())
+  VectorRange<?> vr = null;
+  if (position >= 0 && position < rangeIndex.length)
+    vr = rangeIndex[position];
+  if (vr == null)
     throw new RuntimeException("A RangedVector attempted to access a position not defined by a child range.");
 
-  VectorRange<?> vr = ovr.get();
   return vr.get(position);
 }
 
@@ -56,6 +56,47 @@ public void writeXMLConfig(Element e) {
 
 public abstract T get(int position);
 
+/**
+ * Called by the RangedVector containing this range once it is configured,
+ * with the vector's length, so that ranges whose values depend on nested
+ * ranges can compile those into arrays indexed by position.  By default,
+ * this does nothing.
+ */
+public void prepare(int vectorLength) {
+  // Nothing to compile
+}
+
+/**
+ * @return Whether get() always returns the same value for a position, so
+ * that its values can be compiled.  Ranges that draw random values must
+ * return false.
+ */
+public boolean isFixed() {
+  return true;
+}
+
+/**
+ * @return The last position of this range within a vector of the specified
+ * length, allowing for ranges that end at "last"
+ */
+public int lastPosition(int vectorLength) {
+  return Math.min(endPosition, vectorLength - 1);
+}
+
+/**
+ * @return The values of a range for positions start through end, inclusive,
+ * indexed from start, or null if there is no range or it is not fixed.
+ */
+public static double[] compile(VectorRange<? extends Number> values,
+                               int start, int end) {
+  if (values == null || !values.isFixed() || end < start)
+    return null;
+  double[] compiled = new double[end - start + 1];
+  for (int pos = start; pos <= end; pos++)
+    compiled[pos - start] = values.get(pos).doubleValue();
+  return compiled;
+}
+
 @Override
 public void resumeFromCheckpoint() {
   // Should be unnecessary; everything here can be natively serialized.
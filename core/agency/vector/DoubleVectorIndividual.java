@@ -0,0 +1,146 @@
+package agency.vector;
+
+import java.util.UUID;
+
+import agency.Individual;
+
+/**
+ * A VectorIndividual whose genome is stored in a double[], rather than an
+ * array of boxed Doubles.  This uses about a quarter of the memory, copying
+ * the genome when a clone is first changed is a single array copy, and
+ * mutation, limitation and crossover operate on the primitive values
+ * directly through getDouble(), setDouble() and exchangeGenes().
+ * <p>
+ * getGenome() and gene() still work, but box the values; getGenome() returns
+ * a copy, so changes to it do not affect the individual.  Created by a
+ * VectorIndividualFactory with genomeType="double".
+ */
+public class DoubleVectorIndividual extends VectorIndividual<Double> {
+private static final long serialVersionUID = 1;
+
+private double[] genome;
+
+public DoubleVectorIndividual(int genomeSize) {
+  genome = new double[genomeSize];
+}
+
+public DoubleVectorIndividual(double[] genome) {
+  this.genome = genome;
+}
+
+/**
+ * Shares the genome with the clone until either is changed, as in
+ * VectorIndividual.
+ */
+@Override
+public Individual copy() {
+  DoubleVectorIndividual clone = new DoubleVectorIndividual(genome);
+  clone.setUUID(UUID.randomUUID());
+  clone.shared = true;
+  shared = true;
+  return clone;
+}
+
+private double[] writableGenome() {
+  genomeChanged();
+  if (shared) {
+    genome = genome.clone();
+    shared = false;
+  }
+  return genome;
+}
+
+/**
+ * @return The genome itself, not a boxed copy, which may be changed.  It is
+ * copied first if it is shared with a copy of this individual.
+ */
+public double[] getDoubleGenome() {
+  return writableGenome();
+}
+
+/**
+ * @return The genome itself, even if it is shared, for reading only.
+ */
+double[] readGenome() {
+  return genome;
+}
+
+@Override
+public Double[] getGenome() {
+  Double[] boxed = new Double[genome.length];
+  for (int i = 0; i < genome.length; i++)
+    boxed[i] = genome[i];
+  return boxed;
+}
+
+@Override
+public int getGenomeLength() {
+  return genome.length;
+}
+
+@Override
+public void changeGene(int position, Double value) {
+  writableGenome()[position] = value;
+}
+
+@Override
+public Double gene(int position) {
+  return genome[position];
+}
+
+@Override
+public double getDouble(int position) {
+  return genome[position];
+}
+
+@Override
+public void setDouble(int position, double value) {
+  writableGenome()[position] = value;
+}
+
+@Override
+public void replaceGenome(Double[] newGenome) {
+  genomeChanged();
+  double[] replacement = new double[newGenome.length];
+  for (int i = 0; i < newGenome.length; i++)
+    replacement[i] = newGenome[i];
+  genome = replacement;
+  shared = false;
+}
+
+public void replaceGenome(double[] newGenome) {
+  genomeChanged();
+  genome = newGenome;
+  shared = false;
+}
+
+@Override
+public void exchangeGenes(VectorIndividual<Double> other, int start,
+                          int end) {
+  if (!(other instanceof DoubleVectorIndividual)) {
+    super.exchangeGenes(other, start, end);
+    return;
+  }
+  if (end <= start)
+    return;
+  // As in VectorIndividual, a shared original is an unchanged source
+  DoubleVectorIndividual o = (DoubleVectorIndividual) other;
+  double[] thisOriginal = genome;
+  double[] otherOriginal = o.genome;
+  boolean thisShared = shared;
+  boolean otherShared = o.shared;
+  double[] thisGenome = writableGenome();
+  double[] otherGenome = o.writableGenome();
+  int n = end - start;
+  if (thisShared) {
+    System.arraycopy(otherGenome, start, thisGenome, start, n);
+    System.arraycopy(thisOriginal, start, otherGenome, start, n);
+  } else if (otherShared) {
+    System.arraycopy(thisGenome, start, otherGenome, start, n);
+    System.arraycopy(otherOriginal, start, thisGenome, start, n);
+  } else {
+    GeneExchange.exchange(thisGenome, otherGenome, start, end);
+  }
+}
+
+}
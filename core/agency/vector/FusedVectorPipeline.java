@@ -0,0 +1,196 @@
+package agency.vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+import org.w3c.dom.Element;
+
+import agency.Individual;
+import agency.Population;
+import agency.reproduce.BreedingPipeline;
+import agency.reproduce.ParentSelector;
+
+/**
+ * Generates individuals as a chain of nested vector pipelines would, e.g.,
+ * <pre>
+ * VectorLimitationPipeline
+ *   VectorMutationPipeline
+ *     VectorCrossoverPipeline
+ *       TournamentSelector
+ * </pre>
+ * but as one operator.  Parents are chosen with ParentSelector.select() and
+ * copied once, and then the crossover, mutators and limiters of the chain are
+ * applied to the copy in place, in the order the chain would apply them,
+ * without going through each stage's generate().
+ * <p>
+ * Created by compile() on the outermost pipeline of a chain, and sharing its
+ * components; it is not configured itself.  A chain can be fused if it is
+ * made of VectorMutationPipelines and VectorLimitationPipelines and at most
+ * one VectorCrossoverPipeline (or a subclass that only overrides
+ * crossover()), over a ParentSelector.  Otherwise, compile() returns the
+ * chain unchanged.
+ */
+public class FusedVectorPipeline implements BreedingPipeline {
+private static final long serialVersionUID = 1L;
+
+final ParentSelector selector;
+
+/**
+ * Applied to each parent's copy, innermost stage first; before crossover,
+ * if there is one.
+ */
+final UnaryOperator<VectorIndividual<Object>>[] parentStages;
+
+/**
+ * Null if the chain does not cross over.
+ */
+final VectorCrossoverPipeline crossover;
+
+/**
+ * Applied to each individual after crossover, innermost stage first.
+ */
+final UnaryOperator<VectorIndividual<Object>>[] offspringStages;
+
+/**
+ * The second individual from the last crossover, returned (once through
+ * offspringStages) by the next call to generate().
+ */
+transient VectorIndividual<Object> otherInd;
+
+FusedVectorPipeline(ParentSelector selector,
+                    List<UnaryOperator<VectorIndividual<Object>>> parentStages,
+                    VectorCrossoverPipeline crossover,
+                    List<UnaryOperator<VectorIndividual<Object>>> offspringStages) {
+  this.selector = selector;
+  this.parentStages = toArray(parentStages);
+  this.crossover = crossover;
+  this.offspringStages = toArray(offspringStages);
+}
+
+@SuppressWarnings("unchecked")
+private static UnaryOperator<VectorIndividual<Object>>[] toArray(
+        List<UnaryOperator<VectorIndividual<Object>>> stages) {
+  return stages.toArray(new UnaryOperator[stages.size()]);
+}
+
+/**
+ * @return A FusedVectorPipeline doing the work of the chain of pipelines
+ * starting at the one specified, or that pipeline itself if the chain cannot
+ * be fused
+ */
+public static BreedingPipeline compile(BreedingPipeline pipeline) {
+  // Outermost stage first, until reversed below
+  List<UnaryOperator<VectorIndividual<Object>>> stages = new ArrayList<>();
+  List<UnaryOperator<VectorIndividual<Object>>> afterCrossover =
+          new ArrayList<>();
+  VectorCrossoverPipeline crossover = null;
+
+  BreedingPipeline stage = pipeline;
+  while (!(stage instanceof ParentSelector)) {
+    if (stage.getClass() == VectorMutationPipeline.class) {
+      VectorMutationPipeline vmp = (VectorMutationPipeline) stage;
+      stages.add(vmp.mutator::mutate);
+      stage = vmp.source;
+    } else if (stage.getClass() == VectorLimitationPipeline.class) {
+      VectorLimitationPipeline vlp = (VectorLimitationPipeline) stage;
+      stages.add(vlp.limiter::limit);
+      stage = vlp.source;
+    } else if (stage instanceof VectorCrossoverPipeline
+               && crossover == null
+               && generateDeclaredBy(stage, VectorCrossoverPipeline.class)) {
+      crossover = (VectorCrossoverPipeline) stage;
+      afterCrossover = stages;
+      stages = new ArrayList<>();
+      stage = crossover.source;
+    } else {
+      return pipeline;
+    }
+  }
+
+  if (stage == pipeline) // Nothing to fuse
+    return pipeline;
+
+  Collections.reverse(stages);
+  Collections.reverse(afterCrossover);
+  return new FusedVectorPipeline((ParentSelector) stage, stages, crossover,
+                                 afterCrossover);
+}
+
+private static boolean generateDeclaredBy(BreedingPipeline pipeline,
+                                          Class<?> c) {
+  try {
+    return pipeline.getClass().getMethod("generate").getDeclaringClass() == c;
+  } catch (NoSuchMethodException e) {
+    return false;
+  }
+}
+
+@Override
+public Individual generate() {
+  VectorIndividual<Object> ind;
+  if (otherInd != null) {
+    ind = otherInd;
+    otherInd = null;
+  } else {
+    Random r = ThreadLocalRandom.current();
+    if (crossover != null && r.nextDouble() < crossover.crossoverProb) {
+      ind = parent();
+      VectorIndividual<Object> other = parent();
+      crossover.crossover(ind, other, r);
+      otherInd = other;
+    } else {
+      ind = parent();
+    }
+  }
+  return apply(offspringStages, ind);
+}
+
+/**
+ * @return A copy of the next parent chosen, through parentStages
+ */
+@SuppressWarnings("unchecked")
+private VectorIndividual<Object> parent() {
+  VectorIndividual<Object> child;
+  try {
+    child = (VectorIndividual<Object>) selector.select().copy();
+  } catch (ClassCastException cce) {
+    throw new RuntimeException("FusedVectorPipeline requires only VectorIndividuals");
+  }
+  return apply(parentStages, child);
+}
+
+private static VectorIndividual<Object> apply(
+        UnaryOperator<VectorIndividual<Object>>[] stages,
+        VectorIndividual<Object> ind) {
+  for (UnaryOperator<VectorIndividual<Object>> stage : stages)
+    ind = stage.apply(ind);
+  return ind;
+}
+
+@Override
+public void setSourcePopulation(Population pop) {
+  selector.setSourcePopulation(pop);
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  throw new UnsupportedOperationException(
+          "FusedVectorPipeline is created by compile(); configure the pipelines it fuses instead");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  throw new UnsupportedOperationException(
+          "FusedVectorPipeline is created by compile(); write the pipelines it fuses instead");
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // Nothing to do; recompiled rather than checkpointed.
+}
+
+}
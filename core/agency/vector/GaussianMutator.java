@@ -12,16 +12,42 @@ import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Created by liara on 11/7/16.
+ * <p>
+ * With sparse="true", instead of rolling for every position in its range,
+ * the mutator draws geometrically distributed distances between the positions
+ * that will mutate and jumps straight to them, which makes it far cheaper
+ * when mutation probabilities are low and genomes long.  Each position still
+ * mutates independently, with its own probability; where probabilities vary
+ * across the range, the distances are drawn with the highest of them and each
+ * position reached is kept with its own probability relative to that.  The
+ * probabilities must be fixed, e.g., RepeatingDouble or DoubleList.
  */
 public class GaussianMutator extends VectorRange<Number> implements VectorValueMutator {
 
 VectorRange<Number> mutationProbabilities;
 VectorRange<Number> deviations;
 
+boolean sparse;
+
+/*
+ * Compiled by prepare(), if the nested ranges are fixed, indexed from
+ * startPosition
+ */
+double[] probabilities;
+double[] deviationValues;
+
+/*
+ * The highest mutation probability in the range, found on first use in
+ * sparse mode
+ */
+transient volatile Double maxProbability;
+
 @Override
 public void readXMLConfig(Element e) {
   super.readXMLConfig(e);
 
+  sparse = Boolean.parseBoolean(e.getAttribute("sparse"));
+
   Optional<Element> oe = Config.getChildElementWithTag(e, "MutationProbability");
   if (oe.isPresent()) {
     Element mutationProbabilityElement = oe.get();
@@ -44,12 +70,14 @@ public void readXMLConfig(Element e) {
 @Override
 public void writeXMLConfig(Element e) {
   super.writeXMLConfig(e);
+  if (sparse)
+    e.setAttribute("sparse", "true");
 
   Document d = e.getOwnerDocument();
   Element mutE = Config.createNamedElement(d, mutationProbabilities, "MutationProbability");
   Element devE = Config.createNamedElement(d, deviations, "Deviations");
-  d.appendChild(mutE);
-  d.appendChild(devE);
+  e.appendChild(mutE);
+  e.appendChild(devE);
 
 }
 
@@ -58,43 +86,173 @@ public Number get(int position) {
   return null;
 }
 
+@Override
+public void prepare(int vectorLength) {
+  int last = lastPosition(vectorLength);
+  probabilities = compile(mutationProbabilities, startPosition, last);
+  deviationValues = compile(deviations, startPosition, last);
+  maxProbability = null;
+}
+
+private double probability(int pos) {
+  if (probabilities != null)
+    return probabilities[effectivePos(pos)];
+  return mutationProbabilities.get(pos).doubleValue();
+}
+
+private double deviation(int pos) {
+  if (deviationValues != null)
+    return deviationValues[effectivePos(pos)];
+  return deviations.get(pos).doubleValue();
+}
+
 @Override
 public void mutate(Object[] genome, int pos) {
+  double change = change(pos);
+  if (change == 0d)
+    return;
+
+  Number genomeValue;
+  try {
+    genomeValue = (Number) genome[pos];
+  } catch (ClassCastException cce) {
+    throw new RuntimeException("GaussianMutator attempting to mutate a non-Numeric gene");
+  }
+  // Put back the type of value we originally found.
+  genome[pos] = VectorIndividual.sameType(genomeValue,
+                                          genomeValue.doubleValue() + change);
+}
+
+@Override
+public void mutate(VectorIndividual<?> individual, int pos) {
+  double change = change(pos);
+  if (change != 0d)
+    individual.setDouble(pos, individual.getDouble(pos) + change);
+}
+
+@Override
+public void mutate(VectorIndividual<?> individual, int start, int end) {
+  if (!sparse) {
+    mutateDense(individual, start, end);
+    return;
+  }
+  double max = maxProbability(start, end);
+  if (max <= 0d)
+    return;
+  if (max >= 1d) {
+    // Every position is reached anyway
+    mutateDense(individual, start, end);
+    return;
+  }
 
-  Number mutProb = mutationProbabilities.get(pos);
   Random rand = ThreadLocalRandom.current();
-  double roll = rand.nextDouble();
-  if (roll <= mutProb.doubleValue()) {
-    // Then do the mutation
-    double stdDev = rand.nextGaussian();
-    Number scale = deviations.get(pos);
-    double totalChange = stdDev * scale.doubleValue();
-
-    Number genomeValue = (Number) genome[pos];
-    // TODO: Catch cast exception & throw better error message?
-    Double newValue = genomeValue.doubleValue() + totalChange;
-
-    // Put back the type of value we originally found.
-    if (genomeValue instanceof Byte) {
-      genome[pos] = newValue.byteValue();
-    } else if (genomeValue instanceof Short) {
-      genome[pos] = newValue.shortValue();
-    } else if (genomeValue instanceof Integer) {
-      genome[pos] = newValue.intValue();
-    } else if (genomeValue instanceof Long) {
-      genome[pos] = newValue.longValue();
-    } else if (genomeValue instanceof Float) {
-      genome[pos] = newValue.floatValue();
-    } else if (genomeValue instanceof Double) {
-      genome[pos] = newValue;
-    } else {
-      throw new RuntimeException("GaussianMutator attempting to mutate unknown Numeric type?");
+  double logMiss = Math.log1p(-max);
+  long pos = start + skip(rand, logMiss);
+  while (pos <= end) {
+    int p = (int) pos;
+    double mutProb = probability(p);
+    if (mutProb >= max || rand.nextDouble() * max < mutProb)
+      individual.setDouble(p, individual.getDouble(p) + deviation(rand, p));
+    pos += 1 + skip(rand, logMiss);
+  }
+}
+
+/**
+ * Rolls for every position from start to end.  Individuals backed by
+ * primitive arrays are mutated in place, by a loop for their type, if the
+ * nested ranges are compiled; others position by position, through
+ * getDouble() and setDouble().  Either way, the genome is only copied, if it
+ * is shared, when a position first changes.
+ */
+private void mutateDense(VectorIndividual<?> individual, int start, int end) {
+  if (probabilities != null && deviationValues != null) {
+    if (individual instanceof DoubleVectorIndividual) {
+      mutateDoubles((DoubleVectorIndividual) individual, start, end);
+      return;
+    }
+    if (individual instanceof IntVectorIndividual) {
+      mutateInts((IntVectorIndividual) individual, start, end);
+      return;
     }
+  }
+  for (int pos = start; pos <= end; pos++)
+    mutate(individual, pos);
+}
 
+private void mutateDoubles(DoubleVectorIndividual individual, int start,
+                           int end) {
+  Random rand = ThreadLocalRandom.current();
+  double[] genome = individual.readGenome();
+  boolean writable = false;
+  for (int pos = start; pos <= end; pos++) {
+    int i = pos - startPosition;
+    if (rand.nextDouble() > probabilities[i])
+      continue;
+    double change = rand.nextGaussian() * deviationValues[i];
+    if (change == 0d)
+      continue;
+    if (!writable) {
+      genome = individual.getDoubleGenome();
+      writable = true;
+    }
+    genome[pos] += change;
+  }
+}
 
+private void mutateInts(IntVectorIndividual individual, int start, int end) {
+  Random rand = ThreadLocalRandom.current();
+  int[] genome = individual.readGenome();
+  boolean writable = false;
+  for (int pos = start; pos <= end; pos++) {
+    int i = pos - startPosition;
+    if (rand.nextDouble() > probabilities[i])
+      continue;
+    double change = rand.nextGaussian() * deviationValues[i];
+    if (change == 0d)
+      continue;
+    if (!writable) {
+      genome = individual.getIntGenome();
+      writable = true;
+    }
+    // Truncated, as by IntVectorIndividual.setDouble()
+    genome[pos] = (int) (genome[pos] + change);
   }
+}
 
+/**
+ * @return The number of positions passed over before the next that is
+ * reached, geometrically distributed, where log(1 - p) is logMiss.
+ */
+private static long skip(Random rand, double logMiss) {
+  // 1 - nextDouble() is in (0, 1], so its log is finite
+  double skip = Math.floor(Math.log(1d - rand.nextDouble()) / logMiss);
+  return skip < Integer.MAX_VALUE ? (long) skip : Integer.MAX_VALUE;
+}
+
+private double maxProbability(int start, int end) {
+  Double max = maxProbability;
+  if (max == null) {
+    max = 0d;
+    for (int pos = start; pos <= end; pos++)
+      max = Math.max(max, probability(pos));
+    maxProbability = max;
+  }
+  return max;
+}
+
+/**
+ * @return The amount to add to the gene at the position, or 0 if it is not
+ * to be mutated
+ */
+private double change(int pos) {
+  Random rand = ThreadLocalRandom.current();
+  double roll = rand.nextDouble();
+  if (roll > probability(pos))
+    return 0d;
+  return deviation(rand, pos);
+}
 
-  return;
+private double deviation(Random rand, int pos) {
+  return rand.nextGaussian() * deviation(pos);
 }
 }
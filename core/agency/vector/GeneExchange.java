@@ -0,0 +1,99 @@
+package agency.vector;
+
+import java.util.Arrays;
+
+/**
+ * Exchanges runs of genes between two genome arrays, both of which may be
+ * written to.  Short runs are swapped gene by gene; longer runs are moved with
+ * System.arraycopy through a scratch buffer kept for each thread, which is
+ * faster once a run is a few dozen genes long.
+ */
+final class GeneExchange {
+
+/**
+ * The shortest run moved with System.arraycopy
+ */
+static final int COPY_THRESHOLD = 32;
+
+private static final ThreadLocal<double[]> doubleBuffers =
+        ThreadLocal.withInitial(() -> new double[0]);
+private static final ThreadLocal<int[]>    intBuffers    =
+        ThreadLocal.withInitial(() -> new int[0]);
+private static final ThreadLocal<Object[]> objectBuffers =
+        ThreadLocal.withInitial(() -> new Object[0]);
+
+private GeneExchange() {
+}
+
+/**
+ * Exchanges positions [start,end) of two arrays.
+ */
+static void exchange(double[] a, double[] b, int start, int end) {
+  int n = end - start;
+  if (n < COPY_THRESHOLD) {
+    for (int i = start; i < end; i++) {
+      double tmp = a[i];
+      a[i] = b[i];
+      b[i] = tmp;
+    }
+    return;
+  }
+  double[] buffer = doubleBuffers.get();
+  if (buffer.length < n) {
+    buffer = new double[n];
+    doubleBuffers.set(buffer);
+  }
+  System.arraycopy(a, start, buffer, 0, n);
+  System.arraycopy(b, start, a, start, n);
+  System.arraycopy(buffer, 0, b, start, n);
+}
+
+/**
+ * Exchanges positions [start,end) of two arrays.
+ */
+static void exchange(int[] a, int[] b, int start, int end) {
+  int n = end - start;
+  if (n < COPY_THRESHOLD) {
+    for (int i = start; i < end; i++) {
+      int tmp = a[i];
+      a[i] = b[i];
+      b[i] = tmp;
+    }
+    return;
+  }
+  int[] buffer = intBuffers.get();
+  if (buffer.length < n) {
+    buffer = new int[n];
+    intBuffers.set(buffer);
+  }
+  System.arraycopy(a, start, buffer, 0, n);
+  System.arraycopy(b, start, a, start, n);
+  System.arraycopy(buffer, 0, b, start, n);
+}
+
+/**
+ * Exchanges positions [start,end) of two arrays.  The scratch buffer is
+ * cleared afterwards, so that it does not keep genes reachable.
+ */
+static void exchange(Object[] a, Object[] b, int start, int end) {
+  int n = end - start;
+  if (n < COPY_THRESHOLD) {
+    for (int i = start; i < end; i++) {
+      Object tmp = a[i];
+      a[i] = b[i];
+      b[i] = tmp;
+    }
+    return;
+  }
+  Object[] buffer = objectBuffers.get();
+  if (buffer.length < n) {
+    buffer = new Object[n];
+    objectBuffers.set(buffer);
+  }
+  System.arraycopy(a, start, buffer, 0, n);
+  System.arraycopy(b, start, a, start, n);
+  System.arraycopy(buffer, 0, b, start, n);
+  Arrays.fill(buffer, 0, n, null);
+}
+
+}
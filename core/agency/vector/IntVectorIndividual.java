@@ -0,0 +1,141 @@
+package agency.vector;
+
+import java.util.UUID;
+
+import agency.Individual;
+
+/**
+ * A VectorIndividual whose genome is stored in an int[], rather than an array
+ * of boxed Integers.  See DoubleVectorIndividual.  As with a genome of
+ * Integers, setDouble() truncates toward zero.  Created by a
+ * VectorIndividualFactory with genomeType="int".
+ */
+public class IntVectorIndividual extends VectorIndividual<Integer> {
+private static final long serialVersionUID = 1;
+
+private int[] genome;
+
+public IntVectorIndividual(int genomeSize) {
+  genome = new int[genomeSize];
+}
+
+public IntVectorIndividual(int[] genome) {
+  this.genome = genome;
+}
+
+/**
+ * Shares the genome with the clone until either is changed, as in
+ * VectorIndividual.
+ */
+@Override
+public Individual copy() {
+  IntVectorIndividual clone = new IntVectorIndividual(genome);
+  clone.setUUID(UUID.randomUUID());
+  clone.shared = true;
+  shared = true;
+  return clone;
+}
+
+private int[] writableGenome() {
+  genomeChanged();
+  if (shared) {
+    genome = genome.clone();
+    shared = false;
+  }
+  return genome;
+}
+
+/**
+ * @return The genome itself, not a boxed copy, which may be changed.  It is
+ * copied first if it is shared with a copy of this individual.
+ */
+public int[] getIntGenome() {
+  return writableGenome();
+}
+
+/**
+ * @return The genome itself, even if it is shared, for reading only.
+ */
+int[] readGenome() {
+  return genome;
+}
+
+@Override
+public Integer[] getGenome() {
+  Integer[] boxed = new Integer[genome.length];
+  for (int i = 0; i < genome.length; i++)
+    boxed[i] = genome[i];
+  return boxed;
+}
+
+@Override
+public int getGenomeLength() {
+  return genome.length;
+}
+
+@Override
+public void changeGene(int position, Integer value) {
+  writableGenome()[position] = value;
+}
+
+@Override
+public Integer gene(int position) {
+  return genome[position];
+}
+
+@Override
+public double getDouble(int position) {
+  return genome[position];
+}
+
+@Override
+public void setDouble(int position, double value) {
+  writableGenome()[position] = (int) value;
+}
+
+@Override
+public void replaceGenome(Integer[] newGenome) {
+  genomeChanged();
+  int[] replacement = new int[newGenome.length];
+  for (int i = 0; i < newGenome.length; i++)
+    replacement[i] = newGenome[i];
+  genome = replacement;
+  shared = false;
+}
+
+public void replaceGenome(int[] newGenome) {
+  genomeChanged();
+  genome = newGenome;
+  shared = false;
+}
+
+@Override
+public void exchangeGenes(VectorIndividual<Integer> other, int start,
+                          int end) {
+  if (!(other instanceof IntVectorIndividual)) {
+    super.exchangeGenes(other, start, end);
+    return;
+  }
+  if (end <= start)
+    return;
+  // As in VectorIndividual, a shared original is an unchanged source
+  IntVectorIndividual o = (IntVectorIndividual) other;
+  int[] thisOriginal = genome;
+  int[] otherOriginal = o.genome;
+  boolean thisShared = shared;
+  boolean otherShared = o.shared;
+  int[] thisGenome = writableGenome();
+  int[] otherGenome = o.writableGenome();
+  int n = end - start;
+  if (thisShared) {
+    System.arraycopy(otherGenome, start, thisGenome, start, n);
+    System.arraycopy(thisOriginal, start, otherGenome, start, n);
+  } else if (otherShared) {
+    System.arraycopy(thisGenome, start, otherGenome, start, n);
+    System.arraycopy(otherOriginal, start, thisGenome, start, n);
+  } else {
+    GeneExchange.exchange(thisGenome, otherGenome, start, end);
+  }
+}
+
+}
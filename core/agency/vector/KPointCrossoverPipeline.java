@@ -0,0 +1,89 @@
+package agency.vector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.w3c.dom.Element;
+
+/**
+ * Crosses over at k distinct random points, exchanging every other segment
+ * between them, starting with the segment after the first point.  With
+ * points="1" this is one-point crossover.  Configured with, e.g.,
+ * <pre>
+ * &lt;KPointCrossoverPipeline crossoverProb="0.5" points="4"&gt;
+ *   ... source pipeline ...
+ * &lt;/KPointCrossoverPipeline&gt;
+ * </pre>
+ * Each segment is moved in one call to VectorIndividual.exchangeGenes().
+ * Points are chosen in time proportional to their number squared, so for
+ * very many points a UniformCrossoverPipeline or SegmentCrossoverPipeline is
+ * better.
+ */
+public class KPointCrossoverPipeline extends VectorCrossoverPipeline {
+private static final long serialVersionUID = 1L;
+
+int points = 2;
+
+/*
+ * Scratch space for the crossover points
+ */
+transient int[] cuts;
+
+@Override
+public void readXMLConfig(Element e) {
+  super.readXMLConfig(e);
+  String pointsString = e.getAttribute("points");
+  if (pointsString != null && !pointsString.isEmpty()) {
+    try {
+      points = Integer.parseInt(pointsString);
+    } catch (NumberFormatException nfe) {
+      throw new RuntimeException("KPointCrossoverPipeline had non-integer " +
+                                 "points?");
+    }
+  }
+  if (points < 1)
+    throw new RuntimeException("KPointCrossoverPipeline must have at least " +
+                               "one point");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  super.writeXMLConfig(e);
+  e.setAttribute("points", Integer.toString(points));
+}
+
+@Override
+protected void crossover(VectorIndividual<Object> clone1,
+                         VectorIndividual<Object> clone2, Random r) {
+  int genomeSize = clone1.getGenomeLength();
+  // Points fall between positions, so there are genomeSize - 1 of them
+  int k = Math.min(points, genomeSize - 1);
+  if (k <= 0)
+    return;
+  if (cuts == null || cuts.length < k)
+    cuts = new int[k];
+  choosePoints(r, genomeSize - 1, k, cuts);
+  Arrays.sort(cuts, 0, k);
+
+  for (int i = 0; i < k; i += 2) {
+    int end = i + 1 < k ? cuts[i + 1] : genomeSize;
+    clone1.exchangeGenes(clone2, cuts[i], end);
+  }
+}
+
+/**
+ * Chooses k distinct values from 1 through max, into the first k elements of
+ * chosen, by Floyd's algorithm.
+ */
+static void choosePoints(Random r, int max, int k, int[] chosen) {
+  int n = 0;
+  for (int j = max - k + 1; j <= max; j++) {
+    int t = 1 + r.nextInt(j);
+    boolean found = false;
+    for (int i = 0; i < n && !found; i++)
+      found = chosen[i] == t;
+    chosen[n++] = found ? j : t;
+  }
+}
+
+}
@@ -16,6 +16,13 @@ public class RangeLimiter extends VectorRange<Number> implements VectorValueLimi
 VectorRange<Number> maximums;
 VectorRange<Number> minimums;
 
+/*
+ * Compiled by prepare(), if the nested ranges are fixed, indexed from
+ * startPosition
+ */
+double[] maximumValues;
+double[] minimumValues;
+
 @Override
 public void readXMLConfig(Element e) {
   super.readXMLConfig(e);
@@ -64,18 +71,115 @@ public void writeXMLConfig(Element e) {
 
 @Override
 public void limit(Object[] genome, int pos) {
+  Number genomeValue = (Number) genome[pos];
+  Double newValue = limited(pos, genomeValue.doubleValue());
+
+  // It changed
+  if (newValue != null)
+    genome[pos] = VectorIndividual.sameType(genomeValue, newValue);
+}
+
+@Override
+public void limit(VectorIndividual<?> individual, int pos) {
+  Double newValue = limited(pos, individual.getDouble(pos));
+  if (newValue != null)
+    individual.setDouble(pos, newValue);
+}
+
+/**
+ * Individuals backed by primitive arrays are limited in place, by a loop for
+ * their type, if the nested ranges are compiled; others position by
+ * position, through getDouble() and setDouble().  Either way, the genome is only copied, if it is shared, when a
+ * position first changes.
+ */
+@Override
+public void limit(VectorIndividual<?> individual, int start, int end) {
+  boolean compiled = (minimums == null || minimumValues != null) &&
+                     (maximums == null || maximumValues != null);
+  if (compiled) {
+    if (individual instanceof DoubleVectorIndividual) {
+      limitDoubles((DoubleVectorIndividual) individual, start, end);
+      return;
+    }
+    if (individual instanceof IntVectorIndividual) {
+      limitInts((IntVectorIndividual) individual, start, end);
+      return;
+    }
+  }
+  for (int pos = start; pos <= end; pos++)
+    limit(individual, pos);
+}
 
-  double min = Double.MIN_VALUE;
-  double max = Double.MAX_VALUE;
+private void limitDoubles(DoubleVectorIndividual individual, int start,
+                          int end) {
+  double[] genome = individual.readGenome();
+  boolean writable = false;
+  for (int pos = start; pos <= end; pos++) {
+    double value = genome[pos];
+    double newValue = limitedValue(pos - startPosition, value);
+    if (newValue == value)
+      continue;
+    if (!writable) {
+      genome = individual.getDoubleGenome();
+      writable = true;
+    }
+    genome[pos] = newValue;
+  }
+}
 
-  if (minimums != null)
+private void limitInts(IntVectorIndividual individual, int start, int end) {
+  int[] genome = individual.readGenome();
+  boolean writable = false;
+  for (int pos = start; pos <= end; pos++) {
+    int value = genome[pos];
+    double newValue = limitedValue(pos - startPosition, value);
+    if (newValue == value)
+      continue;
+    if (!writable) {
+      genome = individual.getIntGenome();
+      writable = true;
+    }
+    // Truncated, as by IntVectorIndividual.setDouble()
+    genome[pos] = (int) newValue;
+  }
+}
+
+/**
+ * As limited(), from the compiled limits, with i relative to startPosition.
+ *
+ * @return The value, or the minimum or maximum it is beyond
+ */
+private double limitedValue(int i, double value) {
+  double min = minimumValues == null ? Double.NEGATIVE_INFINITY
+                                     : minimumValues[i];
+  double max = maximumValues == null ? Double.POSITIVE_INFINITY
+                                     : maximumValues[i];
+  double newValue = value;
+  if (value < min)
+    newValue = min;
+  if (value > max)
+    newValue = max;
+  return newValue;
+}
+
+/**
+ * @return The minimum or maximum the value is beyond, or null if it is
+ * within them
+ */
+private Double limited(int pos, double currentValue) {
+  // Unbounded where there is no minimum or maximum
+  double min = Double.NEGATIVE_INFINITY;
+  double max = Double.POSITIVE_INFINITY;
+
+  if (minimumValues != null)
+    min = minimumValues[effectivePos(pos)];
+  else if (minimums != null)
     min = minimums.get(pos).doubleValue();
-  if (maximums != null)
+  if (maximumValues != null)
+    max = maximumValues[effectivePos(pos)];
+  else if (maximums != null)
     max = maximums.get(pos).doubleValue();
 
-  Number genomeValue = (Number) genome[pos];
-
-  double currentValue = (double) genome[pos];
   Double newValue = null;
 
   if (currentValue < min)
@@ -83,27 +187,7 @@ public void limit(Object[] genome, int pos) {
   if (currentValue > max)
     newValue = max;
 
-  // It changed
-  if (newValue != null) {
-    if (genomeValue instanceof Byte) {
-      genome[pos] = newValue.byteValue();
-    } else if (genomeValue instanceof Short) {
-      genome[pos] = newValue.shortValue();
-    } else if (genomeValue instanceof Integer) {
-      genome[pos] = newValue.intValue();
-    } else if (genomeValue instanceof Long) {
-      genome[pos] = newValue.longValue();
-    } else if (genomeValue instanceof Float) {
-      genome[pos] = newValue.floatValue();
-    } else if (genomeValue instanceof Double) {
-      genome[pos] = newValue;
-    } else {
-      throw new RuntimeException("RangeLimiter attempting to limit an unknown Numeric type?");
-    }
-
-  }
-
-
+  return newValue;
 }
 
 @Override
@@ -111,4 +195,11 @@ public Number get(int position) {
   return null;
 }
 
+@Override
+public void prepare(int vectorLength) {
+  int last = lastPosition(vectorLength);
+  maximumValues = compile(maximums, startPosition, last);
+  minimumValues = compile(minimums, startPosition, last);
+}
+
 }
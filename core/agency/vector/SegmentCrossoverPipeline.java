@@ -0,0 +1,44 @@
+package agency.vector;
+
+import org.w3c.dom.Element;
+
+/**
+ * Divides the genome into blocks of segmentLength genes, the last possibly
+ * shorter, and exchanges each block between the two individuals
+ * independently, with probability swapProb (0.5 by default).  This keeps
+ * neighboring genes together, e.g., where blocks of a genome encode the
+ * parameters of one strategy.  Configured with, e.g.,
+ * <pre>
+ * &lt;SegmentCrossoverPipeline crossoverProb="0.5" segmentLength="10"&gt;
+ *   ... source pipeline ...
+ * &lt;/SegmentCrossoverPipeline&gt;
+ * </pre>
+ */
+public class SegmentCrossoverPipeline extends UniformCrossoverPipeline {
+private static final long serialVersionUID = 1L;
+
+@Override
+public void readXMLConfig(Element e) {
+  super.readXMLConfig(e);
+  String lengthString = e.getAttribute("segmentLength");
+  if (lengthString == null || lengthString.isEmpty())
+    throw new RuntimeException("A SegmentCrossoverPipeline must have a " +
+                               "segmentLength");
+  try {
+    segmentLength = Integer.parseInt(lengthString);
+  } catch (NumberFormatException nfe) {
+    throw new RuntimeException("SegmentCrossoverPipeline had non-integer " +
+                               "segmentLength?");
+  }
+  if (segmentLength <= 0)
+    throw new RuntimeException("SegmentCrossoverPipeline segmentLength must " +
+                               "be positive");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  super.writeXMLConfig(e);
+  e.setAttribute("segmentLength", Integer.toString(segmentLength));
+}
+
+}
@@ -0,0 +1,71 @@
+package agency.vector;
+
+import java.util.Random;
+
+import org.w3c.dom.Element;
+
+/**
+ * Exchanges each gene between the two individuals independently, with
+ * probability swapProb (0.5 by default).  Configured with, e.g.,
+ * <pre>
+ * &lt;UniformCrossoverPipeline crossoverProb="0.5" swapProb="0.3"&gt;
+ *   ... source pipeline ...
+ * &lt;/UniformCrossoverPipeline&gt;
+ * </pre>
+ * Consecutive exchanged genes are moved together, in one call to
+ * VectorIndividual.exchangeGenes().
+ */
+public class UniformCrossoverPipeline extends VectorCrossoverPipeline {
+private static final long serialVersionUID = 1L;
+
+double swapProb = 0.5;
+
+/**
+ * The number of consecutive genes exchanged or kept together; one, for
+ * uniform crossover.
+ */
+int segmentLength = 1;
+
+@Override
+public void readXMLConfig(Element e) {
+  super.readXMLConfig(e);
+  String swapProbString = e.getAttribute("swapProb");
+  if (swapProbString != null && !swapProbString.isEmpty()) {
+    try {
+      swapProb = Double.parseDouble(swapProbString);
+    } catch (NumberFormatException nfe) {
+      throw new RuntimeException(getClass().getSimpleName() +
+                                 " had non-numeric swapProb?");
+    }
+  }
+  if (swapProb < 0d || swapProb > 1d)
+    throw new RuntimeException(getClass().getSimpleName() +
+                               " swapProb must be between 0 and 1");
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  super.writeXMLConfig(e);
+  e.setAttribute("swapProb", Double.toString(swapProb));
+}
+
+@Override
+protected void crossover(VectorIndividual<Object> clone1,
+                         VectorIndividual<Object> clone2, Random r) {
+  int genomeSize = clone1.getGenomeLength();
+  // The start of the current run of exchanged segments, if any
+  int runStart = -1;
+  for (int pos = 0; pos < genomeSize; pos += segmentLength) {
+    boolean swap = r.nextDouble() < swapProb;
+    if (swap && runStart < 0) {
+      runStart = pos;
+    } else if (!swap && runStart >= 0) {
+      clone1.exchangeGenes(clone2, runStart, pos);
+      runStart = -1;
+    }
+  }
+  if (runStart >= 0)
+    clone1.exchangeGenes(clone2, runStart, genomeSize);
+}
+
+}
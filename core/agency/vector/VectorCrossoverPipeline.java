@@ -14,6 +14,14 @@ import agency.Population;
 import agency.XMLConfigurable;
 import agency.reproduce.BreedingPipeline;
 
+/**
+ * Crosses over pairs of VectorIndividuals from its source, with probability
+ * crossoverProb, and returns both.  This class exchanges the genes between
+ * two random positions, wrapping around the end of the genome; subclasses
+ * override crossover() for other operators, e.g.,
+ * KPointCrossoverPipeline, UniformCrossoverPipeline and
+ * SegmentCrossoverPipeline.
+ */
 public class VectorCrossoverPipeline implements BreedingPipeline {
 private static final long serialVersionUID = 1L;
 
@@ -54,6 +62,7 @@ public void readXMLConfig(Element e) {
 @Override
 public void writeXMLConfig(Element e) {
   Document d = e.getOwnerDocument();
+  e.setAttribute("crossoverProb", Double.toString(crossoverProb));
   Element sourceE = Config.createNamedElement(d, source, "Source");
   e.appendChild(sourceE);
 }
@@ -84,8 +93,6 @@ public Individual generate() {
   if (!doCrossover)
     return source.generate();
 
-  Random r = ThreadLocalRandom.current();
-
   /*
    * The two individuals that we are going to do crossover on come from the
    * source breeding pipeline. They must be VectorIndividuals. However, the
@@ -107,6 +114,18 @@ public Individual generate() {
     throw new RuntimeException("VectorCrossoverPipeline requires only VectorIndividuals");
   }
 
+  crossover(clone1, clone2, ThreadLocalRandom.current());
+
+  otherInd = clone2;
+  return clone1;
+}
+
+/**
+ * Exchanges genes between two individuals, in place, with
+ * VectorIndividual.exchangeGenes().
+ */
+protected void crossover(VectorIndividual<Object> clone1,
+                         VectorIndividual<Object> clone2, Random r) {
   /*
    * Determine the positions for the crossover. Rather than fixing one of the
    * end points at the end of the genome, both are determined randomly.
@@ -116,27 +135,15 @@ public Individual generate() {
   int crossoverEndPos = r.nextInt(genomeSize);
 
   /*
-   * Actually perform the crossover.
+   * Actually perform the crossover.  Crossover wraps around the genome, from
+   * crossoverPos up to, but not including, crossoverEndPos.
    */
-  while (crossoverPos != crossoverEndPos) {
-    
-    Object[] clone1genome = clone1.getGenome();
-    Object[] clone2genome = clone2.getGenome();
-    
-    Object fromClone1 = clone1genome[crossoverPos];
-    Object fromClone2 = clone2genome[crossoverPos];
-    clone1genome[crossoverPos] = fromClone2;
-    clone2genome[crossoverPos] = fromClone1;
-    crossoverPos++;
-
-    // Crossover wraps around the genome; the end condition is
-    // crossoverPos != crossoverEndPos
-    if (crossoverPos == genomeSize)
-      crossoverPos = 0;
+  if (crossoverPos < crossoverEndPos) {
+    clone1.exchangeGenes(clone2, crossoverPos, crossoverEndPos);
+  } else if (crossoverPos > crossoverEndPos) {
+    clone1.exchangeGenes(clone2, crossoverPos, genomeSize);
+    clone1.exchangeGenes(clone2, 0, crossoverEndPos);
   }
-
-  otherInd = clone2;
-  return clone1;
 }
 
 @Override
@@ -144,4 +151,13 @@ public void setSourcePopulation(Population pop) {
   source.setSourcePopulation(pop);
 }
 
+/**
+ * @return A FusedVectorPipeline doing the work of this pipeline and those
+ * under it, if they can be fused
+ */
+@Override
+public BreedingPipeline compile() {
+  return FusedVectorPipeline.compile(this);
+}
+
 }
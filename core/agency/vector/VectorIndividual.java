@@ -2,33 +2,37 @@ package agency.vector;
 
 import static agency.Agency.log;
 
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
 import java.util.UUID;
 import java.util.logging.Level;
 
-import com.esotericsoftware.kryo.Kryo;
-
 import agency.AbstractIndividual;
 import agency.Individual;
 
 public class VectorIndividual<T> extends AbstractIndividual {
 private static final long serialVersionUID = 1;
 
+private T[] genome;
+
 /**
- * Breeding pipelines require individuals to be cloned, because they may be an
- * ancestor for more than one individual in the next generation. This is
- * performed for every individual in every generation, so it is performance
- * sensitive. By default, Agency uses the high-performance Kryo package to
- * perform a "deep copy" clone. Kryo is not threadsafe, so Individual uses the
- * ThreadLocal approach as definied in the Kryo documentation.
+ * Whether the genome array may be shared with a copy of this individual, or
+ * with the individual this is a copy of.  If so, it is copied before it is
+ * first written.  Subclasses with their own genome arrays use this too.
  */
-static final ThreadLocal<Kryo> kryos = new ThreadLocal<Kryo>() {
-protected Kryo initialValue() {
-  Kryo kryo = new Kryo();
-  return kryo;
-};
-};
-
-private T[] genome;
+protected boolean shared;
+
+/*
+ * Math.exp() of every gene, computed when e() is first called.  Agents use
+ * e() and the helpers built on it every step, and the genome does not change
+ * during evaluation, so each is computed once; genes that are not Numbers
+ * are NaN.  Cleared by genomeChanged().  The array is filled before it is
+ * published and never written after, so threads evaluating this individual
+ * at once see either null or the whole array; at worst, more than one of
+ * them fills its own.
+ */
+private transient volatile double[] expGenes;
 
 @SuppressWarnings("unchecked")
 public VectorIndividual(int genomeSize) {
@@ -36,23 +40,94 @@ public VectorIndividual(int genomeSize) {
   genome = (T[]) new Object[genomeSize];
 }
 
+/**
+ * For subclasses that store their genome in a primitive array instead.  They
+ * must override every method that accesses the genome.
+ */
+protected VectorIndividual() {
+}
+
+/**
+ * Breeding pipelines require individuals to be cloned, because they may be an
+ * ancestor for more than one individual in the next generation. This is
+ * performed for every individual in every generation, so it is performance
+ * sensitive.  Most offspring are changed little or not at all, so the clone
+ * shares this individual's genome until one of them changes it, and only
+ * then is it copied (copy-on-write).
+ * <p>
+ * The copy is shallow, so genes must be immutable values, e.g., Numbers, and
+ * only be changed through this class's methods.
+ */
 @Override
 public Individual copy() {
-  /*
-   * By default, use Kryo to do a fast deep copy of the individual's genome. If
-   * a deep copy is not appropriate, this method should be overridden.
-   */
-  Kryo kryo = kryos.get();
-  VectorIndividual<T> clone = new VectorIndividual<>(this.genome.length);
+  VectorIndividual<T> clone = new VectorIndividual<>();
   clone.setUUID(UUID.randomUUID()); // TODO: Potential psuedo-random issue
-  clone.genome = kryo.copy(genome);
+  clone.genome = genome;
+  clone.shared = true;
+  shared = true;
   return clone;
 }
 
-public T[] getGenome() {
+/**
+ * @return The genome array, copied first if it is shared, so that it may be
+ * changed
+ */
+private T[] writableGenome() {
+  genomeChanged();
+  if (shared) {
+    if (genome != null)
+      genome = genome.clone();
+    shared = false;
+  }
   return genome;
 }
 
+/**
+ * Discards anything computed from the genome, e.g., by e().  Every method
+ * that changes the genome calls this first, including those of subclasses
+ * with their own genome arrays.
+ */
+protected void genomeChanged() {
+  expGenes = null;
+}
+
+/**
+ * @return The genome, which may be changed.  Subclasses backed by a
+ * primitive array return a boxed copy, so the genome should only be changed
+ * through changeGene(), setDouble(), replaceGenome() or exchangeGenes().
+ * Changes through the array returned must be made before e() or the helpers
+ * built on it are next called.
+ */
+public T[] getGenome() {
+  return writableGenome();
+}
+
+/**
+ * @return A read-only view of the genome, for code that only reads it.
+ * Unlike getGenome(), nothing is copied or unshared; each gene is read
+ * through gene() when it is accessed, so subclasses backed by a primitive
+ * array box one gene at a time.  The view reflects later changes to the
+ * genome.
+ */
+public List<T> geneView() {
+  return new GeneView();
+}
+
+private class GeneView extends AbstractList<T>
+        implements RandomAccess {
+  @Override
+  public T get(int index) {
+    if (index < 0 || index >= size())
+      throw new IndexOutOfBoundsException("Gene " + index + " of " + size());
+    return gene(index);
+  }
+
+  @Override
+  public int size() {
+    return getGenomeLength();
+  }
+}
+
 public int getGenomeLength() {
   if (genome != null)
     return genome.length;
@@ -60,13 +135,96 @@ public int getGenomeLength() {
 }
 
 public void changeGene(int position, T value) {
-  genome[position] = value;
+  writableGenome()[position] = value;
+}
+
+/**
+ * @return The gene at the position, which must be a Number, as a double
+ */
+public double getDouble(int position) {
+  try {
+    return ((Number) genome[position]).doubleValue();
+  } catch (ClassCastException cce) {
+    throw new RuntimeException("Numeric access requires a genome that inherits from Number");
+  }
+}
+
+/**
+ * Sets a numeric gene, keeping the type of Number already at the position.
+ * I.e., if it is an Integer, the value is converted to an Integer.
+ */
+@SuppressWarnings("unchecked")
+public void setDouble(int position, double value) {
+  Object old = genome[position];
+  if (!(old instanceof Number))
+    throw new RuntimeException("Numeric access requires a genome that inherits from Number");
+  writableGenome()[position] = (T) sameType((Number) old, value);
+}
+
+/**
+ * @return The value, converted to the same type of Number as like
+ */
+static Number sameType(Number like, double value) {
+  if (like instanceof Byte) {
+    return (byte) value;
+  } else if (like instanceof Short) {
+    return (short) value;
+  } else if (like instanceof Integer) {
+    return (int) value;
+  } else if (like instanceof Long) {
+    return (long) value;
+  } else if (like instanceof Float) {
+    return (float) value;
+  } else if (like instanceof Double) {
+    return value;
+  } else {
+    throw new RuntimeException("Cannot convert to unknown Numeric type " +
+                               like.getClass().getName());
+  }
+}
+
+/**
+ * Exchanges the genes in positions [start,end) with another individual of
+ * the same class and genome length, e.g., for crossover.
+ * <p>
+ * If either genome is shared with a copy, the copy is made first anyway, and
+ * the genes are then moved with System.arraycopy from the shared original,
+ * which is unchanged.  Otherwise they are exchanged as by GeneExchange.
+ */
+public void exchangeGenes(VectorIndividual<T> other, int start, int end) {
+  if (end <= start)
+    return;
+  if (genome == null || other.genome == null) {
+    // At least one is stored some other way
+    for (int i = start; i < end; i++) {
+      T tmp = gene(i);
+      changeGene(i, other.gene(i));
+      other.changeGene(i, tmp);
+    }
+    return;
+  }
+  T[] thisOriginal = genome;
+  T[] otherOriginal = other.genome;
+  boolean thisShared = shared;
+  boolean otherShared = other.shared;
+  T[] thisGenome = writableGenome();
+  T[] otherGenome = other.writableGenome();
+  int n = end - start;
+  if (thisShared) {
+    System.arraycopy(otherGenome, start, thisGenome, start, n);
+    System.arraycopy(thisOriginal, start, otherGenome, start, n);
+  } else if (otherShared) {
+    System.arraycopy(thisGenome, start, otherGenome, start, n);
+    System.arraycopy(otherOriginal, start, thisGenome, start, n);
+  } else {
+    GeneExchange.exchange(thisGenome, otherGenome, start, end);
+  }
 }
 
 public T gene(int position) {
   T toReturn = null;
   try {
-    T[] g = getGenome();
+    T[] g = genome;
     toReturn = g[position];
   } catch (NullPointerException npe) {
     log.log(Level.SEVERE, "Attempt to access null genome", npe);
@@ -78,21 +236,29 @@ public T gene(int position) {
 
 /**
  * This is a convenience method. It assumes the genome extends Number, and
- * returns Math.exp() of that gene.
+ * returns Math.exp() of that gene.  The result is kept until the genome
+ * changes.
  * 
  * @param position
  * @return
  */
 public double e(int position) {
-  T gene = gene(position);
-  double toReturn = Double.NaN;
-  try {
-    Number n = (Number) gene;
-    toReturn = Math.exp(n.doubleValue());
-  } catch (ClassCastException cce) {
-    throw new RuntimeException("Math.exp() requires a genome that inherits from Numeric");
+  double[] cache = expGenes;
+  if (cache == null) {
+    cache = new double[getGenomeLength()];
+    for (int i = 0; i < cache.length; i++) {
+      try {
+        cache[i] = Math.exp(getDouble(i));
+      } catch (RuntimeException notNumeric) {
+        cache[i] = Double.NaN;
+      }
+    }
+    expGenes = cache;
   }
-  return toReturn;
+  double value = cache[position];
+  if (Double.isNaN(value)) // A NaN gene, or not a Number, which throws here
+    value = Math.exp(getDouble(position));
+  return value;
 }
 
 /**
@@ -112,7 +278,9 @@ public double e2(int position) {
 }
 
 public void replaceGenome(T[] newGenome) {
+  genomeChanged();
   genome = newGenome;
+  shared = false;
 }
 
 /**
@@ -179,16 +347,10 @@ public static int linearEqExpGenomeLength(int numEnvironmentVariables) {
  */
 public double linearEq(int position, double[] environmentVariables) {
 
-  double toReturn = 0d;
-  try {
-    toReturn += ((Number) genome[position++]).doubleValue();
-    for (int i = 0; i < environmentVariables.length; i++) {
-      toReturn += ((Number) genome[position++]).doubleValue() * environmentVariables[i];
-    }
-  } catch (ClassCastException cce) {
-    throw new RuntimeException("Can only use linearEq on Numeric values");
+  double toReturn = getDouble(position++);
+  for (int i = 0; i < environmentVariables.length; i++) {
+    toReturn += getDouble(position++) * environmentVariables[i];
   }
-
   return toReturn;
 }
 
@@ -231,20 +393,13 @@ public int conditionIndexHelper(double[] observations,
                                 int conditionsPos,
                                 int lociPerCondition) {
 
-  // Get thresholds from the genome.
-  double[] thresholds = new double[observations.length];
-  for (int i = 0; i < observations.length; i++) {
-    Number threshold = Double.NaN;
-    try {
-      threshold = (Number) gene(conditionsPos + i);
-    } catch (ClassCastException cce) {
-      throw new RuntimeException("Cannot use "
-                                 + "VectorIndividual.conditionIndexHelper on non-Numeric Values");
-    }
-    thresholds[i] = threshold.doubleValue();
+  // Compare with thresholds in the genome, as conditionIndexer() does.
+  int n = checkConditions(observations.length);
+  int conditionIndex = 0x0;
+  for (int i = 0; i < n; i++) {
+    if (observations[i] > getDouble(conditionsPos + i))
+      conditionIndex = conditionIndex | (0x1 << (n - 1 - i));
   }
-
-  int conditionIndex = conditionIndexer(thresholds, observations);
   int lociBlockOffset = conditionIndex * lociPerCondition;
   int totalOffset = conditionsPos + observations.length + lociBlockOffset;
 
@@ -296,38 +451,15 @@ public int conditionIndexHelperExp(double[] observations,
                                    int conditionsPos,
                                    int lociPerCondition) {
 
-  // Get thresholds from the genome.
-  double[] posThresholds = new double[observations.length];
-  for (int i = 0; i < observations.length; i++) {
-    Number threshold = Double.NaN;
-    try {
-      threshold = (Number) gene(conditionsPos + i);
-    } catch (ClassCastException cce) {
-      throw new RuntimeException("Cannot use "
-                                 + "VectorIndividual.conditionIndexHelper on non-Numeric Values");
-    }
-    posThresholds[i] = threshold.doubleValue();
-  }
-
-  double[] negThresholds = new double[observations.length];
-  for (int i = 0; i < observations.length; i++) {
-    Number threshold = Double.NaN;
-    try {
-      threshold = (Number) gene(conditionsPos + observations.length + i);
-    } catch (ClassCastException cce) {
-      throw new RuntimeException("Cannot use "
-                                 + "VectorIndividual.conditionIndexHelper on non-Numeric Values");
-    }
-    negThresholds[i] = threshold.doubleValue();
-  }
-
-  // Sum components of thresholds
-  double[] thresholds = new double[observations.length];
-  for (int i = 0; i < observations.length; i++) {
-    thresholds[i] = Math.exp(posThresholds[i]) - Math.exp(negThresholds[i]);
+  // Thresholds are the difference of the exponentiated positive and negative
+  // blocks, compared as conditionIndexer() does.
+  int n = checkConditions(observations.length);
+  int conditionIndex = 0x0;
+  for (int i = 0; i < n; i++) {
+    double threshold = e(conditionsPos + i) - e(conditionsPos + n + i);
+    if (observations[i] > threshold)
+      conditionIndex = conditionIndex | (0x1 << (n - 1 - i));
   }
-
-  int conditionIndex = conditionIndexer(thresholds, observations);
   int lociBlockOffset = conditionIndex * lociPerCondition;
   int totalOffset = conditionsPos + (observations.length * 2) + lociBlockOffset;
 
@@ -348,6 +480,15 @@ public static int conditionIndexHelperExpGenomeLength(int numConditions, int loc
   return (numConditions * 2) + (0x1 << numConditions) * lociPerCondition;
 }
 
+/**
+ * @return The number of conditions, if they fit in an index
+ */
+private static int checkConditions(int numConditions) {
+  if (numConditions > 30)
+    throw new RuntimeException("Too many thresholds");
+  return numConditions;
+}
+
 static int conditionIndexer(double[] thresholds,
                             double[] observations) {
 
@@ -374,7 +515,7 @@ public String toString() {
   StringBuffer sb = new StringBuffer();
   sb.append("VectorIndividual#" + hashCode() + ":[");
 
-  if (getGenome() == null) {
+  if (genome == null && getGenomeLength() == 0) {
     sb.append("null");
   } else {
     for (int i = 0; i < getGenomeLength(); i++) {
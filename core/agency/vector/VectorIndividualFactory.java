@@ -2,26 +2,90 @@ package agency.vector;
 
 import agency.util.RangedVector;
 import agency.IndividualFactory;
+import org.w3c.dom.Element;
 
+/**
+ * Creates VectorIndividuals with genomes initialized from its child
+ * VectorRanges.  The genomeType attribute selects how the genome is stored:
+ * "object" (the default) for a VectorIndividual of whatever the ranges
+ * produce, or "double" or "int" for a DoubleVectorIndividual or
+ * IntVectorIndividual, backed by a primitive array, with the ranges' values
+ * converted.
+ */
 public class VectorIndividualFactory extends RangedVector
     implements IndividualFactory<VectorIndividual<Object>> {
 
 private static final long serialVersionUID = 1L;
 
+public enum GenomeType {
+  OBJECT, DOUBLE, INT
+}
+
+GenomeType genomeType = GenomeType.OBJECT;
+
+@Override
+public void readXMLConfig(Element e) {
+  super.readXMLConfig(e);
+  String typeString = e.getAttribute("genomeType");
+  if (typeString != null && !typeString.isEmpty()) {
+    try {
+      genomeType = GenomeType.valueOf(typeString.toUpperCase());
+    } catch (IllegalArgumentException iae) {
+      throw new RuntimeException("VectorIndividualFactory genomeType must be " +
+                                 "object, double or int, not " + typeString);
+    }
+  }
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  super.writeXMLConfig(e);
+  if (genomeType != GenomeType.OBJECT)
+    e.setAttribute("genomeType", genomeType.name().toLowerCase());
+}
+
+public GenomeType getGenomeType() {
+  return genomeType;
+}
+
 /**
  * The following method must be synchronized because it depends on the state of
  * the vector, which is changed each time create() is called with initialize().
  * This shouldn't be too much of a performance hit because (1) paralellism can
  * take place at a higher level (across populations) and this is only called at
  * initialization.
+ * <p>
+ * Individuals backed by primitive arrays are returned as
+ * VectorIndividual&lt;Object&gt;, as the pipelines that operate on them expect;
+ * their genes are still read and written as Objects (boxed Doubles or
+ * Integers) through that type.
  */
+@SuppressWarnings("unchecked")
 public synchronized VectorIndividual<Object> create() {
-
-  VectorIndividual<Object> ind = new VectorIndividual<Object>(getVectorLength());
   Object[] newGenome = createVector();
-  ind.replaceGenome(newGenome);
+
+  VectorIndividual<?> ind;
+  switch (genomeType) {
+    case DOUBLE:
+      double[] doubles = new double[newGenome.length];
+      for (int i = 0; i < doubles.length; i++)
+        doubles[i] = ((Number) newGenome[i]).doubleValue();
+      ind = new DoubleVectorIndividual(doubles);
+      break;
+    case INT:
+      int[] ints = new int[newGenome.length];
+      for (int i = 0; i < ints.length; i++)
+        ints[i] = ((Number) newGenome[i]).intValue();
+      ind = new IntVectorIndividual(ints);
+      break;
+    default:
+      VectorIndividual<Object> objects =
+              new VectorIndividual<Object>(getVectorLength());
+      objects.replaceGenome(newGenome);
+      ind = objects;
+  }
   ind.setFitness(null);
-  return ind;
+  return (VectorIndividual<Object>) ind;
 }
 
 }
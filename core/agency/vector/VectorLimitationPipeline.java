@@ -78,6 +78,15 @@ public void setSourcePopulation(Population pop) {
   source.setSourcePopulation(pop);
 }
 
+/**
+ * @return A FusedVectorPipeline doing the work of this pipeline and those
+ * under it, if they can be fused
+ */
+@Override
+public BreedingPipeline compile() {
+  return FusedVectorPipeline.compile(this);
+}
+
 public BreedingPipeline getSource() {
   return source;
 }
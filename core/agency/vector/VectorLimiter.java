@@ -33,9 +33,9 @@ public VectorIndividual<Object> limit(VectorIndividual<Object> individual) {
     VectorValueLimiter vvl = (VectorValueLimiter) vr;
 
     Range<Integer> range = vr.getRange();
-    for (int pos = range.getMinimum(); pos <= range.getMaximum(); pos++) {
-      vvl.limit(individual.getGenome(), pos);
-    }
+    // A range may end at "last"
+    int end = Math.min(range.getMaximum(), individual.getGenomeLength() - 1);
+    vvl.limit(individual, range.getMinimum(), end);
   }
   return individual;
 }
@@ -16,9 +16,9 @@ public VectorIndividual<Object> mutate(VectorIndividual<Object> individual) {
     VectorValueMutator vm = (VectorValueMutator) vr;
 
     Range<Integer> range = vr.getRange();
-    for (int pos = range.getMinimum(); pos <= range.getMaximum(); pos++) {
-      vm.mutate(individual.getGenome(),pos);
-    }
+    // A range may end at "last"
+    int end = Math.min(range.getMaximum(), individual.getGenomeLength() - 1);
+    vm.mutate(individual, range.getMinimum(), end);
   }
   return individual;
 }
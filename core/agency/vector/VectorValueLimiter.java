@@ -4,4 +4,38 @@ import agency.XMLConfigurable;
 
 public interface VectorValueLimiter extends XMLConfigurable {
 void limit(Object[] genome, int pos);
+
+/**
+ * Limits one position of an individual's genome.  As with
+ * VectorValueMutator, the default reads the whole genome through
+ * geneView(), so several positions should be limited with limit(individual,
+ * start, end), and numeric limiters should override it.
+ */
+@SuppressWarnings("unchecked")
+default void limit(VectorIndividual<?> individual, int pos) {
+  Object[] genome = individual.geneView().toArray();
+  Object before = genome[pos];
+  limit(genome, pos);
+  if (genome[pos] != before)
+    ((VectorIndividual<Object>) individual).changeGene(pos, genome[pos]);
+}
+
+/**
+ * Limits the positions from start to end, inclusive, of an individual's
+ * genome.  As with VectorValueMutator, by default this limits one array of
+ * the genes, read through geneView(), and stores back only the genes that
+ * changed.
+ */
+@SuppressWarnings("unchecked")
+default void limit(VectorIndividual<?> individual, int start, int end) {
+  if (end < start)
+    return;
+  Object[] genome = individual.geneView().toArray();
+  for (int pos = start; pos <= end; pos++) {
+    Object before = genome[pos];
+    limit(genome, pos);
+    if (genome[pos] != before)
+      ((VectorIndividual<Object>) individual).changeGene(pos, genome[pos]);
+  }
+}
 }
@@ -4,4 +4,42 @@ import agency.XMLConfigurable;
 
 public interface VectorValueMutator extends XMLConfigurable {
 void mutate(Object[] genome, int pos);
+
+/**
+ * Mutates one position of an individual's genome.  By default, this mutates
+ * an array of the genes, read through geneView(), and stores the gene back
+ * if it changed, which works for any individual but reads the whole genome
+ * each time; to mutate several positions, use mutate(individual, start, end),
+ * which reads it once.  Numeric mutators should override it to use
+ * getDouble() and setDouble().
+ */
+@SuppressWarnings("unchecked")
+default void mutate(VectorIndividual<?> individual, int pos) {
+  Object[] genome = individual.geneView().toArray();
+  Object before = genome[pos];
+  mutate(genome, pos);
+  if (genome[pos] != before)
+    ((VectorIndividual<Object>) individual).changeGene(pos, genome[pos]);
+}
+
+/**
+ * Mutates the positions from start to end, inclusive, of an individual's
+ * genome.  By default, this mutates each position in turn of one array of
+ * the genes, read through geneView(), and stores back through changeGene()
+ * only the genes that changed, so a genome shared with a copy is only copied
+ * if one does.  Mutators that can skip positions that will not change, e.g.,
+ * a sparse GaussianMutator, should override it.
+ */
+@SuppressWarnings("unchecked")
+default void mutate(VectorIndividual<?> individual, int start, int end) {
+  if (end < start)
+    return;
+  Object[] genome = individual.geneView().toArray();
+  for (int pos = start; pos <= end; pos++) {
+    Object before = genome[pos];
+    mutate(genome, pos);
+    if (genome[pos] != before)
+      ((VectorIndividual<Object>) individual).changeGene(pos, genome[pos]);
+  }
+}
 }
@@ -0,0 +1,277 @@
+package agency.models.cournot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import agency.Agent;
+import agency.AgentModel;
+import agency.AgentModelFactory;
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.SimpleFitness;
+import agency.eval.EvaluationGroup;
+import agency.eval.Evaluator;
+import agency.vector.VectorIndividual;
+import org.w3c.dom.Element;
+
+/**
+ * Evaluates CournotGame EvaluationGroups many at a time, without creating a
+ * CournotGame for each.  Groups with the same number of agents are simulated
+ * together in batches of up to <em>batchSize</em> markets, whose quantities,
+ * prices and revenues are kept in flat primitive arrays (one element per
+ * agent in each market) and stepped together in plain loops.  Batches are run
+ * in parallel on the common ForkJoinPool.
+ * <p>
+ * Only the agent classes whose strategies are known here are batched:
+ * DirectlyEncodedCournotAgent, EvolvingTriggerCournotAgent and
+ * MimicCournotAgent (but not subclasses of them).  Any other group, or any
+ * group at all if the AgentModelFactory does not create CournotGames, is run
+ * normally.  The fitnesses of batched groups are identical to those from
+ * CournotGame, but batched groups have no summary or per-step data.
+ * <p>
+ * Configured as, e.g., &lt;Evaluator
+ * type="agency.models.cournot.BatchedCournotEvaluator" batchSize="1024"/&gt;.
+ */
+public class BatchedCournotEvaluator
+        implements Evaluator {
+public static final long serialVersionUID = 1L;
+public static final int  DEFAULT_BATCH_SIZE = 1024;
+
+static final byte DIRECT  = 0;
+static final byte TRIGGER = 1;
+static final byte MIMIC   = 2;
+
+int batchSize = DEFAULT_BATCH_SIZE;
+
+transient AgentModelFactory<?> modelFactory;
+
+public BatchedCournotEvaluator() {
+}
+
+/**
+ * For use outside Environment.evolve(), which would otherwise supply the
+ * AgentModelFactory through beginGeneration().
+ */
+public BatchedCournotEvaluator(AgentModelFactory<?> modelFactory,
+                               int batchSize) {
+  this.modelFactory = modelFactory;
+  this.batchSize = batchSize;
+}
+
+@Override
+public void beginGeneration(Environment env) {
+  modelFactory = env.getAgentModelFactory();
+}
+
+@Override
+public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+  if (modelFactory == null)
+    throw new UnsupportedOperationException(
+            "BatchedCournotEvaluator needs an AgentModelFactory; use it from " +
+            "Environment.evolve(), which calls beginGeneration() first");
+
+  List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+  if (groups.isEmpty())
+    return groups.stream();
+
+  // The model parameters are read from a game made by the factory
+  CournotGame parameters = null;
+  AgentModel prototype = modelFactory.createAgentModel();
+  if (prototype instanceof CournotGame)
+    parameters = (CournotGame) prototype;
+
+  List<Runnable> tasks = new ArrayList<>();
+  Map<Integer, List<EvaluationGroup>> bySize = new HashMap<>();
+  for (EvaluationGroup eg : groups) {
+    if (parameters != null && isBatchable(eg))
+      bySize.computeIfAbsent(eg.getAgents().size(), n -> new ArrayList<>())
+            .add(eg);
+    else
+      tasks.add(eg);
+  }
+  for (List<EvaluationGroup> sameSize : bySize.values()) {
+    for (int start = 0; start < sameSize.size(); start += batchSize) {
+      int end = Math.min(start + batchSize, sameSize.size());
+      tasks.add(new Batch(parameters, sameSize.subList(start, end)));
+    }
+  }
+
+  tasks.parallelStream().forEach(Runnable::run);
+
+  modelFactory.release(prototype);
+  return groups.stream();
+}
+
+static boolean isBatchable(EvaluationGroup eg) {
+  List<Agent> agents = eg.getAgents();
+  if (agents.isEmpty())
+    return false;
+  for (Agent agent : agents) {
+    if (strategyOf(agent) < 0)
+      return false;
+    if (!(agent.getManager() instanceof VectorIndividual))
+      return false;
+  }
+  return true;
+}
+
+/**
+ * @return The strategy of the agent, or -1 if it cannot be batched
+ */
+static byte strategyOf(Agent agent) {
+  Class<?> c = agent.getClass();
+  if (c == DirectlyEncodedCournotAgent.class)
+    return DIRECT;
+  if (c == EvolvingTriggerCournotAgent.class)
+    return TRIGGER;
+  if (c == MimicCournotAgent.class)
+    return MIMIC;
+  return -1;
+}
+
+/**
+ * A batch of markets with the same number of agents.  Arrays are indexed by
+ * slot, i.e., market * agentsPerMarket + agent.
+ */
+static class Batch
+        implements Runnable {
+  final List<EvaluationGroup> groups;
+  final double                demandConstant;
+  final double                demandCoefficient;
+  final double                minimumQuantity;
+  final int                   maxSteps;
+
+  Batch(CournotGame parameters, List<EvaluationGroup> groups) {
+    this.groups = groups;
+    this.demandConstant = parameters.demandConstant;
+    this.demandCoefficient = parameters.demandCoefficient;
+    this.minimumQuantity = parameters.minimumQuantity;
+    this.maxSteps = parameters.getMaxSteps();
+  }
+
+  @Override
+  public void run() {
+    int markets = groups.size();
+    int k = groups.get(0).getAgents().size();
+    int slots = markets * k;
+
+    // Strategy and genome of each agent
+    byte[] strategy = new byte[slots];
+    double[] initialQty = new double[slots];
+    double[] threshold = new double[slots];
+    double[] belowQty = new double[slots];
+    double[] aboveQty = new double[slots];
+    Individual[] individuals = new Individual[slots];
+    for (int m = 0; m < markets; m++) {
+      List<Agent> agents = groups.get(m).getAgents();
+      for (int a = 0; a < k; a++) {
+        int slot = m * k + a;
+        Agent agent = agents.get(a);
+        VectorIndividual<Double> ind =
+                (VectorIndividual<Double>) agent.getManager();
+        individuals[slot] = ind;
+        strategy[slot] = strategyOf(agent);
+        if (strategy[slot] == TRIGGER) {
+          initialQty[slot] =
+                  ind.gene(EvolvingTriggerCournotAgent.POS_INITIAL_QTY);
+          threshold[slot] =
+                  ind.gene(EvolvingTriggerCournotAgent.POS_THRESHOLD_QTY);
+          belowQty[slot] = ind.gene(EvolvingTriggerCournotAgent.POS_BELOW_QTY);
+          aboveQty[slot] = ind.gene(EvolvingTriggerCournotAgent.POS_ABOVE_QTY);
+        } else {
+          initialQty[slot] = ind.gene(DirectlyEncodedCournotAgent.POS_QTY);
+        }
+      }
+    }
+
+    double[] qty = new double[slots];
+    double[] lastQty = new double[slots];
+    double[] revenue = new double[slots];
+    for (int step = 0; step < maxSteps; step++) {
+      for (int m = 0; m < markets; m++) {
+        int base = m * k;
+        double totalQuantity = 0d;
+        for (int a = 0; a < k; a++) {
+          int slot = base + a;
+          double desired;
+          if (step == 0 || strategy[slot] == DIRECT) {
+            desired = initialQty[slot];
+          } else {
+            // As CournotMarketInfo.averageOtherQty(self, 1)
+            double otherQty = 0d;
+            for (int o = 0; o < k; o++)
+              if (o != a)
+                otherQty += lastQty[base + o];
+            double averageOtherQty = otherQty / (k - 1);
+            if (strategy[slot] == MIMIC)
+              desired = averageOtherQty;
+            else if (averageOtherQty > threshold[slot])
+              desired = aboveQty[slot];
+            else
+              desired = belowQty[slot];
+          }
+          qty[slot] = desired < minimumQuantity ? minimumQuantity : desired;
+          totalQuantity += qty[slot];
+        }
+
+        double price = demandConstant - demandCoefficient * totalQuantity;
+        if (price <= 0)
+          price = 0;
+
+        for (int a = 0; a < k; a++)
+          revenue[base + a] += price * qty[base + a];
+      }
+      double[] tmp = lastQty;
+      lastQty = qty;
+      qty = tmp;
+    }
+
+    for (int m = 0; m < markets; m++) {
+      Individual[] inds = new Individual[k];
+      Fitness[] fitnesses = new Fitness[k];
+      for (int a = 0; a < k; a++) {
+        inds[a] = individuals[m * k + a];
+        fitnesses[a] = new SimpleFitness(revenue[m * k + a]);
+      }
+      groups.get(m).completeWith(inds, fitnesses, null, null);
+    }
+  }
+}
+
+@Override
+public void close() {
+  // Unnecessary
+}
+
+@Override
+public void readXMLConfig(Element e) {
+  String batchSizeString = e.getAttribute("batchSize");
+  if (batchSizeString != null && !batchSizeString.isEmpty()) {
+    try {
+      batchSize = Integer.parseInt(batchSizeString);
+    } catch (NumberFormatException nfe) {
+      throw new UnsupportedOperationException(
+              "BatchedCournotEvaluator batchSize must be an integer", nfe);
+    }
+    if (batchSize <= 0)
+      throw new UnsupportedOperationException(
+              "BatchedCournotEvaluator batchSize must be positive");
+  }
+}
+
+@Override
+public void writeXMLConfig(Element e) {
+  e.setAttribute("batchSize", Integer.toString(batchSize));
+}
+
+@Override
+public void resumeFromCheckpoint() {
+  // The AgentModelFactory is supplied again by beginGeneration().
+}
+
+}
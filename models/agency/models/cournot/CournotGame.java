@@ -6,9 +6,22 @@ import java.util.List;
 import agency.AbstractAgentModel;
 import agency.Agent;
 import agency.Fitness;
+import agency.ResettableAgentModel;
 import agency.SimpleFitness;
+import agency.StepDataRecordingModel;
+import agency.data.StepDataBuffer;
+import agency.data.StepDataLayout;
 
-public class CournotGame extends AbstractAgentModel {
+public class CournotGame extends AbstractAgentModel
+        implements ResettableAgentModel, StepDataRecordingModel {
+
+static final StepDataLayout STEP_DATA        = new StepDataLayout();
+static final int            PRICE            =
+        STEP_DATA.addDouble("Price");
+static final int            TOTAL_QUANTITY   =
+        STEP_DATA.addDouble("TotalQuantity");
+static final int            CONSUMER_SURPLUS =
+        STEP_DATA.addDouble("ConsumerSurplus");
 
 // The CournotMarketInfo can be a 1:1 relationship, and kept.
 CournotMarketInfo cmi;
@@ -18,6 +31,7 @@ double[][]         quantities;
 double[]           prices;
 double[][]         revenue;
 double[]           consumerSurplus;
+StepDataBuffer     stepData;
 
 /*
  * The following are model parameters.
@@ -34,17 +48,34 @@ public CournotGame() {
 public void init() {
   super.init();
 
-  quantities = new double[maxSteps][agents.size()];
-  revenue = new double[maxSteps][agents.size()];
-  prices = new double[maxSteps];
-  consumerSurplus = new double[maxSteps];
+  /*
+   * Arrays left over from a previous game are reused if they are the right
+   * size.  They need not be cleared, since step() overwrites every entry.
+   */
+  int numAgents = agents.size();
+  if (prices == null || prices.length != maxSteps || maxSteps == 0 ||
+      quantities[0].length != numAgents) {
+    quantities = new double[maxSteps][numAgents];
+    revenue = new double[maxSteps][numAgents];
+    prices = new double[maxSteps];
+    consumerSurplus = new double[maxSteps];
+  }
 
   if (Double.isNaN(demandConstant))
     throw new RuntimeException("demandConstant is NaN.  Has it been set?");
   if (Double.isNaN(demandCoefficient))
     throw new RuntimeException("demandCoefficient is NaN.  Has it been set?");
 
-  cmi = new CournotMarketInfo(this);
+  if (cmi == null)
+    cmi = new CournotMarketInfo(this);
+}
+
+@Override
+public void reset() {
+  agents.clear();
+  currentStep = 0;
+  debugOut = null;
+  stepData = null;
 }
 
 @Override
@@ -94,6 +125,13 @@ public boolean step() {
 
   // Compute consumer Surplus
   consumerSurplus[currentStep] = (demandConstant - prices[currentStep]) * totalQuantity / 2;
+
+  if (stepData != null) {
+    stepData.setDouble(PRICE, currentStep, prices[currentStep]);
+    stepData.setDouble(TOTAL_QUANTITY, currentStep, totalQuantity);
+    stepData.setDouble(CONSUMER_SURPLUS, currentStep,
+                       consumerSurplus[currentStep]);
+  }
   
   // Generate revenue
   for (int i = 0; i < agents.size(); i++) {
@@ -117,8 +155,18 @@ public Object getSummaryData() {
 
 @Override
 public Object getStepData() {
-  // Return nothing for now.
+  // Recorded into the StepDataBuffer instead
   return null;
 }
 
+@Override
+public StepDataLayout getStepDataLayout() {
+  return STEP_DATA;
+}
+
+@Override
+public void setStepDataBuffer(StepDataBuffer buffer) {
+  this.stepData = buffer;
+}
+
 }
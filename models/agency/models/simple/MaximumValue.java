@@ -55,11 +55,9 @@ public Fitness getFitness(Agent agent) {
   // The agent is assumed to have a VectorInvididual<Integer>
   VectorIndividual<Double> ind = (VectorIndividual<Double>) agent
           .getManager();
-  int genomeSize = ind.getGenomeLength();
   double sumOfGenome = 0;
   for (int i = 0; i < ind.getGenomeLength(); i++) {
-    Object[] o = ind.getGenome();
-    sumOfGenome += (Double) o[i];
+    sumOfGenome += ind.getDouble(i);
   }
   if (sumOfGenome <= 0)
     sumOfGenome = Double.MIN_NORMAL;
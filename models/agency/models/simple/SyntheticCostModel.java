@@ -0,0 +1,181 @@
+package agency.models.simple;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import agency.Agent;
+import agency.Fitness;
+import agency.Individual;
+import agency.ResettableAgentModel;
+import agency.SimpleFitness;
+import agency.vector.VectorIndividual;
+
+/**
+ * A model that does nothing but a configurable amount of work, for measuring
+ * how Evaluators, EvaluationGroupFactories and breeding pipelines scale
+ * without the noise of a real model.  Each step, for each agent, it does
+ * workPerAgentStep iterations of floating point arithmetic and allocates
+ * bytesPerAgentStep bytes.  The number of agents per group is set by the
+ * EvaluationGroupFactory, e.g., numAgents in ShuffledEvaluationGroupFactory's
+ * AgentSource.
+ * <p>
+ * To imitate models whose cost depends on their agents, the work of each
+ * group is scaled by a multiplier drawn when it is initialized, log-normally
+ * distributed with a mean of 1 and a coefficient of variation of
+ * costVariance.
+ * <p>
+ * As in MaximumValue, the fitness of an agent with a numeric VectorIndividual
+ * is the sum of its genome, so that there is something to evolve.
+ * <p>
+ * Configured with, e.g.,
+ * <pre>
+ * &lt;DefaultAgentModelFactory modelClass="agency.models.simple.SyntheticCostModel"&gt;
+ *   &lt;Parameter name="maxSteps" value="100"/&gt;
+ *   &lt;Parameter name="workPerAgentStep" value="1000"/&gt;
+ *   &lt;Parameter name="bytesPerAgentStep" value="256"/&gt;
+ *   &lt;Parameter name="costVariance" value="0.5"/&gt;
+ * &lt;/DefaultAgentModelFactory&gt;
+ * </pre>
+ */
+public class SyntheticCostModel implements ResettableAgentModel {
+
+/*
+ * Parameters
+ */
+Integer maxSteps          = 10;
+Integer workPerAgentStep  = 1000;
+Integer bytesPerAgentStep = 0;
+Double  costVariance      = 0d;
+
+List<Agent<?, ?>> agents = new ArrayList<>();
+
+double multiplier = 1d;
+int    currentStep;
+long   iterations;
+long   allocatedBytes;
+
+/*
+ * Results of the work, kept so that it cannot be optimized away.
+ */
+double checksum;
+byte[] lastAllocation;
+
+public static class SummaryData {
+  public double costMultiplier;
+  public long   iterations;
+  public long   allocatedBytes;
+  public double checksum;
+}
+
+@Override
+public void addAgent(Agent<?, ?> agent) {
+  agents.add(agent);
+}
+
+@Override
+public void init() {
+  if (maxSteps == null || maxSteps < 0)
+    throw new RuntimeException("maxSteps must be set, and not negative");
+  if (workPerAgentStep < 0 || bytesPerAgentStep < 0 || costVariance < 0)
+    throw new RuntimeException("workPerAgentStep, bytesPerAgentStep and " +
+                               "costVariance must not be negative");
+  multiplier = drawMultiplier(costVariance);
+}
+
+/**
+ * @return A log-normally distributed value with a mean of 1 and the specified
+ * coefficient of variation
+ */
+static double drawMultiplier(double coefficientOfVariation) {
+  if (coefficientOfVariation == 0d)
+    return 1d;
+  double variance = Math.log(1 + coefficientOfVariation *
+                                 coefficientOfVariation);
+  double sd = Math.sqrt(variance);
+  return Math.exp(-variance / 2 +
+                  sd * ThreadLocalRandom.current().nextGaussian());
+}
+
+@Override
+public boolean step() {
+  long work = Math.round(workPerAgentStep * multiplier);
+  double x = checksum;
+  for (int a = 0; a < agents.size(); a++) {
+    for (long i = 0; i < work; i++)
+      x = x * 0.999999 + 1e-6 * (i & 7);
+    if (bytesPerAgentStep > 0) {
+      lastAllocation = new byte[bytesPerAgentStep];
+      lastAllocation[lastAllocation.length - 1] = (byte) x;
+    }
+  }
+  checksum = x;
+  iterations += work * agents.size();
+  allocatedBytes += (long) bytesPerAgentStep * agents.size();
+  currentStep++;
+  return false;
+}
+
+@Override
+public void finish() {
+  lastAllocation = null;
+}
+
+@Override
+public Fitness getFitness(Agent<?, ?> agent) {
+  double sum = 0d;
+  Individual ind = agent.getManager();
+  if (ind instanceof VectorIndividual) {
+    VectorIndividual<?> vi = (VectorIndividual<?>) ind;
+    for (int i = 0; i < vi.getGenomeLength(); i++)
+      sum += vi.getDouble(i);
+  }
+  // Kept positive, for fitness proportional selection
+  if (sum <= 0)
+    sum = Double.MIN_NORMAL;
+  return new SimpleFitness(sum);
+}
+
+@Override
+public Object getAgentDetails(Agent<?, ?> agent) {
+  return null;
+}
+
+@Override
+public int getMaxSteps() {
+  return maxSteps;
+}
+
+@Override
+public Object getSummaryData() {
+  SummaryData sd = new SummaryData();
+  sd.costMultiplier = multiplier;
+  sd.iterations = iterations;
+  sd.allocatedBytes = allocatedBytes;
+  sd.checksum = checksum;
+  return sd;
+}
+
+@Override
+public Object getStepData() {
+  return null;
+}
+
+@Override
+public void enableDebug(PrintStream out) {
+  // No debugging supported.
+}
+
+@Override
+public void reset() {
+  agents.clear();
+  multiplier = 1d;
+  currentStep = 0;
+  iterations = 0;
+  allocatedBytes = 0;
+  checksum = 0d;
+  lastAllocation = null;
+}
+
+}
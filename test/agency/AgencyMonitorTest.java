@@ -0,0 +1,85 @@
+package agency;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AgencyMonitorTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment   env;
+AgencyMonitor monitor;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+  monitor = AgencyMonitor.attach(env);
+}
+
+@After
+public void tearDown() throws Exception {
+  if (env != null)
+    env.close();
+}
+
+@Test
+public void testReportsRunState() {
+  for (int i = 0; i < 3; i++)
+    env.evolve();
+
+  assertEquals(3, monitor.getGeneration());
+  // 1000 groups per generation
+  assertEquals(1000, monitor.getGroupsCompleted());
+  assertEquals(0, monitor.getEvaluatorQueueDepth());
+  assertTrue(monitor.getGenerationsPerMinute() > 0);
+
+  Map<String, Integer> sizes = monitor.getPopulationSizes();
+  assertEquals(1, sizes.size());
+  assertEquals(50, (int) sizes.values().iterator().next());
+  double mean = monitor.getMeanFitness().values().iterator().next();
+  double max = monitor.getMaxFitness().values().iterator().next();
+  assertFalse(Double.isNaN(mean));
+  // Allowing for rounding, if every individual is equally fit
+  assertTrue(max >= mean - 1e-9 * Math.abs(mean));
+}
+
+@Test
+public void testAttachIsIdempotent() {
+  assertSame(monitor, AgencyMonitor.attach(env));
+}
+
+@Test
+public void testOperationsOverJMX() throws Exception {
+  MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+  ObjectName name = monitor.getObjectName();
+  assertTrue(server.isRegistered(name));
+
+  env.evolve();
+  assertEquals(1, server.getAttribute(name, "Generation"));
+
+  server.invoke(name, "requestCheckpoint", null, null);
+  assertTrue(monitor.takeCheckpointRequest());
+  assertFalse(monitor.takeCheckpointRequest());
+
+  assertFalse(monitor.isStopRequested());
+  server.invoke(name, "requestStop", null, null);
+  assertTrue(monitor.isStopRequested());
+
+  env.close();
+  env = null;
+  assertFalse(server.isRegistered(name));
+}
+
+}
@@ -0,0 +1,100 @@
+package agency;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import agency.eval.EvaluationGroup;
+import agency.models.cournot.CournotGame;
+import agency.models.cournot.DirectlyEncodedCournotAgent;
+import agency.vector.VectorIndividual;
+
+public class DefaultAgentModelFactoryTest {
+
+static final String COURNOT =
+        "<DefaultAgentModelFactory modelClass=\"agency.models.cournot.CournotGame\"%s>" +
+        "<Parameter name=\"demandConstant\" value=\"100\"/>" +
+        "<Parameter name=\"demandCoefficient\" value=\"1\"/>" +
+        "<Parameter name=\"minimumQuantity\" value=\"0.00001\"/>" +
+        "<Parameter name=\"maxSteps\" value=\"10\"/>" +
+        "</DefaultAgentModelFactory>";
+
+static DefaultAgentModelFactory cournotFactory(String attributes) {
+  return (DefaultAgentModelFactory) Config.getXMLConfigurableFromString(
+          String.format(COURNOT, attributes));
+}
+
+@Test
+public void testReusesReleasedModelOnSameThread() throws Exception {
+  DefaultAgentModelFactory factory = cournotFactory("");
+  AgentModel first = factory.createAgentModel();
+  factory.release(first);
+  assertSame(first, factory.createAgentModel());
+
+  // Another thread has its own pool
+  factory.release(first);
+  AtomicReference<AgentModel> other = new AtomicReference<>();
+  Thread t = new Thread(() -> other.set(factory.createAgentModel()));
+  t.start();
+  t.join();
+  assertNotSame(first, other.get());
+  assertTrue(other.get() instanceof CournotGame);
+}
+
+@Test
+public void testPoolingCanBeDisabled() {
+  DefaultAgentModelFactory factory = cournotFactory(" poolSize=\"0\"");
+  AgentModel first = factory.createAgentModel();
+  factory.release(first);
+  assertNotSame(first, factory.createAgentModel());
+}
+
+@Test
+public void testNonResettableModelsAreNotPooled() {
+  DefaultAgentModelFactory factory =
+          (DefaultAgentModelFactory) Config.getXMLConfigurableFromString(
+                  "<DefaultAgentModelFactory " +
+                  "modelClass=\"agency.models.simple.MaximumValue\"/>");
+  AgentModel first = factory.createAgentModel();
+  factory.release(first);
+  assertNotSame(first, factory.createAgentModel());
+}
+
+private static Fitness[] runCournot(AgentModelFactory<?> factory,
+                                    double qty1, double qty2) {
+  EvaluationGroup eg = new EvaluationGroup();
+  eg.setModelFactory(factory);
+  DirectlyEncodedCournotAgent[] agents = new DirectlyEncodedCournotAgent[2];
+  double[] qtys = {qty1, qty2};
+  for (int i = 0; i < agents.length; i++) {
+    VectorIndividual<Double> ind = new VectorIndividual<>(1);
+    ind.changeGene(0, qtys[i]);
+    agents[i] = new DirectlyEncodedCournotAgent();
+    agents[i].setManager(ind);
+    eg.addAgent(agents[i]);
+  }
+  eg.run();
+  return new Fitness[]{eg.getResults().get(agents[0].getManager()),
+                       eg.getResults().get(agents[1].getManager())};
+}
+
+@Test
+public void testReusedGameMatchesFreshGame() {
+  DefaultAgentModelFactory pooled = cournotFactory(" poolSize=\"1\"");
+  DefaultAgentModelFactory unpooled = cournotFactory(" poolSize=\"0\"");
+
+  // Warm the pool with a different game first
+  runCournot(pooled, 5d, 40d);
+
+  Fitness[] reused = runCournot(pooled, 20d, 30d);
+  Fitness[] fresh = runCournot(unpooled, 20d, 30d);
+  for (int i = 0; i < 2; i++)
+    assertEquals(((SimpleFitness) fresh[i]).getAverageFitness(),
+                 ((SimpleFitness) reused[i]).getAverageFitness(), 0d);
+  // Price is 100 - 50 = 50 for 10 steps; revenue is 50 * qty * 10
+  assertEquals(10000d, ((SimpleFitness) reused[0]).getAverageFitness(), 1e-9);
+}
+
+}
@@ -2,12 +2,30 @@ package agency;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+import agency.eval.EvaluationGroup;
+import agency.eval.Evaluator;
 
 public class EnvironmentTest {
 
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
 @Before
 public void setUp() throws Exception {
 }
@@ -21,4 +39,129 @@ public void test() {
   fail("Not yet implemented");
 }
 
+/**
+ * Evolves one generation, then puts the population back as it was.
+ *
+ * @return The fitness each individual was given
+ */
+private static Map<Individual, SimpleFitness> evolveOnce(Environment env,
+                                                         Population pop) {
+  List<Individual> individuals = new ArrayList<>(pop.individuals);
+  env.evolve();
+  Map<Individual, SimpleFitness> fitnesses = new IdentityHashMap<>();
+  for (Individual ind : individuals)
+    fitnesses.put(ind, (SimpleFitness) ind.getFitness());
+  pop.individuals = individuals;
+  return fitnesses;
+}
+
+@Test
+public void testStreamingMatchesBatch() {
+  Environment env = MaximumValueFixture.load(folder.getRoot());
+  try {
+    Population pop = env.getPopulationGroups().get(0).getPopulations().get(0);
+    Map<Individual, SimpleFitness> batch = evolveOnce(env, pop);
+
+    // Fewer in flight than there are groups, and not a divisor of them
+    env.setMaxGroupsInFlight(7);
+    Map<Individual, SimpleFitness> streamed = evolveOnce(env, pop);
+
+    assertEquals(pop.individuals.size(), batch.size());
+    for (Individual ind : pop.individuals) {
+      SimpleFitness b = batch.get(ind);
+      SimpleFitness s = streamed.get(ind);
+      assertNotSame(b, s);
+      // MaximumValue's fitness depends only on the genome, so the totals
+      // differ only by the order in which samples were added
+      assertEquals(200, s.getNumSamples());
+      assertEquals(b.getNumSamples(), s.getNumSamples());
+      assertEquals(b.getTotalFitness(), s.getTotalFitness(),
+                   1e-12 * Math.abs(b.getTotalFitness()));
+    }
+  } finally {
+    env.close();
+  }
+}
+
+/**
+ * Passes groups on to another Evaluator, recording the largest call and the
+ * most groups being evaluated at once.
+ */
+static class CountingEvaluator
+        implements Evaluator {
+  final Evaluator     evaluator;
+  final AtomicInteger calls       = new AtomicInteger();
+  final AtomicInteger inFlight    = new AtomicInteger();
+  final AtomicInteger maxInFlight = new AtomicInteger();
+  final AtomicInteger maxCall     = new AtomicInteger();
+
+  CountingEvaluator(Evaluator evaluator) {
+    this.evaluator = evaluator;
+  }
+
+  @Override
+  public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> evaluationGroups) {
+    List<EvaluationGroup> groups = evaluationGroups.collect(Collectors.toList());
+    calls.incrementAndGet();
+    maxCall.accumulateAndGet(groups.size(), Math::max);
+    maxInFlight.accumulateAndGet(inFlight.addAndGet(groups.size()), Math::max);
+    try {
+      return evaluator.evaluate(groups.stream())
+                      .collect(Collectors.toList())
+                      .stream();
+    } finally {
+      inFlight.addAndGet(-groups.size());
+    }
+  }
+
+  @Override
+  public void beginGeneration(Environment env) {
+    evaluator.beginGeneration(env);
+  }
+
+  @Override
+  public void close() {
+    evaluator.close();
+  }
+
+  @Override
+  public void readXMLConfig(Element e) {
+  }
+
+  @Override
+  public void writeXMLConfig(Element e) {
+  }
+
+  @Override
+  public void resumeFromCheckpoint() {
+  }
+}
+
+@Test
+public void testStreamingEvaluatesInChunks() {
+  Environment env = MaximumValueFixture.load(folder.getRoot());
+  try {
+    CountingEvaluator counting = new CountingEvaluator(env.evaluator);
+    env.evaluator = counting;
+    env.setMaxGroupsInFlight(40);
+    int dispatchers = Math.min(40, Runtime.getRuntime().availableProcessors());
+    int chunkSize = 40 / dispatchers;
+
+    env.evolve();
+    ExecutorService pool = env.dispatchers;
+    assertNotNull(pool);
+    // 1000 groups, in full chunks except perhaps the last
+    assertEquals(chunkSize, counting.maxCall.get());
+    assertEquals((1000 + chunkSize - 1) / chunkSize, counting.calls.get());
+    assertTrue(counting.maxInFlight.get() <= 40);
+
+    // The dispatchers are kept from one generation to the next
+    env.evolve();
+    assertSame(pool, env.dispatchers);
+  } finally {
+    env.close();
+  }
+  assertNull(env.dispatchers);
+}
+
 }
@@ -0,0 +1,68 @@
+package agency;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import agency.data.ModelSummaryData;
+import agency.reproduce.BreedingPipeline;
+
+/**
+ * The Environment of test/agency/models/MaximumValueTest.xml, for tests that
+ * need a small population evolving under a cheap, deterministic model.  Tests
+ * replace the part they are about, e.g., the Evaluator or the
+ * EvaluationGroupFactory, in code.
+ * <p>
+ * The Environment has 50 individuals with genomes of length 10, and 1000
+ * groups of 10 agents, so that each individual is evaluated 200 times per
+ * generation.
+ */
+public class MaximumValueFixture {
+
+public static final String FILE = "test/agency/models/MaximumValueTest.xml";
+
+/**
+ * @return The Environment, with the file of every element that has one, e.g.,
+ * the model summary output, moved into a directory, and without the model
+ * summary output itself, so that groups are not written anywhere
+ */
+public static Environment load(File outputDir) {
+  Environment env;
+  try {
+    Document doc = Config.getDocBuilder().parse(new File(FILE));
+    NodeList elements = doc.getElementsByTagName("*");
+    for (int i = 0; i < elements.getLength(); i++) {
+      Element e = (Element) elements.item(i);
+      if (e.hasAttribute("file")) {
+        String fileName = new File(e.getAttribute("file")).getName();
+        e.setAttribute("file", new File(outputDir, fileName).getPath());
+      }
+    }
+    env = (Environment) Config.initializeXMLConfigurable(
+            doc.getDocumentElement());
+  } catch (SAXException | IOException e) {
+    throw new RuntimeException("Could not load " + FILE, e);
+  }
+  for (ModelSummaryData msd : env.modelSummaryDataOutputs)
+    msd.close();
+  env.modelSummaryDataOutputs.clear();
+  return env;
+}
+
+/**
+ * Replaces the BreedingPipeline of every Population in the Environment.
+ */
+public static void setBreedingPipeline(Environment env, BreedingPipeline bp) {
+  for (PopulationGroup pg : env.getPopulationGroups()) {
+    for (Population p : pg.getPopulations()) {
+      p.breedingPipeline = bp;
+      p.compiledPipeline = null;
+    }
+  }
+}
+
+}
@@ -1,15 +1,25 @@
 package agency.data;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.*;
+
 /**
  * Created by liara on 9/27/16.
  */
 public class DataOutputTest {
 
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
 @Test
 public void testOutput() {
 
@@ -29,6 +39,28 @@ public void testOutput() {
 
 }
 
+/**
+ * AgencyData passed as an Object, e.g., by DefaultModelSummaryData, goes
+ * through the DefaultDataObjectManager.
+ */
+@Test
+public void testAgencyDataAsObject() throws Exception {
+  File f = new File(folder.getRoot(), "DataOutputTest.csv");
+  DataOutput out = new DataOutput(f.getPath());
+  out.setPrefixHeaders(new String[]{"Generation"});
+  DataClass dc = new DataClass();
+  for (int i = 0; i < 3; i++) {
+    dc.x = i;
+    Object o = dc;
+    out.write(o, i);
+  }
+  out.close();
+
+  List<String> lines = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+  assertEquals(4, lines.size());
+  assertEquals("0,0,0,", lines.get(1));
+}
+
 
 public class DataClass implements AgencyData {
   public int x;
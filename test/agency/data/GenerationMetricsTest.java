@@ -0,0 +1,112 @@
+package agency.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.MaximumValueFixture;
+import agency.data.GenerationMetrics.Phase;
+import agency.eval.EvaluationGroup;
+import agency.eval.LocalEvaluator;
+
+public class GenerationMetricsTest {
+
+static final String FILE = "GenerationMetricsTest.csv";
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment env;
+File        file;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+  file = new File(folder.getRoot(), FILE);
+  env.setGenerationMetrics(new GenerationMetrics(file.getPath()));
+}
+
+@After
+public void tearDown() throws Exception {
+  if (env != null)
+    env.close();
+}
+
+@Test
+public void testRecordsEachGeneration() throws Exception {
+  env.evolve();
+  env.evolve();
+
+  GenerationMetrics metrics = env.getGenerationMetrics();
+  // 1000 groups of 10
+  assertEquals(1000, metrics.getGroups());
+  assertEquals(10000, metrics.getEvaluations());
+  assertTrue(metrics.getWallNanos(Phase.EVALUATE) > 0);
+  assertTrue(metrics.getWallNanos(Phase.REPRODUCE) > 0);
+  assertEquals(0, metrics.getWallNanos(Phase.CHECKPOINT));
+  assertTrue(metrics.getGroupsPerSecond() > 0);
+
+  env.close();
+  env = null;
+  List<String> lines = Files.readAllLines(file.toPath(),
+                                          StandardCharsets.UTF_8);
+  assertEquals(3, lines.size());
+  String[] headers = lines.get(0).split(",");
+  assertEquals("Generation", headers[0]);
+  assertEquals("createWallMillis", headers[1]);
+  assertEquals("evaluationsPerSecond", headers[headers.length - 1]);
+  assertTrue(lines.get(2).startsWith("1,"));
+  assertEquals(headers.length, lines.get(2).split(",").length);
+}
+
+@Test
+public void testStreamedEvaluationTimedAsAWhole() {
+  env.evolve();
+  GenerationMetrics metrics = env.getGenerationMetrics();
+  assertEquals(metrics.getWallNanos(Phase.EVALUATE),
+               metrics.getEvaluationWallNanos());
+
+  env.setMaxGroupsInFlight(20);
+  env.evolve();
+  // From the first group handed to the evaluator to the last evaluated
+  long wall = metrics.getEvaluationWallNanos();
+  assertTrue(wall > 0);
+  assertEquals(1000 * 1e9 / wall, metrics.getGroupsPerSecond(), 1e-6);
+  assertEquals(10000 * 1e9 / wall, metrics.getEvaluationsPerSecond(), 1e-6);
+}
+
+@Test
+public void testFailedGenerationIsAbandoned() {
+  env.evaluator.close();
+  env.evaluator = new LocalEvaluator() {
+    @Override
+    public Stream<EvaluationGroup> evaluate(Stream<EvaluationGroup> egs) {
+      throw new IllegalStateException("Evaluation failed");
+    }
+  };
+  try {
+    env.evolve();
+    fail("The evaluator should have thrown");
+  } catch (IllegalStateException expected) {
+    // Expected
+  }
+
+  // The phase left open by the failure does not stop the next generation
+  env.evaluator = new LocalEvaluator();
+  env.evolve();
+  assertEquals(1000, env.getGenerationMetrics().getGroups());
+  assertEquals(1, env.getGeneration());
+}
+
+}
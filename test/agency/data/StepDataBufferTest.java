@@ -0,0 +1,244 @@
+package agency.data;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import agency.Agent;
+import agency.Config;
+import agency.Fitness;
+import agency.StepDataRecordingModel;
+import agency.eval.EvaluationGroup;
+
+public class StepDataBufferTest {
+
+@Test
+public void testColumnsKeepDeclarationOrder() {
+  StepDataLayout layout = new StepDataLayout();
+  int a = layout.addDouble("a");
+  int b = layout.addLong("b");
+  int c = layout.addDouble("c");
+  assertEquals(0, a);
+  assertEquals(0, b);
+  assertEquals(1, c);
+
+  StepDataBuffer buffer = layout.acquire(4);
+  buffer.setDouble(a, 2, 1.5d);
+  buffer.setLong(b, 2, 7L);
+  buffer.setDouble(c, 2, -1d);
+  assertEquals(3, buffer.getSteps());
+
+  StepDataBuffer.StepView view = buffer.view();
+  view.setStep(2);
+  assertEquals(Arrays.asList("a", "b", "c"), view.getHeaders());
+  assertEquals(Arrays.<Object>asList(1.5d, 7L, -1d), view.getValues());
+}
+
+@Test
+public void testRingRetainsMostRecentSteps() {
+  StepDataLayout layout = new StepDataLayout(3);
+  int x = layout.addLong("x");
+  StepDataBuffer buffer = layout.acquire(10);
+  for (int step = 0; step < 10; step++)
+    buffer.setLong(x, step, step * 10);
+
+  assertEquals(10, buffer.getSteps());
+  assertEquals(7, buffer.getFirstStep());
+  for (int step = 7; step < 10; step++)
+    assertEquals(step * 10, buffer.getLong(x, step));
+}
+
+@Test
+public void testReleasedBuffersAreReused() {
+  StepDataLayout layout = new StepDataLayout();
+  int x = layout.addDouble("x");
+  StepDataBuffer first = layout.acquire(5);
+  first.setDouble(x, 4, 1d);
+  first.release();
+
+  StepDataBuffer second = layout.acquire(5);
+  assertSame(first, second);
+  assertEquals(0, second.getSteps());
+
+  // A buffer of the wrong size is not reused
+  second.release();
+  assertNotSame(second, layout.acquire(6));
+}
+
+@Test
+public void testDefaultModelPerStepDataWritesRetainedSteps() throws Exception {
+  File file = File.createTempFile("StepDataBufferTest", ".csv");
+  file.deleteOnExit();
+  DefaultModelPerStepData out = (DefaultModelPerStepData)
+          Config.getXMLConfigurableFromString(
+                  "<DefaultModelPerStepData file=\"" + file.getPath() + "\"/>");
+
+  StepDataLayout layout = new StepDataLayout(2);
+  int price = layout.addDouble("Price");
+  int units = layout.addLong("Units");
+  StepDataBuffer buffer = layout.acquire(3);
+  for (int step = 0; step < 3; step++) {
+    buffer.setDouble(price, step, step + 0.5d);
+    buffer.setLong(units, step, step);
+  }
+  UUID model = UUID.randomUUID();
+  out.writeStepData(4, model, buffer);
+  out.close();
+
+  List<String> lines = Files.readAllLines(file.toPath(),
+                                          StandardCharsets.UTF_8);
+  assertEquals(Arrays.asList("Generation,Model,Step,Price,Units",
+                             "4," + model + ",1,1.5,1",
+                             "4," + model + ",2,2.5,2"),
+               lines);
+}
+
+@Test
+public void testDefaultWriteStepDataCopiesEachStep() {
+  List<EvaluationGroup.PerStepData> written = new ArrayList<>();
+  ModelPerStepData out = new ModelPerStepData() {
+    @Override
+    public void writePerStepData(int generation, UUID modelUUID,
+                                 List<EvaluationGroup.PerStepData> data) {
+      written.addAll(data);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void readXMLConfig(Element e) {
+    }
+
+    @Override
+    public void writeXMLConfig(Element e) {
+    }
+
+    @Override
+    public void resumeFromCheckpoint() {
+    }
+  };
+
+  StepDataLayout layout = new StepDataLayout(2);
+  int price = layout.addDouble("Price");
+  StepDataBuffer buffer = layout.acquire(3);
+  for (int step = 0; step < 3; step++)
+    buffer.setDouble(price, step, step + 0.5d);
+  out.writeStepData(4, UUID.randomUUID(), buffer);
+
+  // The buffer is reused once released; what was written must not change
+  buffer.release();
+  layout.acquire(3).setDouble(price, 1, -1d);
+
+  assertEquals(2, written.size());
+  for (int i = 0; i < 2; i++) {
+    EvaluationGroup.PerStepData psd = written.get(i);
+    assertEquals(i + 1, psd.step);
+    AgencyData row = (AgencyData) psd.data;
+    assertEquals(Arrays.asList("Price"), row.getHeaders());
+    assertEquals(Arrays.<Object>asList(i + 1.5d), row.getValues());
+  }
+}
+
+/**
+ * Records its step number into the buffer, if it is given one.
+ */
+static class RecordingModel
+        implements StepDataRecordingModel {
+  static final StepDataLayout LAYOUT = new StepDataLayout();
+  static final int            STEP   = LAYOUT.addLong("Step");
+
+  StepDataBuffer buffer;
+  int            steps;
+
+  @Override
+  public StepDataLayout getStepDataLayout() {
+    return LAYOUT;
+  }
+
+  @Override
+  public void setStepDataBuffer(StepDataBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public boolean step() {
+    if (buffer != null)
+      buffer.setLong(STEP, steps, steps);
+    steps++;
+    return false;
+  }
+
+  @Override
+  public int getMaxSteps() {
+    return 3;
+  }
+
+  @Override
+  public Object getSummaryData() {
+    return steps;
+  }
+
+  @Override
+  public void addAgent(Agent<?, ?> agent) {
+  }
+
+  @Override
+  public Fitness getFitness(Agent<?, ?> agent) {
+    return null;
+  }
+
+  @Override
+  public Object getAgentDetails(Agent<?, ?> agent) {
+    return null;
+  }
+
+  @Override
+  public void init() {
+  }
+
+  @Override
+  public void finish() {
+  }
+
+  @Override
+  public Object getStepData() {
+    return null;
+  }
+
+  @Override
+  public void enableDebug(PrintStream out) {
+  }
+}
+
+@Test
+public void testBufferOnlyAcquiredWhenRecording() {
+  EvaluationGroup recorded = new EvaluationGroup();
+  recorded.setModel(new RecordingModel());
+  recorded.run();
+  StepDataBuffer buffer = recorded.getStepDataBuffer();
+  assertNotNull(buffer);
+  assertEquals(3, buffer.getSteps());
+  assertEquals(2L, buffer.getLong(RecordingModel.STEP, 2));
+  recorded.releaseStepData();
+
+  EvaluationGroup unrecorded = new EvaluationGroup();
+  unrecorded.setRecordStepData(false);
+  unrecorded.setModel(new RecordingModel());
+  unrecorded.run();
+  assertNull(unrecorded.getStepDataBuffer());
+  assertEquals(3, unrecorded.getSummaryData());
+}
+
+}
@@ -0,0 +1,122 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.MaximumValueFixture;
+import agency.SimpleFitness;
+import agency.reproduce.TournamentSelector;
+import agency.vector.DoubleVectorIndividual;
+
+public class CachingEvaluatorTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment      env;
+CachingEvaluator evaluator;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+  // Without mutation or crossover, so that offspring are clones
+  MaximumValueFixture.setBreedingPipeline(env, new TournamentSelector(2, 1));
+  env.evaluator.close();
+  evaluator = new CachingEvaluator(new LocalEvaluator(), 1000);
+  env.evaluator = evaluator;
+}
+
+@After
+public void tearDown() throws Exception {
+  env.close();
+}
+
+private List<EvaluationGroup> evaluate() {
+  evaluator.beginGeneration(env);
+  return evaluator
+          .evaluate(env.getEvaluationGroupFactory().createEvaluationGroups(env))
+          .collect(Collectors.toList());
+}
+
+@Test
+public void testSecondEvaluationSkipsGroups() {
+  List<EvaluationGroup> first = evaluate();
+  assertEquals(0, evaluator.getGroupsSkipped());
+  assertEquals(1000, evaluator.getGroupsEvaluated());
+  assertEquals(50, evaluator.size());
+
+  Map<Individual, Fitness> firstFitness = new IdentityHashMap<>();
+  for (EvaluationGroup eg : first)
+    firstFitness.putAll(eg.getResults());
+
+  // Same population, so every genome is now cached
+  List<EvaluationGroup> second = evaluate();
+  assertEquals(1000, evaluator.getGroupsSkipped());
+  assertEquals(1000, evaluator.getGroupsEvaluated());
+  assertEquals(0.5, evaluator.getHitRate(), 1e-9);
+
+  for (EvaluationGroup eg : second) {
+    assertTrue(eg.finished);
+    for (Map.Entry<Individual, Fitness> entry : eg.getResults().entrySet()) {
+      SimpleFitness expected = (SimpleFitness) firstFitness.get(entry.getKey());
+      SimpleFitness actual = (SimpleFitness) entry.getValue();
+      assertNotSame(expected, actual);
+      assertEquals(expected.getAverageFitness(), actual.getAverageFitness(),
+                   0d);
+    }
+  }
+}
+
+@Test
+public void testClonesHitAcrossGenerations() {
+  // Tournament selection without mutation only produces clones.
+  env.evolve();
+  long evaluatedAfterFirst = evaluator.getGroupsEvaluated();
+  env.evolve();
+  assertEquals(evaluatedAfterFirst, evaluator.getGroupsEvaluated());
+  assertEquals(1000, evaluator.getGroupsSkipped());
+}
+
+@Test
+public void testEviction() {
+  CachingEvaluator small = new CachingEvaluator(new LocalEvaluator(), 10);
+  small.beginGeneration(env);
+  small.evaluate(env.getEvaluationGroupFactory().createEvaluationGroups(env))
+       .collect(Collectors.toList());
+  assertEquals(10, small.size());
+}
+
+@Test
+public void testGenomeKeyByContent() {
+  CachingEvaluator.GenomeKey a =
+          new CachingEvaluator.GenomeKey(Arrays.asList(1.0d, 2.0d));
+  CachingEvaluator.GenomeKey b =
+          new CachingEvaluator.GenomeKey(Arrays.asList(1.0d, 2.0d));
+  CachingEvaluator.GenomeKey c =
+          new CachingEvaluator.GenomeKey(Arrays.asList(2.0d, 1.0d));
+  assertEquals(a, b);
+  assertEquals(a.hashCode(), b.hashCode());
+  assertNotEquals(a, c);
+
+  // A primitive genome's view matches its boxed genes
+  CachingEvaluator.GenomeKey view = new CachingEvaluator.GenomeKey(
+          new DoubleVectorIndividual(new double[]{1.0d, 2.0d}).geneView());
+  assertEquals(a, view);
+  assertEquals(a.hashCode(), view.hashCode());
+}
+
+}
@@ -0,0 +1,174 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Config;
+import agency.Environment;
+import agency.MaximumValueFixture;
+
+public class ChunkedParallelEvaluatorTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment env;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+}
+
+@After
+public void tearDown() throws Exception {
+  env.close();
+}
+
+/**
+ * @return The first n of the environment's groups, evaluated in one
+ * generation
+ */
+private List<EvaluationGroup> evaluate(ChunkedParallelEvaluator evaluator,
+                                       int n) {
+  evaluator.beginGeneration(env);
+  return evaluator
+          .evaluate(env.getEvaluationGroupFactory()
+                       .createEvaluationGroups(env)
+                       .limit(n))
+          .collect(Collectors.toList());
+}
+
+private static int total(ChunkedParallelEvaluator evaluator,
+                         boolean chunks) {
+  int total = 0;
+  for (ChunkedParallelEvaluator.WorkerStatistics ws :
+          evaluator.getWorkerStatistics().values())
+    total += chunks ? ws.getChunks() : ws.getGroups();
+  return total;
+}
+
+@Test
+public void testChunks() {
+  ChunkedParallelEvaluator evaluator = new ChunkedParallelEvaluator(2, 16);
+  try {
+    // Halved until no more than chunkSize: 100 -> 50 -> 25 -> 12 or 13
+    for (EvaluationGroup eg : evaluate(evaluator, 100))
+      assertTrue(eg.finished);
+    assertEquals(8, total(evaluator, true));
+    assertEquals(100, total(evaluator, false));
+
+    evaluate(evaluator, 16);
+    assertEquals(1, total(evaluator, true));
+    evaluate(evaluator, 17);
+    assertEquals(2, total(evaluator, true));
+  } finally {
+    evaluator.close();
+  }
+
+  ChunkedParallelEvaluator single = new ChunkedParallelEvaluator(2, 1);
+  try {
+    evaluate(single, 100);
+    assertEquals(100, total(single, true));
+  } finally {
+    single.close();
+  }
+}
+
+@Test
+public void testEveryWorkerReported() {
+  ChunkedParallelEvaluator evaluator = new ChunkedParallelEvaluator(4, 16);
+  try {
+    // One chunk, so only one worker runs anything
+    evaluate(evaluator, 1);
+    Map<String, ChunkedParallelEvaluator.WorkerStatistics> stats =
+            evaluator.getWorkerStatistics();
+    for (int i = 0; i < 4; i++)
+      assertTrue(stats.containsKey(ChunkedParallelEvaluator.WORKER_NAME + i));
+    assertEquals(1, total(evaluator, false));
+    for (ChunkedParallelEvaluator.WorkerStatistics ws : stats.values())
+      assertTrue(ws.getUtilization() >= 0d && ws.getUtilization() <= 1d);
+  } finally {
+    evaluator.close();
+  }
+}
+
+@Test
+public void testExceptionDoesNotStopOtherGroups() {
+  ChunkedParallelEvaluator evaluator = new ChunkedParallelEvaluator(2, 4);
+  try {
+    evaluator.beginGeneration(env);
+    // A group without a model throws when run
+    EvaluationGroup broken = new EvaluationGroup();
+    List<EvaluationGroup> groups = evaluator
+            .evaluate(Stream.concat(
+                    Stream.of(broken),
+                    env.getEvaluationGroupFactory()
+                       .createEvaluationGroups(env)
+                       .limit(20)))
+            .collect(Collectors.toList());
+    assertEquals(21, groups.size());
+    assertFalse(broken.finished);
+    for (EvaluationGroup eg : groups.subList(1, groups.size()))
+      assertTrue(eg.finished);
+  } finally {
+    evaluator.close();
+  }
+}
+
+@Test
+public void testConfigAndOneLinePerGeneration() throws Exception {
+  File file = new File(folder.getRoot(), "workers.csv");
+  ChunkedParallelEvaluator evaluator = (ChunkedParallelEvaluator)
+          Config.getXMLConfigurableFromString(
+                  "<ChunkedParallelEvaluator threads=\"2\" chunkSize=\"8\" " +
+                  "file=\"" + file.getPath() + "\"/>");
+  assertEquals(Integer.valueOf(2), evaluator.threads);
+  assertEquals(8, evaluator.chunkSize);
+
+  env.evaluator.close();
+  env.evaluator = evaluator;
+  // Several calls to evaluate() per generation
+  env.setMaxGroupsInFlight(300);
+  env.evolve();
+  env.evolve();
+  env.close();
+
+  List<String> lines = Files.readAllLines(file.toPath(),
+                                          StandardCharsets.UTF_8);
+  // A header, then one line per worker per generation
+  assertEquals(5, lines.size());
+  assertTrue(lines.get(0).startsWith("generation,worker,"));
+  assertTrue(lines.get(1).startsWith("0,"));
+  assertTrue(lines.get(2).startsWith("0,"));
+  assertTrue(lines.get(3).startsWith("1,"));
+  assertTrue(lines.get(4).startsWith("1,"));
+}
+
+@Test
+public void testInvalidConfig() {
+  for (String attributes : new String[]{"threads=\"0\"", "chunkSize=\"0\"",
+                                        "chunkSize=\"x\""}) {
+    try {
+      Config.getXMLConfigurableFromString(
+              "<ChunkedParallelEvaluator " + attributes + "/>");
+      fail(attributes + " should be rejected");
+    } catch (RuntimeException expected) {
+      // Expected
+    }
+  }
+}
+
+}
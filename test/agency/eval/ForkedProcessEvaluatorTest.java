@@ -0,0 +1,88 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.MaximumValueFixture;
+import agency.SimpleFitness;
+import agency.vector.VectorIndividual;
+
+public class ForkedProcessEvaluatorTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment            env;
+ForkedProcessEvaluator evaluator;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+  env.evaluator.close();
+  evaluator = new ForkedProcessEvaluator(2, 50);
+  env.evaluator = evaluator;
+}
+
+@After
+public void tearDown() throws Exception {
+  env.close();
+}
+
+@Test
+public void testFitnessMatchesGenome() {
+  evaluator.beginGeneration(env);
+  List<EvaluationGroup> groups = evaluator
+          .evaluate(env.getEvaluationGroupFactory().createEvaluationGroups(env))
+          .collect(Collectors.toList());
+
+  assertEquals(1000, groups.size());
+  for (EvaluationGroup eg : groups) {
+    assertTrue(eg.finished);
+    assertFalse(eg.getResults().isEmpty());
+    for (Map.Entry<Individual, Fitness> entry : eg.getResults().entrySet()) {
+      // MaximumValue's fitness is the sum of the genome times scalingFactor
+      VectorIndividual<?> ind = (VectorIndividual<?>) entry.getKey();
+      double sum = 0;
+      for (int i = 0; i < ind.getGenomeLength(); i++)
+        sum += ind.getDouble(i);
+      // ... kept positive
+      if (sum <= 0)
+        sum = Double.MIN_NORMAL;
+      SimpleFitness sf = (SimpleFitness) entry.getValue();
+      assertEquals(1, sf.getNumSamples());
+      assertEquals(sum * 2.0, sf.getAverageFitness(), 1e-9);
+      // The squared total comes back too, or racing would see no variance
+      assertEquals(sum * 2.0 * sum * 2.0, sf.getTotalSquaredFitness(), 1e-9);
+    }
+  }
+  assertEquals(2, evaluator.getNumWorkers());
+  assertEquals(0, evaluator.getRestarts());
+}
+
+@Test
+public void testEvolve() {
+  env.evolve();
+  env.evolve();
+  assertEquals(2, env.getGeneration());
+  assertEquals(0, evaluator.getRestarts());
+}
+
+@Test(expected = UnsupportedOperationException.class)
+public void testRequiresBeginGeneration() {
+  new ForkedProcessEvaluator(1, 1).evaluate(Stream.empty());
+}
+
+}
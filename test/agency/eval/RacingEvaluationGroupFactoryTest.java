@@ -0,0 +1,146 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.MaximumValueFixture;
+import agency.Population;
+import agency.SimpleFitness;
+
+public class RacingEvaluationGroupFactoryTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment                  env;
+RacingEvaluationGroupFactory factory;
+Population                   pop;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+  factory = new RacingEvaluationGroupFactory();
+  factory.numAgentsFrom.put("test", 10);
+  factory.maxGroups = 1000;
+  factory.waveGroups = 50;
+  factory.minSamples = 20;
+  env.setEvaluationGroupFactory(factory);
+  pop = env.getPopulationGroups().get(0).getPopulations().get(0);
+}
+
+@After
+public void tearDown() throws Exception {
+  env.close();
+}
+
+/**
+ * @return n samples with the given mean and a sample variance of 1
+ */
+private static SimpleFitness samples(double mean, int n) {
+  double total = mean * n;
+  double totalSquared = n * mean * mean + (n - 1);
+  return new SimpleFitness(total, totalSquared, n);
+}
+
+@Test
+public void testDeterministicModelStopsAfterMinSamples() {
+  // 50 groups of 10 from 50 individuals is 10 samples each per wave.
+  // MaximumValue has no noise, so minSamples=20 is reached in two waves.
+  env.evolve();
+  assertEquals(2, factory.getWaves());
+  assertEquals(100, factory.getGroupsCreated());
+  assertEquals(0, factory.getRacing());
+}
+
+@Test
+public void testOnlyOverlappingIndividualsRace() {
+  factory.minSamples = 3;
+  Map<Individual, Fitness> fitnesses = Environment.newFitnessMap();
+  List<Individual> inds = pop.individuals;
+  fitnesses.put(inds.get(0), samples(0d, 10));
+  fitnesses.put(inds.get(1), samples(0.5d, 10));
+  for (int i = 2; i < inds.size(); i++)
+    fitnesses.put(inds.get(i), samples(i * 10d, 10));
+
+  boolean[] racing = factory.stillRacing(pop, fitnesses);
+  assertTrue(racing[0]);
+  assertTrue(racing[1]);
+  for (int i = 2; i < racing.length; i++)
+    assertFalse(racing[i]);
+
+  // One place of rank uncertainty is tolerable
+  factory.rankTolerance = 1;
+  racing = factory.stillRacing(pop, fitnesses);
+  for (boolean r : racing)
+    assertFalse(r);
+}
+
+@Test
+public void testUnderSampledIndividualsRace() {
+  factory.minSamples = 3;
+  Map<Individual, Fitness> fitnesses = Environment.newFitnessMap();
+  List<Individual> inds = pop.individuals;
+  for (int i = 0; i < inds.size(); i++)
+    fitnesses.put(inds.get(i), samples(i * 10d, 10));
+  fitnesses.put(inds.get(5), samples(50d, 2));
+
+  boolean[] racing = factory.stillRacing(pop, fitnesses);
+  assertTrue(racing[5]);
+  // Individual 5's rank is unknown, so everyone else's could still change
+  for (int i = 0; i < racing.length; i++)
+    assertTrue(racing[i]);
+}
+
+@Test
+public void testIdenticalClonesDoNotRace() {
+  factory.minSamples = 3;
+  Map<Individual, Fitness> fitnesses = Environment.newFitnessMap();
+  for (Individual ind : pop.individuals)
+    fitnesses.put(ind, new SimpleFitness(30d, 3));
+
+  for (boolean r : factory.stillRacing(pop, fitnesses))
+    assertFalse(r);
+}
+
+@Test
+public void testFirstWaveSamplesEveryIndividual() {
+  // 2 groups of 10 have places for only 20 of the 50 individuals
+  factory.waveGroups = 2;
+  Set<Individual> sampled = new HashSet<>();
+  factory.createEvaluationGroups(env).forEach(eg -> {
+    for (int i = 0; i < eg.numMembers(); i++)
+      sampled.add(eg.member(i));
+  });
+  assertEquals(5, factory.getGroupsCreated());
+  assertEquals(new HashSet<>(pop.individuals), sampled);
+
+  // Later waves are waveGroups groups
+  factory.nextWave(env, Environment.newFitnessMap());
+  assertEquals(7, factory.getGroupsCreated());
+}
+
+@Test
+public void testBudgetIsRespected() {
+  factory.createEvaluationGroups(env);
+  Map<Individual, Fitness> none = Environment.newFitnessMap();
+  int waves = 1;
+  while (factory.nextWave(env, none) != null)
+    waves++;
+  assertEquals(1000, factory.getGroupsCreated());
+  assertEquals(20, waves);
+}
+
+}
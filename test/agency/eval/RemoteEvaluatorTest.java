@@ -0,0 +1,87 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.Fitness;
+import agency.Individual;
+import agency.MaximumValueFixture;
+import agency.Population;
+import agency.PopulationGroup;
+
+public class RemoteEvaluatorTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment        env;
+EvaluationWorker[] workers;
+RemoteEvaluator    evaluator;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+
+  workers = new EvaluationWorker[2];
+  evaluator = new RemoteEvaluator();
+  for (int i = 0; i < workers.length; i++) {
+    workers[i] = new EvaluationWorker(0);
+    workers[i].start();
+    evaluator.addWorker("localhost", workers[i].getPort());
+  }
+}
+
+@After
+public void tearDown() throws Exception {
+  evaluator.close();
+  for (EvaluationWorker worker : workers)
+    worker.close();
+  env.close();
+}
+
+@Test
+public void testResultsMergedByIdentity() {
+  Set<Individual> population =
+          Collections.newSetFromMap(new IdentityHashMap<>());
+  for (PopulationGroup pg : env.getPopulationGroups())
+    for (Population p : pg.getPopulations())
+      population.addAll(p.individuals);
+
+  List<EvaluationGroup> groups = evaluator
+          .evaluate(env.getEvaluationGroupFactory().createEvaluationGroups(env))
+          .collect(Collectors.toList());
+
+  assertEquals(1000, groups.size());
+  for (EvaluationGroup eg : groups) {
+    assertTrue(eg.finished);
+    assertNotNull(eg.getSummaryData());
+    assertFalse(eg.getResults().isEmpty());
+    for (Map.Entry<Individual, Fitness> entry : eg.getResults().entrySet()) {
+      // Results must refer to this process's individuals, not copies.
+      assertTrue(population.contains(entry.getKey()));
+      assertNotNull(entry.getValue());
+    }
+  }
+}
+
+@Test
+public void testSkipsUnreachableWorker() {
+  workers[1].close();
+  evaluator.evaluate(env.getEvaluationGroupFactory().createEvaluationGroups(env))
+           .forEach(eg -> assertTrue(eg.finished));
+}
+
+}
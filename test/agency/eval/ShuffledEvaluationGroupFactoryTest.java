@@ -0,0 +1,113 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import agency.Environment;
+import agency.Individual;
+import agency.MaximumValueFixture;
+
+public class ShuffledEvaluationGroupFactoryTest {
+
+@Rule
+public TemporaryFolder folder = new TemporaryFolder();
+
+Environment env;
+
+@Before
+public void setUp() throws Exception {
+  env = MaximumValueFixture.load(folder.getRoot());
+}
+
+@After
+public void tearDown() throws Exception {
+  env.close();
+}
+
+@Test
+public void testEveryIndividualIsUsedEqually() {
+  // 1000 groups of 10 from 50 individuals
+  List<EvaluationGroup> groups = env.getEvaluationGroupFactory()
+                                    .createEvaluationGroups(env)
+                                    .collect(Collectors.toList());
+  assertEquals(1000, groups.size());
+
+  Map<Individual, Integer> counts = new IdentityHashMap<>();
+  for (EvaluationGroup eg : groups) {
+    assertEquals(10, eg.numMembers());
+    for (int i = 0; i < eg.numMembers(); i++)
+      counts.merge(eg.member(i), 1, Integer::sum);
+  }
+  assertEquals(50, counts.size());
+  for (int count : counts.values())
+    assertEquals(200, count);
+}
+
+@Test
+public void testAgentsAreCreatedWhenRun() {
+  EvaluationGroup eg = env.getEvaluationGroupFactory()
+                          .createEvaluationGroups(env)
+                          .findFirst().get();
+  assertTrue(eg.agents.isEmpty());
+  Individual first = eg.member(0);
+
+  eg.run();
+  assertEquals(10, eg.agents.size());
+  assertSame(first, eg.agents.get(0).getManager());
+  assertEquals(10, eg.getResults().size());
+}
+
+@Test
+public void testStreamIsSizedAndSplitsEvenly() {
+  Spliterator<EvaluationGroup> right = env.getEvaluationGroupFactory()
+                                          .createEvaluationGroups(env)
+                                          .spliterator();
+  assertTrue(right.hasCharacteristics(Spliterator.SIZED));
+  assertTrue(right.hasCharacteristics(Spliterator.SUBSIZED));
+  assertEquals(1000, right.getExactSizeIfKnown());
+
+  Spliterator<EvaluationGroup> left = right.trySplit();
+  assertEquals(500, left.getExactSizeIfKnown());
+  assertEquals(500, right.getExactSizeIfKnown());
+}
+
+@Test
+public void testParallelStreamCreatesEveryGroup() {
+  List<EvaluationGroup> groups = env.getEvaluationGroupFactory()
+                                    .createEvaluationGroups(env)
+                                    .parallel()
+                                    .peek(EvaluationGroup::run)
+                                    .collect(Collectors.toList());
+  assertEquals(1000, groups.size());
+  Map<Individual, Integer> counts = new IdentityHashMap<>();
+  for (EvaluationGroup eg : groups)
+    for (Individual ind : eg.getResults().keySet())
+      counts.merge(ind, 1, Integer::sum);
+  for (int count : counts.values())
+    assertEquals(200, count);
+}
+
+@Test
+public void testShuffledOrderIsConsecutivePermutations() {
+  int[] order = ShuffledEvaluationGroupFactory.shuffledOrder(4, 10);
+  for (int start = 0; start < order.length; start += 4) {
+    boolean[] seen = new boolean[4];
+    for (int i = start; i < Math.min(start + 4, order.length); i++) {
+      assertFalse(seen[order[i]]);
+      seen[order[i]] = true;
+    }
+  }
+}
+
+}
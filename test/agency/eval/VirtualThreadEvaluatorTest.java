@@ -0,0 +1,153 @@
+package agency.eval;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import agency.Agent;
+import agency.AgentModel;
+import agency.Config;
+import agency.Fitness;
+
+public class VirtualThreadEvaluatorTest {
+
+static final int GROUPS         = 20;
+static final int MAX_CONCURRENT = 3;
+
+/**
+ * A model whose steps block, as if waiting on another process, and that
+ * counts how many models are stepping at once.
+ */
+static class BlockingModel
+        implements AgentModel {
+  final AtomicInteger running;
+  final AtomicInteger maxRunning;
+  int steps;
+
+  BlockingModel(AtomicInteger running, AtomicInteger maxRunning) {
+    this.running = running;
+    this.maxRunning = maxRunning;
+  }
+
+  @Override
+  public boolean step() {
+    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+    try {
+      Thread.sleep(20);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      running.decrementAndGet();
+    }
+    steps++;
+    return false;
+  }
+
+  @Override
+  public int getMaxSteps() {
+    return 2;
+  }
+
+  @Override
+  public Object getSummaryData() {
+    return steps;
+  }
+
+  @Override
+  public void addAgent(Agent<?, ?> agent) {
+  }
+
+  @Override
+  public Fitness getFitness(Agent<?, ?> agent) {
+    return null;
+  }
+
+  @Override
+  public Object getAgentDetails(Agent<?, ?> agent) {
+    return null;
+  }
+
+  @Override
+  public void init() {
+  }
+
+  @Override
+  public void finish() {
+  }
+
+  @Override
+  public Object getStepData() {
+    return null;
+  }
+
+  @Override
+  public void enableDebug(PrintStream out) {
+  }
+}
+
+/**
+ * Evaluates groups of blocking models with the specified executor, and
+ * checks that no more than MAX_CONCURRENT ran at once and that all finished.
+ */
+private static void evaluateBlocking(ExecutorService executor) {
+  VirtualThreadEvaluator evaluator = new VirtualThreadEvaluator(MAX_CONCURRENT);
+  evaluator.executorService = executor;
+  AtomicInteger running = new AtomicInteger();
+  AtomicInteger maxRunning = new AtomicInteger();
+  List<EvaluationGroup> groups = new ArrayList<>();
+  for (int i = 0; i < GROUPS; i++) {
+    EvaluationGroup eg = new EvaluationGroup();
+    eg.setModel(new BlockingModel(running, maxRunning));
+    groups.add(eg);
+  }
+
+  try {
+    List<EvaluationGroup> evaluated = evaluator.evaluate(groups.stream())
+                                               .collect(Collectors.toList());
+    assertEquals(GROUPS, evaluated.size());
+    for (EvaluationGroup eg : evaluated) {
+      assertTrue(eg.finished);
+      assertEquals(2, eg.getSummaryData());
+    }
+  } finally {
+    evaluator.close();
+  }
+  assertEquals(0, running.get());
+  // Blocked groups overlap, up to the limit
+  assertEquals(MAX_CONCURRENT, maxRunning.get());
+}
+
+@Test
+public void testVirtualThreads() {
+  // Virtual threads where the JVM has them, otherwise the fallback
+  evaluateBlocking(VirtualThreadEvaluator.newVirtualThreadExecutor());
+}
+
+@Test
+public void testPlatformThreads() {
+  evaluateBlocking(VirtualThreadEvaluator.newPlatformThreadExecutor());
+}
+
+@Test
+public void testConfig() {
+  VirtualThreadEvaluator evaluator = (VirtualThreadEvaluator)
+          Config.getXMLConfigurableFromString(
+                  "<VirtualThreadEvaluator maxConcurrent=\"16\"/>");
+  assertEquals(16, evaluator.maxConcurrent);
+  try {
+    Config.getXMLConfigurableFromString(
+            "<VirtualThreadEvaluator maxConcurrent=\"0\"/>");
+    fail("maxConcurrent must be positive");
+  } catch (RuntimeException expected) {
+    // Expected
+  }
+}
+
+}
@@ -0,0 +1,131 @@
+package agency.models.cournot;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import agency.Agent;
+import agency.Config;
+import agency.DefaultAgentModelFactory;
+import agency.Individual;
+import agency.SimpleFirm;
+import agency.SimpleFitness;
+import agency.eval.EvaluationGroup;
+import agency.vector.VectorIndividual;
+
+public class BatchedCournotEvaluatorTest {
+
+static final String COURNOT =
+        "<DefaultAgentModelFactory modelClass=\"agency.models.cournot.CournotGame\">" +
+        "<Parameter name=\"demandConstant\" value=\"100\"/>" +
+        "<Parameter name=\"demandCoefficient\" value=\"1\"/>" +
+        "<Parameter name=\"minimumQuantity\" value=\"0.00001\"/>" +
+        "<Parameter name=\"maxSteps\" value=\"25\"/>" +
+        "</DefaultAgentModelFactory>";
+
+/**
+ * Not batchable, since it is a subclass
+ */
+public static class DoublingCournotAgent
+        extends DirectlyEncodedCournotAgent {
+  @Override
+  public double produceQty(CournotMarketInfo cmi) {
+    return 2 * super.produceQty(cmi);
+  }
+}
+
+static VectorIndividual<Double> individual(Random r) {
+  VectorIndividual<Double> ind = new VectorIndividual<>(4);
+  for (int i = 0; i < 4; i++)
+    ind.changeGene(i, r.nextDouble() * 40 - 5);
+  return ind;
+}
+
+/**
+ * @return Two identical lists of groups, with the same individuals
+ */
+static List<List<EvaluationGroup>> groups(DefaultAgentModelFactory factory) {
+  Random r = new Random(42);
+  List<Supplier<CournotAgent>> types = new ArrayList<>();
+  types.add(DirectlyEncodedCournotAgent::new);
+  types.add(EvolvingTriggerCournotAgent::new);
+  types.add(MimicCournotAgent::new);
+
+  List<EvaluationGroup> a = new ArrayList<>();
+  List<EvaluationGroup> b = new ArrayList<>();
+  for (int g = 0; g < 40; g++) {
+    EvaluationGroup ega = new EvaluationGroup();
+    EvaluationGroup egb = new EvaluationGroup();
+    ega.setModelFactory(factory);
+    egb.setModelFactory(factory);
+    int size = 2 + g % 3;
+    for (int i = 0; i < size; i++) {
+      VectorIndividual<Double> ind = individual(r);
+      int type = r.nextInt(3);
+      if (g == 7 && i == 0) {
+        ega.addAgent(withManager(new DoublingCournotAgent(), ind));
+        egb.addAgent(withManager(new DoublingCournotAgent(), ind));
+      } else {
+        ega.addAgent(withManager(types.get(type).get(), ind));
+        egb.addAgent(withManager(types.get(type).get(), ind));
+      }
+    }
+    a.add(ega);
+    b.add(egb);
+  }
+  List<List<EvaluationGroup>> both = new ArrayList<>();
+  both.add(a);
+  both.add(b);
+  return both;
+}
+
+static Agent withManager(CournotAgent agent, VectorIndividual<Double> ind) {
+  ((SimpleFirm<VectorIndividual<Double>, CournotGame>) agent).setManager(ind);
+  return (Agent) agent;
+}
+
+@Test
+public void testMatchesCournotGame() {
+  DefaultAgentModelFactory factory =
+          (DefaultAgentModelFactory) Config.getXMLConfigurableFromString(COURNOT);
+  List<List<EvaluationGroup>> both = groups(factory);
+  List<EvaluationGroup> expected = both.get(0);
+  for (EvaluationGroup eg : expected)
+    eg.run();
+
+  BatchedCournotEvaluator evaluator = new BatchedCournotEvaluator(factory, 4);
+  List<EvaluationGroup> actual = evaluator.evaluate(both.get(1).stream())
+                                          .collect(Collectors.toList());
+
+  assertEquals(expected.size(), actual.size());
+  for (int g = 0; g < expected.size(); g++) {
+    assertEquals(expected.get(g).getResults().size(),
+                 actual.get(g).getResults().size());
+    for (Individual ind : expected.get(g).getResults().keySet()) {
+      SimpleFitness e = (SimpleFitness) expected.get(g).getResults().get(ind);
+      SimpleFitness f = (SimpleFitness) actual.get(g).getResults().get(ind);
+      assertEquals(e.getAverageFitness(), f.getAverageFitness(), 0d);
+    }
+  }
+
+  // Only the unbatchable group was run by a CournotGame
+  assertNotNull(actual.get(7).getSummaryData());
+  assertNull(actual.get(8).getSummaryData());
+}
+
+@Test
+public void testReadsBatchSize() {
+  BatchedCournotEvaluator evaluator = (BatchedCournotEvaluator)
+          Config.getXMLConfigurableFromString(
+                  "<Evaluator type=\"agency.models.cournot.BatchedCournotEvaluator\" " +
+                  "batchSize=\"16\"/>");
+  assertEquals(16, evaluator.batchSize);
+}
+
+}
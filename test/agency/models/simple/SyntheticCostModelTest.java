@@ -0,0 +1,93 @@
+package agency.models.simple;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import agency.Config;
+import agency.DefaultAgentModelFactory;
+import agency.Environment;
+import agency.NullAgent;
+import agency.SimpleFitness;
+import agency.eval.EvaluationGroup;
+import agency.vector.VectorIndividual;
+
+public class SyntheticCostModelTest {
+
+static SyntheticCostModel create(String variance) {
+  DefaultAgentModelFactory factory = (DefaultAgentModelFactory)
+          Config.getXMLConfigurableFromString(
+                  "<DefaultAgentModelFactory modelClass=\"agency.models.simple.SyntheticCostModel\">" +
+                  "<Parameter name=\"maxSteps\" value=\"4\"/>" +
+                  "<Parameter name=\"workPerAgentStep\" value=\"50\"/>" +
+                  "<Parameter name=\"bytesPerAgentStep\" value=\"128\"/>" +
+                  "<Parameter name=\"costVariance\" value=\"" + variance + "\"/>" +
+                  "</DefaultAgentModelFactory>");
+  return (SyntheticCostModel) factory.createAgentModel();
+}
+
+static NullAgent agent(double... genes) {
+  VectorIndividual<Double> ind = new VectorIndividual<>(genes.length);
+  for (int i = 0; i < genes.length; i++)
+    ind.changeGene(i, genes[i]);
+  NullAgent agent = new NullAgent();
+  agent.setManager(ind);
+  return agent;
+}
+
+@Test
+public void testWorkScalesWithAgentsAndSteps() {
+  SyntheticCostModel model = create("0");
+  NullAgent a = agent(1, 2);
+  EvaluationGroup eg = new EvaluationGroup();
+  eg.addAgent(a);
+  eg.addAgent(agent(3));
+  eg.addAgent(agent(4));
+  eg.setModel(model);
+  eg.run();
+
+  // All maxSteps steps are run, not just the first
+  SyntheticCostModel.SummaryData sd =
+          (SyntheticCostModel.SummaryData) eg.getSummaryData();
+  assertEquals(1d, sd.costMultiplier, 0d);
+  assertEquals(4 * 3 * 50, sd.iterations);
+  assertEquals(4 * 3 * 128, sd.allocatedBytes);
+  assertEquals(3d, ((SimpleFitness) eg.getResults().get(a.getManager()))
+                           .getAverageFitness(), 1e-12);
+
+  model.reset();
+  assertEquals(0, model.agents.size());
+  assertEquals(0, model.iterations);
+}
+
+@Test
+public void testCostVariance() {
+  int n = 20_000;
+  double sum = 0d;
+  double sumSq = 0d;
+  for (int i = 0; i < n; i++) {
+    double m = SyntheticCostModel.drawMultiplier(0.5);
+    assertTrue(m > 0);
+    sum += m;
+    sumSq += m * m;
+  }
+  double mean = sum / n;
+  double sd = Math.sqrt(sumSq / n - mean * mean);
+  assertEquals(1d, mean, 0.05);
+  assertEquals(0.5, sd / mean, 0.05);
+}
+
+@Test
+public void testEvolves() {
+  Environment env = (Environment) Config.getXMLConfigurableFromFile(
+          "test/agency/models/simple/SyntheticCostModelTest.xml");
+  try {
+    for (int i = 0; i < 3; i++)
+      env.evolve();
+    assertEquals(3, env.getGeneration());
+  } finally {
+    env.close();
+  }
+}
+
+}
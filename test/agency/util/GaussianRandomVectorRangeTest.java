@@ -4,6 +4,8 @@ import agency.Config;
 import agency.XMLConfigurable;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 import java.util.Arrays;
 
 /**
@@ -36,5 +38,18 @@ public void basicTest() {
 
 }
 
+@Test
+public void testMeanTypeKept() {
+  RangedVector rv = (RangedVector) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<RangedVector length=\"3\">",
+                  "<GaussianRandomVectorRange start=\"0\" end=\"2\">",
+                  "<Means type=\"IntegerList\" start=\"0\" end=\"2\">1 2 3</Means>",
+                  "<Deviations type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"0\"/>",
+                  "</GaussianRandomVectorRange>",
+                  "</RangedVector>"));
+  assertArrayEquals(new Object[]{1, 2, 3}, rv.createVector());
+}
+
 
 }
@@ -4,6 +4,8 @@ import agency.Config;
 import agency.XMLConfigurable;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 /**
  * Created by liara on 11/4/16.
  */
@@ -26,5 +28,28 @@ public void basicTest() {
   System.out.println(xc);
 }
 
+@Test
+public void testGet() {
+  RangedVector rv = (RangedVector) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<RangedVector length=\"8\">",
+                  "<DoubleList start=\"0\" end=\"2\">1.5 2.5 3.5</DoubleList>",
+                  "<RepeatingInteger start=\"3\" end=\"last\" value=\"7\"/>",
+                  "</RangedVector>"));
+  assertEquals(2.5, rv.get(1));
+  assertEquals(7, rv.get(3));
+  assertEquals(7, rv.get(7));
+  Object[] vector = rv.createVector();
+  assertEquals(8, vector.length);
+  assertEquals(3.5, vector[2]);
+  assertEquals(7, vector[7]);
+  try {
+    rv.get(8);
+    fail("Position 8 is not in the vector");
+  } catch (RuntimeException expected) {
+    // Expected
+  }
+}
+
 
 }
@@ -0,0 +1,192 @@
+package agency.vector;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import agency.Config;
+
+public class CrossoverPipelineTest {
+
+static final int LENGTH = 200;
+
+static final String SOURCE =
+        "<TournamentSelector tournamentSize=\"2\" topIndividuals=\"1\"/>";
+
+static VectorCrossoverPipeline pipeline(String tag, String attributes) {
+  return (VectorCrossoverPipeline) Config.getXMLConfigurableFromString(
+          "<" + tag + " crossoverProb=\"1\" " + attributes + ">" + SOURCE +
+          "</" + tag + ">");
+}
+
+/**
+ * @return Parents whose genes are 0 to LENGTH - 1 and -1 to -LENGTH, so that
+ * which parent each gene came from is its sign.
+ */
+static VectorIndividual<Object>[] parents(boolean primitive) {
+  double[] a = new double[LENGTH];
+  double[] b = new double[LENGTH];
+  for (int i = 0; i < LENGTH; i++) {
+    a[i] = i;
+    b[i] = -i - 1;
+  }
+  @SuppressWarnings("unchecked")
+  VectorIndividual<Object>[] parents = new VectorIndividual[2];
+  if (primitive) {
+    parents[0] = (VectorIndividual<Object>) (VectorIndividual<?>)
+            new DoubleVectorIndividual(a);
+    parents[1] = (VectorIndividual<Object>) (VectorIndividual<?>)
+            new DoubleVectorIndividual(b);
+  } else {
+    parents[0] = new VectorIndividual<>(LENGTH);
+    parents[1] = new VectorIndividual<>(LENGTH);
+    for (int i = 0; i < LENGTH; i++) {
+      parents[0].changeGene(i, a[i]);
+      parents[1].changeGene(i, b[i]);
+    }
+  }
+  return parents;
+}
+
+/**
+ * Crosses over copies of the parents, checks that each position of the
+ * children holds the parents' two genes for it and that the parents are
+ * unchanged, and returns which positions the first child took from the
+ * second parent.
+ */
+@SuppressWarnings("unchecked")
+static boolean[] cross(VectorCrossoverPipeline pipeline, boolean primitive,
+                       long seed) {
+  VectorIndividual<Object>[] parents = parents(primitive);
+  VectorIndividual<Object> child1 = (VectorIndividual<Object>) parents[0].copy();
+  VectorIndividual<Object> child2 = (VectorIndividual<Object>) parents[1].copy();
+  pipeline.crossover(child1, child2, new Random(seed));
+
+  boolean[] fromSecond = new boolean[LENGTH];
+  for (int i = 0; i < LENGTH; i++) {
+    assertEquals(i, parents[0].getDouble(i), 0d);
+    assertEquals(-i - 1, parents[1].getDouble(i), 0d);
+    double g1 = child1.getDouble(i);
+    double g2 = child2.getDouble(i);
+    fromSecond[i] = g1 < 0;
+    assertEquals(fromSecond[i] ? -i - 1 : i, g1, 0d);
+    assertEquals(fromSecond[i] ? i : -i - 1, g2, 0d);
+  }
+  return fromSecond;
+}
+
+/**
+ * @return The positions at which the source of the first child's genes
+ * changes
+ */
+static int switches(boolean[] fromSecond) {
+  int switches = fromSecond[0] ? 1 : 0;
+  for (int i = 1; i < fromSecond.length; i++)
+    if (fromSecond[i] != fromSecond[i - 1])
+      switches++;
+  return switches;
+}
+
+@Test
+public void testKPoint() {
+  for (boolean primitive : new boolean[]{false, true}) {
+    for (int k = 1; k <= 5; k++) {
+      VectorCrossoverPipeline p = pipeline("KPointCrossoverPipeline",
+                                           "points=\"" + k + "\"");
+      for (long seed = 0; seed < 20; seed++) {
+        boolean[] fromSecond = cross(p, primitive, seed);
+        assertFalse(fromSecond[0]);
+        assertEquals(k, switches(fromSecond));
+      }
+    }
+  }
+}
+
+@Test
+public void testKPointAllPoints() {
+  // Every other gene
+  VectorCrossoverPipeline p = pipeline("KPointCrossoverPipeline",
+                                       "points=\"" + (LENGTH - 1) + "\"");
+  boolean[] fromSecond = cross(p, false, 1);
+  for (int i = 0; i < LENGTH; i++)
+    assertEquals(i % 2 == 1, fromSecond[i]);
+}
+
+@Test
+public void testUniform() {
+  for (boolean primitive : new boolean[]{false, true}) {
+    VectorCrossoverPipeline p = pipeline("UniformCrossoverPipeline",
+                                         "swapProb=\"0.3\"");
+    int swapped = 0;
+    for (long seed = 0; seed < 20; seed++)
+      for (boolean b : cross(p, primitive, seed))
+        if (b)
+          swapped++;
+    // Within 5 standard deviations of 0.3 * 4000
+    assertEquals(1200, swapped, 5 * Math.sqrt(4000 * 0.3 * 0.7));
+  }
+
+  boolean[] none = cross(pipeline("UniformCrossoverPipeline", "swapProb=\"0\""),
+                         false, 1);
+  assertEquals(0, switches(none));
+  boolean[] all = cross(pipeline("UniformCrossoverPipeline", "swapProb=\"1\""),
+                        true, 1);
+  assertEquals(1, switches(all));
+  assertTrue(all[0]);
+}
+
+@Test
+public void testSegment() {
+  for (boolean primitive : new boolean[]{false, true}) {
+    VectorCrossoverPipeline p = pipeline("SegmentCrossoverPipeline",
+                                         "segmentLength=\"64\"");
+    for (long seed = 0; seed < 20; seed++) {
+      boolean[] fromSecond = cross(p, primitive, seed);
+      // Whole segments are exchanged, including the shorter last one
+      for (int i = 1; i < LENGTH; i++)
+        if (i % 64 != 0)
+          assertEquals(fromSecond[i - 1], fromSecond[i]);
+    }
+  }
+}
+
+@Test
+public void testExchangeUnshared() {
+  // Long runs go through the scratch buffer once neither genome is shared
+  for (boolean primitive : new boolean[]{false, true}) {
+    VectorIndividual<Object>[] parents = parents(primitive);
+    parents[0].exchangeGenes(parents[1], 10, 150);
+    parents[0].exchangeGenes(parents[1], 0, 5);
+    for (int i = 0; i < LENGTH; i++) {
+      boolean swapped = i < 5 || (i >= 10 && i < 150);
+      assertEquals(swapped ? -i - 1 : i, parents[0].getDouble(i), 0d);
+      assertEquals(swapped ? i : -i - 1, parents[1].getDouble(i), 0d);
+    }
+  }
+}
+
+@Test
+public void testConfig() {
+  try {
+    pipeline("SegmentCrossoverPipeline", "");
+    fail("segmentLength is required");
+  } catch (RuntimeException expected) {
+    // Expected
+  }
+  try {
+    pipeline("KPointCrossoverPipeline", "points=\"0\"");
+    fail("points must be positive");
+  } catch (RuntimeException expected) {
+    // Expected
+  }
+  try {
+    pipeline("UniformCrossoverPipeline", "swapProb=\"1.5\"");
+    fail("swapProb must be a probability");
+  } catch (RuntimeException expected) {
+    // Expected
+  }
+}
+
+}
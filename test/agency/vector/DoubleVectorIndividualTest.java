@@ -0,0 +1,356 @@
+package agency.vector;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import agency.Config;
+import agency.Environment;
+import agency.Individual;
+import agency.Population;
+import agency.PopulationGroup;
+import agency.SimpleFitness;
+import agency.reproduce.BreedingPipeline;
+
+public class DoubleVectorIndividualTest {
+
+static final String FACTORY = String.join("\n",
+        "<VectorIndividualFactory length=\"5\" genomeType=\"double\">",
+        " <GaussianRandomVectorRange start=\"0\" end=\"4\">",
+        "  <Means type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"10\"/>",
+        "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"0\"/>",
+        " </GaussianRandomVectorRange>",
+        "</VectorIndividualFactory>");
+
+static final String MUTATOR = String.join("\n",
+        "<VectorMutator length=\"5\">",
+        " <GaussianMutator start=\"0\" end=\"4\">",
+        "  <MutationProbability type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"1\"/>",
+        "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"1\"/>",
+        " </GaussianMutator>",
+        "</VectorMutator>");
+
+static final String LIMITER = String.join("\n",
+        "<VectorLimiter length=\"5\">",
+        " <RangeLimiter start=\"0\" end=\"4\">",
+        "  <Min type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"9.5\"/>",
+        "  <Max type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"10.5\"/>",
+        " </RangeLimiter>",
+        "</VectorLimiter>");
+
+static DoubleVectorIndividual create() {
+  VectorIndividualFactory vif =
+          (VectorIndividualFactory) Config.getXMLConfigurableFromString(FACTORY);
+  VectorIndividual<?> ind = vif.create();
+  assertTrue(ind instanceof DoubleVectorIndividual);
+  return (DoubleVectorIndividual) ind;
+}
+
+@Test
+public void testFactoryAndCopy() {
+  DoubleVectorIndividual ind = create();
+  assertEquals(5, ind.getGenomeLength());
+  assertEquals(10d, ind.getDouble(3), 0d);
+  assertEquals(Double.valueOf(10d), ind.gene(3));
+
+  DoubleVectorIndividual copy = (DoubleVectorIndividual) ind.copy();
+  assertNotEquals(ind.getUUID(), copy.getUUID());
+  copy.setDouble(3, 1d);
+  assertEquals(10d, ind.getDouble(3), 0d);
+  assertEquals(1d, copy.getDouble(3), 0d);
+
+  // getGenome() is a copy
+  ind.getGenome()[0] = -1d;
+  assertEquals(10d, ind.getDouble(0), 0d);
+}
+
+@Test
+public void testCopyOnWrite() {
+  DoubleVectorIndividual ind = create();
+  DoubleVectorIndividual copy = (DoubleVectorIndividual) ind.copy();
+  assertTrue(ind.shared);
+  assertTrue(copy.shared);
+
+  VectorMutator mutator =
+          (VectorMutator) Config.getXMLConfigurableFromString(MUTATOR);
+  mutator.mutate((VectorIndividual<Object>) (VectorIndividual<?>) copy);
+  assertFalse(copy.shared);
+  assertNotSame(ind.getDoubleGenome(), copy.getDoubleGenome());
+  for (int i = 0; i < 5; i++)
+    assertEquals(10d, ind.getDouble(i), 0d);
+}
+
+@Test
+public void testGeneViewReadsWithoutCopying() {
+  DoubleVectorIndividual ind = create();
+  DoubleVectorIndividual copy = (DoubleVectorIndividual) ind.copy();
+  List<Double> view = copy.geneView();
+  assertEquals(5, view.size());
+  assertEquals(Double.valueOf(10d), view.get(0));
+  assertTrue(copy.shared);
+  assertSame(ind.readGenome(), copy.readGenome());
+
+  // The view is read-only, but follows changes made through the individual
+  try {
+    view.set(0, 1d);
+    fail("The view should be read-only");
+  } catch (UnsupportedOperationException expected) {
+    // Expected
+  }
+  copy.setDouble(0, 1d);
+  assertEquals(Double.valueOf(1d), view.get(0));
+  assertEquals(10d, ind.getDouble(0), 0d);
+}
+
+@Test
+public void testMutateAndLimit() {
+  VectorMutator mutator =
+          (VectorMutator) Config.getXMLConfigurableFromString(MUTATOR);
+  VectorLimiter limiter =
+          (VectorLimiter) Config.getXMLConfigurableFromString(LIMITER);
+  DoubleVectorIndividual ind = create();
+
+  mutator.mutate((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  int changed = 0;
+  for (int i = 0; i < 5; i++)
+    if (ind.getDouble(i) != 10d)
+      changed++;
+  assertTrue(changed > 0);
+
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  for (int i = 0; i < 5; i++) {
+    assertTrue(ind.getDouble(i) >= 9.5);
+    assertTrue(ind.getDouble(i) <= 10.5);
+  }
+}
+
+@Test
+public void testLimitKeepsShared() {
+  VectorLimiter limiter =
+          (VectorLimiter) Config.getXMLConfigurableFromString(LIMITER);
+  DoubleVectorIndividual ind = create();
+  DoubleVectorIndividual copy = (DoubleVectorIndividual) ind.copy();
+  // Nothing is beyond the limits, so nothing is copied
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) copy);
+  assertTrue(copy.shared);
+
+  copy.setDouble(2, 12d);
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) copy);
+  assertEquals(10.5, copy.getDouble(2), 0d);
+  assertEquals(10d, ind.getDouble(2), 0d);
+}
+
+@Test
+public void testECacheInvalidated() {
+  DoubleVectorIndividual ind = create();
+  assertEquals(Math.exp(10d), ind.e(0), 0d);
+  ind.setDouble(0, 1d);
+  assertEquals(Math.exp(1d), ind.e(0), 0d);
+  ind.getDoubleGenome()[0] = 2d;
+  assertEquals(Math.exp(2d), ind.e(0), 0d);
+
+  // Mutating and limiting write to the array directly
+  VectorMutator mutator =
+          (VectorMutator) Config.getXMLConfigurableFromString(MUTATOR);
+  mutator.mutate((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  for (int i = 0; i < 5; i++)
+    assertEquals(Math.exp(ind.getDouble(i)), ind.e(i), 0d);
+  VectorLimiter limiter =
+          (VectorLimiter) Config.getXMLConfigurableFromString(LIMITER);
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  for (int i = 0; i < 5; i++)
+    assertEquals(Math.exp(ind.getDouble(i)), ind.e(i), 0d);
+}
+
+@Test
+public void testExchangeGenes() {
+  DoubleVectorIndividual a = new DoubleVectorIndividual(new double[]{0, 1, 2, 3});
+  DoubleVectorIndividual b = new DoubleVectorIndividual(new double[]{4, 5, 6, 7});
+  a.exchangeGenes(b, 1, 3);
+  assertArrayEquals(new double[]{0, 5, 6, 3}, a.getDoubleGenome(), 0d);
+  assertArrayEquals(new double[]{4, 1, 2, 7}, b.getDoubleGenome(), 0d);
+
+  // With a boxed individual
+  VectorIndividual<Double> c = new VectorIndividual<>(4);
+  for (int i = 0; i < 4; i++)
+    c.changeGene(i, 10d + i);
+  a.exchangeGenes(c, 0, 2);
+  assertArrayEquals(new double[]{10, 11, 6, 3}, a.getDoubleGenome(), 0d);
+  assertEquals(Double.valueOf(0d), c.gene(0));
+  assertEquals(Double.valueOf(5d), c.gene(1));
+}
+
+/**
+ * Crossover only exchanges genes, so the multiset of values at each position
+ * across both offspring is unchanged.
+ */
+@Test
+public void testCrossover() {
+  Population pop = (Population) Config.getXMLConfigurableFromString(
+          "<Population initialSize=\"2\"><NullAgentFactory/>" +
+          FACTORY.replace("value=\"0\"", "value=\"1\"") +
+          "<TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>" +
+          "</Population>");
+  for (Individual ind : pop.individuals)
+    ind.setFitness(new SimpleFitness(1d));
+  BreedingPipeline crossover = (BreedingPipeline) Config.getXMLConfigurableFromString(
+          "<VectorCrossoverPipeline crossoverProb=\"1.0\">" +
+          "<TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>" +
+          "</VectorCrossoverPipeline>");
+  crossover.setSourcePopulation(pop);
+
+  for (int n = 0; n < 20; n++) {
+    DoubleVectorIndividual a = (DoubleVectorIndividual) crossover.generate();
+    DoubleVectorIndividual b = (DoubleVectorIndividual) crossover.generate();
+    for (int i = 0; i < 5; i++) {
+      List<Double> parents = new ArrayList<>();
+      for (Individual p : pop.individuals)
+        parents.add(((DoubleVectorIndividual) p).getDouble(i));
+      assertTrue(parents.contains(a.getDouble(i)));
+      assertTrue(parents.contains(b.getDouble(i)));
+    }
+  }
+}
+
+/**
+ * Counts the copies made by getGenome() and the genes written back.
+ */
+static class CountingIndividual extends DoubleVectorIndividual {
+  private static final long serialVersionUID = 1L;
+  int copies;
+  int changes;
+
+  CountingIndividual(double[] genome) {
+    super(genome);
+  }
+
+  @Override
+  public Double[] getGenome() {
+    copies++;
+    return super.getGenome();
+  }
+
+  @Override
+  public void changeGene(int position, Double value) {
+    changes++;
+    super.changeGene(position, value);
+  }
+}
+
+@Test
+public void testDefaultRangeWritesOnlyChanges() {
+  // Negates the even positions only, through the Object[] methods
+  VectorValueMutator negateEven = new VectorValueMutator() {
+    @Override
+    public void mutate(Object[] genome, int pos) {
+      if (pos % 2 == 0)
+        genome[pos] = -(Double) genome[pos];
+    }
+
+    @Override
+    public void readXMLConfig(Element e) {
+    }
+
+    @Override
+    public void writeXMLConfig(Element e) {
+    }
+
+    @Override
+    public void resumeFromCheckpoint() {
+    }
+  };
+  CountingIndividual ind = new CountingIndividual(new double[]{1, 2, 3, 4, 5, 6});
+  negateEven.mutate(ind, 1, 5);
+  assertEquals(0, ind.copies);
+  assertEquals(2, ind.changes);
+  assertArrayEquals(new double[]{1, 2, -3, 4, -5, 6}, ind.readGenome(), 0d);
+
+  VectorValueLimiter atMostFour = new VectorValueLimiter() {
+    @Override
+    public void limit(Object[] genome, int pos) {
+      if ((Double) genome[pos] > 4d)
+        genome[pos] = 4d;
+    }
+
+    @Override
+    public void readXMLConfig(Element e) {
+    }
+
+    @Override
+    public void writeXMLConfig(Element e) {
+    }
+
+    @Override
+    public void resumeFromCheckpoint() {
+    }
+  };
+  ind.copies = ind.changes = 0;
+  atMostFour.limit(ind, 0, 5);
+  assertEquals(0, ind.copies);
+  assertEquals(1, ind.changes);
+  assertArrayEquals(new double[]{1, 2, -3, 4, -5, 4}, ind.readGenome(), 0d);
+}
+
+@Test
+public void testLimitWithoutMin() {
+  VectorLimiter limiter = (VectorLimiter) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorLimiter length=\"3\">",
+                  " <RangeLimiter start=\"0\" end=\"2\">",
+                  "  <Max type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"10\"/>",
+                  " </RangeLimiter>",
+                  "</VectorLimiter>"));
+  DoubleVectorIndividual ind = new DoubleVectorIndividual(new double[]{-5.5, 5, 50});
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  // Negative genes are not limited
+  assertArrayEquals(new double[]{-5.5, 5, 10}, ind.readGenome(), 0d);
+
+  // The same, for boxed Doubles
+  VectorIndividual<Object> boxed = new VectorIndividual<>(3);
+  boxed.replaceGenome(new Object[]{-5.5, 5d, 50d});
+  limiter.limit(boxed);
+  assertArrayEquals(new Object[]{-5.5, 5d, 10d}, boxed.getGenome());
+}
+
+@Test
+public void testEvolves() {
+  Environment env = (Environment) Config.getXMLConfigurableFromString(String.join("\n",
+          "<Environment>",
+          " <PopulationGroup id=\"test\" totalSize=\"20\">",
+          "  <Population initialSize=\"20\">",
+          "   <NullAgentFactory/>",
+          FACTORY,
+          "   <VectorCrossoverPipeline crossoverProb=\"0.5\">",
+          "    <VectorLimitationPipeline>",
+          "     <VectorMutationPipeline>",
+          "      <TournamentSelector topIndividuals=\"1\" tournamentSize=\"2\"/>",
+          MUTATOR,
+          "     </VectorMutationPipeline>",
+          LIMITER,
+          "    </VectorLimitationPipeline>",
+          "   </VectorCrossoverPipeline>",
+          "  </Population>",
+          " </PopulationGroup>",
+          " <ShuffledEvaluationGroupFactory numGroups=\"10\">",
+          "  <AgentSource populationGroup=\"test\" numAgents=\"4\"/>",
+          " </ShuffledEvaluationGroupFactory>",
+          " <DefaultAgentModelFactory modelClass=\"agency.models.simple.MaximumValue\"/>",
+          " <LocalEvaluator/>",
+          "</Environment>"));
+  try {
+    for (int i = 0; i < 3; i++)
+      env.evolve();
+    for (PopulationGroup pg : env.getPopulationGroups())
+      for (Population p : pg.getPopulations())
+        for (Individual ind : p.individuals)
+          assertTrue(ind instanceof DoubleVectorIndividual);
+  } finally {
+    env.close();
+  }
+}
+
+}
@@ -0,0 +1,121 @@
+package agency.vector;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import agency.Config;
+import agency.Individual;
+import agency.Population;
+import agency.SimpleFitness;
+import agency.reproduce.BreedingPipeline;
+import agency.reproduce.TournamentSelector;
+
+public class FusedVectorPipelineTest {
+
+static final String FACTORY = String.join("\n",
+        "<VectorIndividualFactory length=\"5\" genomeType=\"double\">",
+        " <GaussianRandomVectorRange start=\"0\" end=\"4\">",
+        "  <Means type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"10\"/>",
+        "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"4\" value=\"0\"/>",
+        " </GaussianRandomVectorRange>",
+        "</VectorIndividualFactory>");
+
+static final String SELECTOR =
+        "<TournamentSelector tournamentSize=\"2\" topIndividuals=\"1\"/>";
+
+static final String CHAIN = String.join("\n",
+        "<VectorLimitationPipeline>",
+        " <VectorMutationPipeline>",
+        "  <VectorCrossoverPipeline crossoverProb=\"1\">",
+        SELECTOR,
+        "  </VectorCrossoverPipeline>",
+        DoubleVectorIndividualTest.MUTATOR,
+        " </VectorMutationPipeline>",
+        DoubleVectorIndividualTest.LIMITER,
+        "</VectorLimitationPipeline>");
+
+static BreedingPipeline pipeline(String xml) {
+  return (BreedingPipeline) Config.getXMLConfigurableFromString(xml);
+}
+
+static Population population(String pipeline) {
+  Population pop = (Population) Config.getXMLConfigurableFromString(
+          "<Population initialSize=\"20\"><NullAgentFactory/>" + FACTORY +
+          pipeline + "</Population>");
+  double fitness = 1d;
+  for (Individual ind : pop.individuals)
+    ind.setFitness(new SimpleFitness(fitness++));
+  return pop;
+}
+
+@Test
+public void testCompile() {
+  assertTrue(pipeline(CHAIN).compile() instanceof FusedVectorPipeline);
+
+  BreedingPipeline selector = pipeline(SELECTOR);
+  assertSame(selector, selector.compile());
+
+  // Only one crossover can be fused
+  BreedingPipeline twoCrossovers = pipeline(
+          "<VectorCrossoverPipeline><VectorCrossoverPipeline>" + SELECTOR +
+          "</VectorCrossoverPipeline></VectorCrossoverPipeline>");
+  assertSame(twoCrossovers, twoCrossovers.compile());
+}
+
+@Test
+public void testGenerate() {
+  Population pop = population(CHAIN);
+  Map<UUID, double[]> parents = new HashMap<>();
+  for (Individual ind : pop.individuals)
+    parents.put(ind.getUUID(), ((DoubleVectorIndividual) ind).readGenome().clone());
+
+  BreedingPipeline fused = pipeline(CHAIN).compile();
+  fused.setSourcePopulation(pop);
+  Set<UUID> seen = new HashSet<>();
+  for (int i = 0; i < 50; i++) {
+    DoubleVectorIndividual child = (DoubleVectorIndividual) fused.generate();
+    assertTrue(seen.add(child.getUUID()));
+    assertFalse(parents.containsKey(child.getUUID()));
+    for (int pos = 0; pos < 5; pos++) {
+      double gene = child.getDouble(pos);
+      assertTrue(gene >= 9.5 && gene <= 10.5);
+    }
+  }
+
+  // The parents were copied, not changed
+  for (Individual ind : pop.individuals)
+    assertArrayEquals(parents.get(ind.getUUID()),
+                      ((DoubleVectorIndividual) ind).readGenome(), 0d);
+}
+
+@Test
+public void testReproduce() {
+  Population pop = population(CHAIN);
+  List<Individual> parents = pop.individuals;
+  pop.definatelyReproduce(null, 30);
+  assertEquals(30, pop.size());
+  for (Individual ind : pop.individuals)
+    assertFalse(parents.contains(ind));
+}
+
+@Test
+public void testTopIndividuals() {
+  Population pop = population(SELECTOR);
+  TournamentSelector selector = new TournamentSelector(20, 2);
+  selector.setSourcePopulation(pop);
+  for (int i = 0; i < 50; i++) {
+    SimpleFitness first = (SimpleFitness) selector.select().getFitness();
+    SimpleFitness second = (SimpleFitness) selector.select().getFitness();
+    assertTrue(first.compareTo(second) >= 0);
+  }
+}
+
+}
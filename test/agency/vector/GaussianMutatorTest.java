@@ -0,0 +1,120 @@
+package agency.vector;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import agency.Config;
+
+public class GaussianMutatorTest {
+
+static final int LENGTH = 10000;
+static final int ROUNDS = 20;
+
+static VectorMutator mutator(boolean sparse, String probabilities) {
+  int end = LENGTH - 1;
+  return (VectorMutator) Config.getXMLConfigurableFromString(
+          "<VectorMutator length=\"" + LENGTH + "\">" +
+          "<GaussianMutator start=\"0\" end=\"" + end + "\" sparse=\"" +
+          sparse + "\">" + probabilities +
+          "<Deviations type=\"RepeatingDouble\" start=\"0\" end=\"" + end +
+          "\" value=\"1\"/>" +
+          "</GaussianMutator>" +
+          "</VectorMutator>");
+}
+
+static String repeating(double probability) {
+  return "<MutationProbability type=\"RepeatingDouble\" start=\"0\" end=\"" +
+         (LENGTH - 1) + "\" value=\"" + probability + "\"/>";
+}
+
+/**
+ * @return How many times each position changed, over ROUNDS mutations
+ */
+static int[] mutations(VectorMutator mutator) {
+  int[] counts = new int[LENGTH];
+  for (int r = 0; r < ROUNDS; r++) {
+    DoubleVectorIndividual ind = new DoubleVectorIndividual(LENGTH);
+    mutator.mutate((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+    for (int i = 0; i < LENGTH; i++)
+      if (ind.getDouble(i) != 0d)
+        counts[i]++;
+  }
+  return counts;
+}
+
+static int sum(int[] counts, int start, int step) {
+  int total = 0;
+  for (int i = start; i < counts.length; i += step)
+    total += counts[i];
+  return total;
+}
+
+/**
+ * Asserts that a count is within 5 standard deviations of a binomial's mean.
+ */
+static void assertBinomial(int trials, double p, int count) {
+  double mean = trials * p;
+  double sd = Math.sqrt(trials * p * (1 - p));
+  assertEquals(mean, count, 5 * sd);
+}
+
+@Test
+public void testSparseMatchesDense() {
+  int dense = sum(mutations(mutator(false, repeating(0.01))), 0, 1);
+  int sparse = sum(mutations(mutator(true, repeating(0.01))), 0, 1);
+  assertBinomial(LENGTH * ROUNDS, 0.01, dense);
+  assertBinomial(LENGTH * ROUNDS, 0.01, sparse);
+}
+
+@Test
+public void testSparseReachesWholeRange() {
+  int[] counts = mutations(mutator(true, repeating(0.05)));
+  // Each tenth of the genome is mutated about as often
+  for (int i = 0; i < 10; i++) {
+    int total = 0;
+    for (int pos = i * LENGTH / 10; pos < (i + 1) * LENGTH / 10; pos++)
+      total += counts[pos];
+    assertBinomial(LENGTH / 10 * ROUNDS, 0.05, total);
+  }
+}
+
+@Test
+public void testSparseVaryingProbabilities() {
+  // Alternating probabilities of 0 and 0.02
+  StringBuilder sb = new StringBuilder();
+  sb.append("<MutationProbability type=\"DoubleList\" start=\"0\" end=\"")
+    .append(LENGTH - 1).append("\">");
+  for (int i = 0; i < LENGTH; i++)
+    sb.append(i % 2 == 0 ? "0" : "0.02").append(i < LENGTH - 1 ? " " : "");
+  sb.append("</MutationProbability>");
+
+  int[] counts = mutations(mutator(true, sb.toString()));
+  assertEquals(0, sum(counts, 0, 2));
+  assertBinomial(LENGTH / 2 * ROUNDS, 0.02, sum(counts, 1, 2));
+}
+
+@Test
+public void testSparseExtremes() {
+  assertEquals(0, sum(mutations(mutator(true, repeating(0))), 0, 1));
+  assertEquals(LENGTH * ROUNDS,
+               sum(mutations(mutator(true, repeating(1))), 0, 1));
+}
+
+@Test
+public void testWriteXMLConfig() {
+  GaussianMutator gm = (GaussianMutator) Config.getXMLConfigurableFromString(
+          "<GaussianMutator start=\"0\" end=\"9\" sparse=\"true\">" +
+          "<MutationProbability type=\"RepeatingDouble\" start=\"0\" " +
+          "end=\"9\" value=\"0.01\"/>" +
+          "<Deviations type=\"RepeatingDouble\" start=\"0\" end=\"9\" " +
+          "value=\"1\"/>" +
+          "</GaussianMutator>");
+  Element e = Config.createUnnamedElement(Config.newDocument(), gm);
+  GaussianMutator copy = (GaussianMutator) Config.initializeXMLConfigurable(e);
+  assertTrue(copy.sparse);
+  assertEquals(0.01, copy.mutationProbabilities.get(5).doubleValue(), 0d);
+}
+
+}
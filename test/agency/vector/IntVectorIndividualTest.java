@@ -0,0 +1,93 @@
+package agency.vector;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import agency.Config;
+
+public class IntVectorIndividualTest {
+
+@Test
+public void testFactoryMutateAndCopy() {
+  VectorIndividualFactory vif = (VectorIndividualFactory)
+          Config.getXMLConfigurableFromString(String.join("\n",
+                  "<VectorIndividualFactory length=\"3\" genomeType=\"int\">",
+                  " <GaussianRandomVectorRange start=\"0\" end=\"2\">",
+                  "  <Means type=\"DoubleList\" start=\"0\" end=\"2\">1.9 -2.9 100</Means>",
+                  "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"0\"/>",
+                  " </GaussianRandomVectorRange>",
+                  "</VectorIndividualFactory>"));
+  IntVectorIndividual ind = (IntVectorIndividual) (VectorIndividual<?>) vif.create();
+  // Truncated, as Number.intValue() does
+  assertArrayEquals(new int[]{1, -2, 100}, ind.getIntGenome());
+  assertEquals(Integer.valueOf(-2), ind.gene(1));
+
+  ind.setDouble(2, 50.7);
+  assertEquals(50, ind.gene(2).intValue());
+
+  IntVectorIndividual copy = (IntVectorIndividual) ind.copy();
+  copy.changeGene(0, 7);
+  assertEquals(1, ind.getIntGenome()[0]);
+  assertEquals(7d, copy.getDouble(0), 0d);
+
+  VectorMutator mutator = (VectorMutator) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorMutator length=\"3\">",
+                  " <GaussianMutator start=\"0\" end=\"2\">",
+                  "  <MutationProbability type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"1\"/>",
+                  "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"1000\"/>",
+                  " </GaussianMutator>",
+                  "</VectorMutator>"));
+  mutator.mutate((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  assertFalse(ind.getIntGenome()[0] == 1 && ind.getIntGenome()[1] == -2 &&
+              ind.getIntGenome()[2] == 50);
+}
+
+@Test
+public void testLimit() {
+  VectorLimiter limiter = (VectorLimiter) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorLimiter length=\"3\">",
+                  " <RangeLimiter start=\"0\" end=\"2\">",
+                  "  <Min type=\"RepeatingDouble\" start=\"0\" end=\"2\" value=\"0.5\"/>",
+                  "  <Max type=\"RepeatingInteger\" start=\"0\" end=\"2\" value=\"10\"/>",
+                  " </RangeLimiter>",
+                  "</VectorLimiter>"));
+  IntVectorIndividual ind = new IntVectorIndividual(new int[]{-5, 5, 50});
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  // Truncated, as by setDouble()
+  assertArrayEquals(new int[]{0, 5, 10}, ind.getIntGenome());
+
+  // The same, for boxed Integers
+  VectorIndividual<Object> boxed = new VectorIndividual<>(3);
+  boxed.replaceGenome(new Object[]{-5, 5, 50});
+  limiter.limit(boxed);
+  assertArrayEquals(new Object[]{0, 5, 10}, boxed.getGenome());
+
+  RangeLimiter rl = (RangeLimiter) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<RangeLimiter start=\"0\" end=\"2\">",
+                  " <Max type=\"RepeatingInteger\" start=\"0\" end=\"2\" value=\"10\"/>",
+                  "</RangeLimiter>"));
+  Object[] genome = {5, 50};
+  rl.limit(genome, 1);
+  assertEquals(10, genome[1]);
+}
+
+@Test
+public void testLimitWithoutMin() {
+  VectorLimiter limiter = (VectorLimiter) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorLimiter length=\"3\">",
+                  " <RangeLimiter start=\"0\" end=\"2\">",
+                  "  <Max type=\"RepeatingInteger\" start=\"0\" end=\"2\" value=\"10\"/>",
+                  " </RangeLimiter>",
+                  "</VectorLimiter>"));
+  IntVectorIndividual ind = new IntVectorIndividual(new int[]{-5, 5, 50});
+  limiter.limit((VectorIndividual<Object>) (VectorIndividual<?>) ind);
+  // Negative genes are not limited
+  assertArrayEquals(new int[]{-5, 5, 10}, ind.getIntGenome());
+}
+
+}
@@ -2,8 +2,13 @@ package agency.vector;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
+import org.w3c.dom.Element;
+
+import agency.Config;
 
 public class VectorIndividualTest {
 
@@ -223,4 +228,123 @@ public void testConditionIndexHelperExp() {
 
 }
 
+@Test
+public void testCopyOnWrite() {
+  VectorIndividual<Double> copy = (VectorIndividual<Double>) testVi.copy();
+  assertTrue(copy.shared);
+  assertTrue(testVi.shared);
+  assertEquals(testVi.gene(3), copy.gene(3));
+
+  copy.changeGene(3, 100d);
+  assertFalse(copy.shared);
+  assertEquals(Double.valueOf(100d), copy.gene(3));
+  assertEquals(Double.valueOf(3d - valueOffset), testVi.gene(3));
+
+  // The original still copies before it writes, as it may have other copies
+  VectorIndividual<Double> other = (VectorIndividual<Double>) testVi.copy();
+  testVi.setDouble(4, -1d);
+  assertEquals(Double.valueOf(4d - valueOffset), other.gene(4));
+  assertEquals(-1d, testVi.getDouble(4), 0d);
+
+  // As does anything with access to the array
+  VectorIndividual<Double> third = (VectorIndividual<Double>) other.copy();
+  Object[] genome = ((VectorIndividual<?>) third).getGenome();
+  genome[5] = 50d;
+  assertEquals(Double.valueOf(5d - valueOffset), other.gene(5));
+
+  // Crossover writes to both
+  VectorIndividual<Double> a = (VectorIndividual<Double>) other.copy();
+  VectorIndividual<Double> b = (VectorIndividual<Double>) third.copy();
+  a.exchangeGenes(b, 0, 10);
+  assertEquals(Double.valueOf(50d), a.gene(5));
+  assertEquals(Double.valueOf(5d - valueOffset), other.gene(5));
+  assertEquals(Double.valueOf(50d), third.gene(5));
+}
+
+@Test
+public void testCopyStaysSharedUntilAGeneChanges() {
+  VectorMutator mutator = (VectorMutator) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorMutator length=\"20\">",
+                  " <GaussianMutator start=\"0\" end=\"19\">",
+                  "  <MutationProbability type=\"RepeatingDouble\" start=\"0\" end=\"19\" value=\"0\"/>",
+                  "  <Deviations type=\"RepeatingDouble\" start=\"0\" end=\"19\" value=\"1\"/>",
+                  " </GaussianMutator>",
+                  "</VectorMutator>"));
+  VectorLimiter limiter = (VectorLimiter) Config.getXMLConfigurableFromString(
+          String.join("\n",
+                  "<VectorLimiter length=\"20\">",
+                  " <RangeLimiter start=\"0\" end=\"19\">",
+                  "  <Min type=\"RepeatingDouble\" start=\"0\" end=\"19\" value=\"-10\"/>",
+                  "  <Max type=\"RepeatingDouble\" start=\"0\" end=\"19\" value=\"20\"/>",
+                  " </RangeLimiter>",
+                  "</VectorLimiter>"));
+
+  @SuppressWarnings("unchecked")
+  VectorIndividual<Object> copy = (VectorIndividual<Object>) testVi.copy();
+  mutator.mutate(copy);
+  limiter.limit(copy);
+  assertTrue(copy.shared);
+  for (int i = 0; i < genomeLength; i++)
+    assertEquals(testVi.gene(i), copy.gene(i));
+
+  // The defaults for mutators that only work on arrays, too
+  VectorValueMutator negateFirst = new VectorValueMutator() {
+    @Override
+    public void mutate(Object[] genome, int pos) {
+      if (pos == 0)
+        genome[pos] = -(Double) genome[pos];
+    }
+
+    @Override
+    public void readXMLConfig(Element e) {
+    }
+
+    @Override
+    public void writeXMLConfig(Element e) {
+    }
+
+    @Override
+    public void resumeFromCheckpoint() {
+    }
+  };
+  negateFirst.mutate(copy, 1, 19);
+  assertTrue(copy.shared);
+  negateFirst.mutate(copy, 0, 19);
+  assertFalse(copy.shared);
+  assertEquals(5d, copy.getDouble(0), 0d);
+  assertEquals(-5d, testVi.getDouble(0), 0d);
+}
+
+@Test
+public void testECacheInvalidated() {
+  assertEquals(Math.exp(-5d), testVi.e(0), 0d);
+  assertEquals(Math.exp(-4d), testVi.e(1), 0d);
+  assertEquals(Math.exp(-3d) - Math.exp(-2d), testVi.e2(2), 0d);
+
+  testVi.changeGene(0, 1d);
+  assertEquals(Math.exp(1d), testVi.e(0), 0d);
+  testVi.setDouble(1, 2d);
+  assertEquals(Math.exp(2d), testVi.e(1), 0d);
+
+  VectorIndividual<Double> other = new VectorIndividual<>(genomeLength);
+  for (int i = 0; i < genomeLength; i++)
+    other.changeGene(i, 0d);
+  assertEquals(1d, other.e(3), 0d);
+  testVi.exchangeGenes(other, 2, 4);
+  assertEquals(1d, testVi.e(3), 0d);
+  assertEquals(Math.exp(-2d), other.e(3), 0d);
+
+  Double[] replacement = new Double[genomeLength];
+  Arrays.fill(replacement, 3d);
+  testVi.replaceGenome(replacement);
+  assertEquals(Math.exp(3d), testVi.e(0), 0d);
+
+  // The copy has its own
+  VectorIndividual<Double> copy = (VectorIndividual<Double>) testVi.copy();
+  copy.changeGene(5, 0d);
+  assertEquals(1d, copy.e(5), 0d);
+  assertEquals(Math.exp(3d), testVi.e(5), 0d);
+}
+
 }